@@ -0,0 +1,72 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Compares reading the compressed test schematics through the previous stream stack (a buffered, pushback and
+ * {@link GZIPInputStream} with its default 512 byte buffer) and through {@link DecompressingInputStream}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecompressionBenchmark {
+
+	@Param({
+			"/schematics/sponge/v2/green-cottage.schem",
+			"/schematics/litematica/v5/island.litematic",
+			"/schematics/litematica/v6/demo.litematic",
+	})
+	public String file;
+
+	private byte[] compressed;
+
+	@Setup
+	public void setup() throws IOException {
+		try (InputStream is = DecompressionBenchmark.class.getResourceAsStream(file)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int read; (read = is.read(buffer)) >= 0; ) {
+				out.write(buffer, 0, read);
+			}
+			compressed = out.toByteArray();
+		}
+	}
+
+	@Benchmark
+	public NamedTag gzipInputStream() throws IOException {
+		InputStream is = new PushbackInputStream(new BufferedInputStream(new ByteArrayInputStream(compressed)), 2);
+		try (InputStream gzip = new GZIPInputStream(is)) {
+			return new NBTDecoder(gzip, ByteOrder.BIG_ENDIAN).readTag(Tag.DEFAULT_MAX_DEPTH);
+		}
+	}
+
+	@Benchmark
+	public NamedTag decompressingInputStream() throws IOException {
+		return NBTUtil.Reader.read().from(compressed);
+	}
+}
@@ -0,0 +1,243 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sandrohc.schematic4j.nbt.ExceptionTriConsumer;
+import net.sandrohc.schematic4j.nbt.MaxDepthIO;
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ByteTag;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
+import net.sandrohc.schematic4j.nbt.tag.EndTag;
+import net.sandrohc.schematic4j.nbt.tag.FloatTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongTag;
+import net.sandrohc.schematic4j.nbt.tag.ShortTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Measures the encoding throughput of an uncompressed payload shaped like a Sponge schematic, with a block palette,
+ * block entities and block data, through the output streams and through {@link NBTEncoder} targeting a buffer and a
+ * channel. The {@code streamPerTag} benchmark is the baseline: a copy of the streams' previous encoding, which looked up
+ * a writer per tag in a map and wrote every value through a {@link DataOutputStream}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodeBenchmark {
+
+	@Param({"BIG_ENDIAN", "LITTLE_ENDIAN"})
+	public String order;
+
+	private ByteOrder byteOrder;
+	private NamedTag root;
+	private ByteArrayOutputStream out;
+	private int size;
+
+	@Setup
+	public void setup() throws IOException {
+		byteOrder = "LITTLE_ENDIAN".equals(order) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+		Random random = new Random(0);
+		CompoundTag palette = new CompoundTag();
+		for (int i = 0; i < 256; i++) {
+			palette.putInt("minecraft:block_" + i + "[facing=north,half=bottom]", i);
+		}
+		ListTag<CompoundTag> blockEntities = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 20_000; i++) {
+			CompoundTag blockEntity = new CompoundTag();
+			blockEntity.putString("Id", "minecraft:chest");
+			blockEntity.putIntArray("Pos", new int[]{i, i >> 4, i >> 8});
+			blockEntity.put("Rotation", ListTag.ofFloats(new float[]{random.nextFloat(), random.nextFloat()}));
+			blockEntities.add(blockEntity);
+		}
+		byte[] blockData = new byte[1 << 22];
+		random.nextBytes(blockData);
+
+		CompoundTag schematic = new CompoundTag();
+		schematic.putInt("Version", 2);
+		schematic.put("Palette", palette);
+		schematic.put("BlockEntities", blockEntities);
+		schematic.putByteArray("BlockData", blockData);
+		root = new NamedTag("Schematic", schematic);
+
+		out = new ByteArrayOutputStream(blockData.length * 2);
+		size = stream();
+	}
+
+	@Benchmark
+	public int stream() throws IOException {
+		out.reset();
+		NBTOutput output = byteOrder == ByteOrder.LITTLE_ENDIAN ? new LittleEndianNBTOutputStream(out) : new NBTOutputStream(out);
+		output.writeTag(root, Tag.DEFAULT_MAX_DEPTH);
+		output.flush();
+		return out.size();
+	}
+
+	@Benchmark
+	public int streamPerTag() throws IOException {
+		out.reset();
+		PerTagOutputStream output = new PerTagOutputStream(out, byteOrder == ByteOrder.LITTLE_ENDIAN);
+		output.writeTag(root, Tag.DEFAULT_MAX_DEPTH);
+		output.flush();
+		return out.size();
+	}
+
+	@Benchmark
+	public ByteBuffer buffer() throws IOException {
+		NBTEncoder encoder = new NBTEncoder(byteOrder, size);
+		encoder.writeTag(root, Tag.DEFAULT_MAX_DEPTH);
+		return encoder.toByteBuffer();
+	}
+
+	@Benchmark
+	public int channel() throws IOException {
+		out.reset();
+		NBTEncoder encoder = new NBTEncoder(Channels.newChannel(out), byteOrder);
+		encoder.writeTag(root, Tag.DEFAULT_MAX_DEPTH);
+		encoder.flush();
+		return out.size();
+	}
+
+	/**
+	 * The output streams as they were before {@link NBTEncoder}: a writer looked up per tag, and every number reversed
+	 * and written on its own when little-endian.
+	 */
+	private static final class PerTagOutputStream extends DataOutputStream implements MaxDepthIO {
+
+		private static final Map<Byte, ExceptionTriConsumer<PerTagOutputStream, Tag<?>, Integer, IOException>> writers = new HashMap<>();
+		private static final Map<Class<?>, Byte> classIdMapping = new HashMap<>();
+
+		static {
+			put(EndTag.ID, (o, t, d) -> {}, EndTag.class);
+			put(ByteTag.ID, (o, t, d) -> o.writeByte(((ByteTag) t).asByte()), ByteTag.class);
+			put(ShortTag.ID, (o, t, d) -> o.writeNumber(((ShortTag) t).asShort()), ShortTag.class);
+			put(IntTag.ID, (o, t, d) -> o.writeNumber(((IntTag) t).asInt()), IntTag.class);
+			put(LongTag.ID, (o, t, d) -> o.writeNumber(((LongTag) t).asLong()), LongTag.class);
+			put(FloatTag.ID, (o, t, d) -> o.writeNumber(Float.floatToIntBits(((FloatTag) t).asFloat())), FloatTag.class);
+			put(DoubleTag.ID, (o, t, d) -> o.writeNumber(Double.doubleToLongBits(((DoubleTag) t).asDouble())), DoubleTag.class);
+			put(ByteArrayTag.ID, PerTagOutputStream::writeByteArray, ByteArrayTag.class);
+			put(StringTag.ID, (o, t, d) -> o.writeString(((StringTag) t).getValue()), StringTag.class);
+			put(ListTag.ID, PerTagOutputStream::writeList, ListTag.class);
+			put(CompoundTag.ID, PerTagOutputStream::writeCompound, CompoundTag.class);
+			put(IntArrayTag.ID, PerTagOutputStream::writeIntArray, IntArrayTag.class);
+			put(LongArrayTag.ID, PerTagOutputStream::writeLongArray, LongArrayTag.class);
+		}
+
+		private static void put(byte id, ExceptionTriConsumer<PerTagOutputStream, Tag<?>, Integer, IOException> f, Class<?> clazz) {
+			writers.put(id, f);
+			classIdMapping.put(clazz, id);
+		}
+
+		private final boolean littleEndian;
+
+		PerTagOutputStream(OutputStream out, boolean littleEndian) {
+			super(out);
+			this.littleEndian = littleEndian;
+		}
+
+		void writeTag(NamedTag tag, int maxDepth) throws IOException {
+			writeByte(tag.getTag().getID());
+			if (tag.getTag().getID() != 0) {
+				writeString(tag.getName() == null ? "" : tag.getName());
+			}
+			writeRawTag(tag.getTag(), maxDepth);
+		}
+
+		void writeRawTag(Tag<?> tag, int maxDepth) throws IOException {
+			ExceptionTriConsumer<PerTagOutputStream, Tag<?>, Integer, IOException> f;
+			if ((f = writers.get(tag.getID())) == null) {
+				throw new IOException("invalid tag \"" + tag.getID() + "\"");
+			}
+			f.accept(this, tag, maxDepth);
+		}
+
+		private void writeNumber(short v) throws IOException {
+			writeShort(littleEndian ? Short.reverseBytes(v) : v);
+		}
+
+		private void writeNumber(int v) throws IOException {
+			writeInt(littleEndian ? Integer.reverseBytes(v) : v);
+		}
+
+		private void writeNumber(long v) throws IOException {
+			writeLong(littleEndian ? Long.reverseBytes(v) : v);
+		}
+
+		private void writeString(String s) throws IOException {
+			if (!littleEndian) {
+				writeUTF(s);
+				return;
+			}
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeNumber((short) bytes.length);
+			write(bytes);
+		}
+
+		private static void writeByteArray(PerTagOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
+			out.writeNumber(((ByteArrayTag) tag).length());
+			out.write(((ByteArrayTag) tag).getValue());
+		}
+
+		private static void writeIntArray(PerTagOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
+			out.writeNumber(((IntArrayTag) tag).length());
+			for (int i : ((IntArrayTag) tag).getValue()) {
+				out.writeNumber(i);
+			}
+		}
+
+		private static void writeLongArray(PerTagOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
+			out.writeNumber(((LongArrayTag) tag).length());
+			for (long l : ((LongArrayTag) tag).getValue()) {
+				out.writeNumber(l);
+			}
+		}
+
+		private static void writeList(PerTagOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
+			out.writeByte(classIdMapping.get(((ListTag<?>) tag).getTypeClass()));
+			out.writeNumber(((ListTag<?>) tag).size());
+			for (Tag<?> t : ((ListTag<?>) tag)) {
+				out.writeRawTag(t, out.decrementMaxDepth(maxDepth));
+			}
+		}
+
+		private static void writeCompound(PerTagOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
+			for (Map.Entry<String, Tag<?>> entry : (CompoundTag) tag) {
+				out.writeByte(entry.getValue().getID());
+				out.writeString(entry.getKey());
+				out.writeRawTag(entry.getValue(), out.decrementMaxDepth(maxDepth));
+			}
+			out.writeByte(0);
+		}
+	}
+}
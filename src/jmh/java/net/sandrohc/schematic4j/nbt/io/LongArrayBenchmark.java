@@ -0,0 +1,108 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Compares decoding and encoding a long array tag one element at a time, as the streams used to, against the bulk
+ * conversion of {@link NBTDecoder} and the output streams.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LongArrayBenchmark {
+
+	/**
+	 * The number of elements, from a small region up to a large Litematica {@code BlockStates} array.
+	 */
+	@Param({"1024", "1048576"})
+	public int length;
+
+	@Param({"BIG_ENDIAN", "LITTLE_ENDIAN"})
+	public String order;
+
+	private boolean littleEndian;
+	private LongArrayTag tag;
+	private byte[] payload;
+	private ByteArrayOutputStream out;
+
+	@Setup
+	public void setup() throws IOException {
+		littleEndian = "LITTLE_ENDIAN".equals(order);
+
+		long[] data = new long[length];
+		Random random = new Random(42);
+		for (int i = 0; i < length; i++) {
+			data[i] = random.nextLong();
+		}
+		tag = new LongArrayTag(data);
+
+		out = new ByteArrayOutputStream(length * Long.BYTES + Integer.BYTES);
+		encodePerElement();
+		payload = out.toByteArray();
+	}
+
+	@Benchmark
+	public long[] decodePerElement() throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		int l = littleEndian ? Integer.reverseBytes(in.readInt()) : in.readInt();
+		long[] data = new long[l];
+		for (int i = 0; i < l; i++) {
+			data[i] = littleEndian ? Long.reverseBytes(in.readLong()) : in.readLong();
+		}
+		return data;
+	}
+
+	@Benchmark
+	public Tag<?> decodeBulk() throws IOException {
+		NBTDecoder decoder = new NBTDecoder(new ByteArrayInputStream(payload), littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+		return decoder.readTag(LongArrayTag.ID, Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	@Benchmark
+	public int encodePerElement() throws IOException {
+		out.reset();
+		DataOutputStream dos = new DataOutputStream(out);
+		long[] data = tag.getValue();
+		dos.writeInt(littleEndian ? Integer.reverseBytes(data.length) : data.length);
+		for (long l : data) {
+			dos.writeLong(littleEndian ? Long.reverseBytes(l) : l);
+		}
+		return out.size();
+	}
+
+	@Benchmark
+	public int encodeBulk() throws IOException {
+		out.reset();
+		if (littleEndian) {
+			new LittleEndianNBTOutputStream(out).writeRawTag(tag, Tag.DEFAULT_MAX_DEPTH);
+		} else {
+			new NBTOutputStream(out).writeRawTag(tag, Tag.DEFAULT_MAX_DEPTH);
+		}
+		return out.size();
+	}
+}
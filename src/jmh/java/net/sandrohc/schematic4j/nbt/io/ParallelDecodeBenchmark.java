@@ -0,0 +1,74 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+
+/**
+ * Compares the sequential and the parallel decoding of a large uncompressed payload, shaped like a Litematica
+ * schematic with many regions holding block states and entities.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelDecodeBenchmark {
+
+	private byte[] payload;
+
+	@Setup
+	public void setup() throws IOException {
+		Random random = new Random(0);
+		CompoundTag regions = new CompoundTag();
+		for (int i = 0; i < 16; i++) {
+			long[] blockStates = new long[1 << 20];
+			for (int j = 0; j < blockStates.length; j++) {
+				blockStates[j] = random.nextLong();
+			}
+			ListTag<CompoundTag> entities = new ListTag<>(CompoundTag.class);
+			for (int j = 0; j < 10_000; j++) {
+				CompoundTag entity = new CompoundTag();
+				entity.putString("id", "minecraft:armor_stand");
+				entity.putIntArray("Pos", new int[]{j, j, j});
+				entities.add(entity);
+			}
+			CompoundTag region = new CompoundTag();
+			region.putLongArray("BlockStates", blockStates);
+			region.put("Entities", entities);
+			regions.put("Region " + i, region);
+		}
+		CompoundTag root = new CompoundTag();
+		root.put("Regions", regions);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		NBTUtil.Writer.write(root).compressed(false).to(out);
+		payload = out.toByteArray();
+	}
+
+	@Benchmark
+	public NamedTag sequential() throws IOException {
+		return NBTUtil.Reader.read().from(payload);
+	}
+
+	@Benchmark
+	public NamedTag parallel() throws IOException {
+		return NBTUtil.Reader.read().parallel().from(payload);
+	}
+}
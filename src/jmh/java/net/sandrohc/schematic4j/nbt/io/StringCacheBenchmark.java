@@ -0,0 +1,70 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares decoding the test schematics with and without interning strings. Run with the GC profiler
+ * ({@code -prof gc}, enabled by default in the build) to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringCacheBenchmark {
+
+	@Param({
+			"/schematics/schematica/12727.schematic",
+			"/schematics/sponge/v2/interieur-exterieur-chunk-project.schem",
+			"/schematics/litematica/v5/island.litematic",
+	})
+	public String file;
+
+	private byte[] payload;
+	private NBTStringCache sharedCache;
+
+	@Setup
+	public void setup() throws IOException {
+		try (InputStream is = new GZIPInputStream(StringCacheBenchmark.class.getResourceAsStream(file))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			for (int read; (read = is.read(buffer)) >= 0; ) {
+				out.write(buffer, 0, read);
+			}
+			payload = out.toByteArray();
+		}
+		sharedCache = new NBTStringCache();
+	}
+
+	@Benchmark
+	public NamedTag decode() throws IOException {
+		return NBTUtil.Reader.read().from(payload);
+	}
+
+	@Benchmark
+	public NamedTag decodeInterned() throws IOException {
+		return NBTUtil.Reader.read().internStrings().from(payload);
+	}
+
+	@Benchmark
+	public NamedTag decodeInternedShared() throws IOException {
+		return NBTUtil.Reader.read().internStrings(sharedCache).from(payload);
+	}
+}
@@ -0,0 +1,204 @@
+package net.sandrohc.schematic4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sandrohc.schematic4j.schematic.Schematic;
+
+/**
+ * Loads a batch of schematics concurrently, starting each file once its estimated heap fits in the in-flight budget.
+ * <p>
+ * The files are started in the order they were given. The results are queued as they complete, and a load only
+ * releases its estimate once its result is taken by the stream, since the schematic stays on the heap until then.
+ * Taking a result starts the files which now fit, so no thread is left waiting on the budget, and a slow consumer holds
+ * back the files not yet started.
+ *
+ * @see SchematicLoader#loadAll(Collection, BatchOptions)
+ */
+final class BatchLoader implements Spliterator<BatchResult> {
+
+	private static final Logger log = LoggerFactory.getLogger(BatchLoader.class);
+
+	private final ForkJoinPool pool;
+	private final boolean ownsPool;
+	private final long maxInFlightBytes;
+	private final BlockingQueue<Pending> results = new LinkedBlockingQueue<>();
+	private long remaining;
+
+	// guarded by this
+	private final ArrayDeque<Pending> pending = new ArrayDeque<>();
+	private long inFlightBytes;
+	private int inFlight;
+	private boolean closed;
+
+	private BatchLoader(@NonNull ForkJoinPool pool, boolean ownsPool, long maxInFlightBytes) {
+		this.pool = pool;
+		this.ownsPool = ownsPool;
+		this.maxInFlightBytes = maxInFlightBytes;
+	}
+
+	/**
+	 * Start loading the files.
+	 *
+	 * @param paths   The files to load
+	 * @param options The options of the batch
+	 * @return The stream of results, in completion order
+	 */
+	static @NonNull Stream<BatchResult> start(@NonNull Collection<Path> paths, @NonNull BatchOptions options) {
+		final ForkJoinPool pool = options.getPool();
+		final BatchLoader loader = pool != null
+				? new BatchLoader(pool, false, options.getMaxInFlightBytes())
+				: new BatchLoader(new ForkJoinPool(options.getParallelism()), true, options.getMaxInFlightBytes());
+
+		for (Path path : paths) {
+			loader.remaining++;
+			try {
+				loader.pending.add(new Pending(path, options.estimate(Files.size(path))));
+			} catch (IOException | RuntimeException e) {
+				loader.results.add(new Pending(path, 0).complete(BatchResult.failure(path, e)));
+			}
+		}
+		log.debug("Loading {} schematics, with a budget of {} bytes", loader.remaining, loader.maxInFlightBytes);
+
+		loader.admit();
+		return StreamSupport.stream(loader, false).onClose(loader::close);
+	}
+
+	/**
+	 * Start the pending files which fit in the budget. The first file always fits if nothing else is running.
+	 */
+	private void admit() {
+		final List<Pending> admitted = new ArrayList<>();
+		while (true) {
+			synchronized (this) {
+				while (!closed && !pending.isEmpty()) {
+					final Pending next = pending.peek();
+					if (inFlight > 0 && inFlightBytes + next.estimate > maxInFlightBytes) {
+						break;
+					}
+					pending.poll();
+					inFlight++;
+					inFlightBytes += next.estimate;
+					next.admitted = true;
+					admitted.add(next);
+				}
+				if (admitted.isEmpty()) {
+					if (ownsPool && inFlight == 0 && (closed || pending.isEmpty())) {
+						pool.shutdown();
+					}
+					return;
+				}
+			}
+
+			for (Pending next : admitted) {
+				try {
+					LoadThreads.load(next.path, pool, (schematic, e) -> done(next, schematic, e));
+				} catch (RejectedExecutionException e) {
+					results.add(next.complete(BatchResult.failure(next.path, e)));
+				}
+			}
+			admitted.clear();
+		}
+	}
+
+	private void done(Pending next, Schematic schematic, Throwable e) {
+		if (e != null) {
+			log.debug("Failed to load {}", next.path, e);
+			results.add(next.complete(BatchResult.failure(next.path, e)));
+		} else {
+			results.add(next.complete(BatchResult.success(next.path, schematic)));
+		}
+	}
+
+	private synchronized void release(Pending taken) {
+		inFlight--;
+		inFlightBytes -= taken.estimate;
+	}
+
+	/**
+	 * Stop starting the pending files. The loads already running are left to finish.
+	 */
+	private void close() {
+		synchronized (this) {
+			closed = true;
+			pending.clear();
+			if (ownsPool) {
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super BatchResult> action) {
+		if (remaining == 0) {
+			return false;
+		}
+		final Pending taken;
+		try {
+			taken = results.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CancellationException("interrupted while waiting for the schematics");
+		}
+		remaining--;
+		if (taken.admitted) {
+			release(taken);
+			admit();
+		}
+		action.accept(taken.result);
+		return true;
+	}
+
+	@Override
+	public Spliterator<BatchResult> trySplit() {
+		return null;
+	}
+
+	@Override
+	public long estimateSize() {
+		return remaining;
+	}
+
+	@Override
+	public int characteristics() {
+		return SIZED | NONNULL;
+	}
+
+	/**
+	 * A file waiting to be started, along with its estimated heap, and then its result once loaded.
+	 */
+	private static final class Pending {
+		private final Path path;
+		private final long estimate;
+		private boolean admitted;
+		private BatchResult result;
+
+		private Pending(Path path, long estimate) {
+			this.path = path;
+			this.estimate = estimate;
+		}
+
+		private Pending complete(BatchResult result) {
+			this.result = result;
+			return this;
+		}
+	}
+}
@@ -0,0 +1,147 @@
+package net.sandrohc.schematic4j;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Options for loading many schematics at once, with {@link SchematicLoader#loadAll(java.util.Collection, BatchOptions)}.
+ * <p>
+ * The schematics are loaded concurrently on a work-stealing {@link ForkJoinPool}. To keep the peak heap in check, the
+ * memory each load takes is estimated upfront as the size of its file times the {@link #getExpansion() expansion},
+ * and a file is only started once its estimate fits in the {@link #getMaxInFlightBytes() in-flight budget} left by the
+ * loads running or whose results were not taken from the stream yet. A file whose estimate exceeds the whole budget is
+ * still loaded, but only once nothing else is.
+ * <p>
+ * Instances are immutable, and can be shared between batches.
+ */
+public final class BatchOptions {
+
+	/**
+	 * The default estimate of the heap used to load a schematic, for each byte of its file. Schematics are usually
+	 * compressed around ten times, and their tags take more heap than their payload.
+	 */
+	public static final double DEFAULT_EXPANSION = 32;
+
+	private static final BatchOptions DEFAULTS = new BatchOptions(null, Runtime.getRuntime().availableProcessors(),
+			Runtime.getRuntime().maxMemory() / 2, DEFAULT_EXPANSION);
+
+	private final @Nullable ForkJoinPool pool;
+	private final int parallelism;
+	private final long maxInFlightBytes;
+	private final double expansion;
+
+	private BatchOptions(@Nullable ForkJoinPool pool, int parallelism, long maxInFlightBytes, double expansion) {
+		this.pool = pool;
+		this.parallelism = parallelism;
+		this.maxInFlightBytes = maxInFlightBytes;
+		this.expansion = expansion;
+	}
+
+	/**
+	 * Get the default options: a pool with a thread per processor, half of the maximum heap as the budget, and the
+	 * {@link #DEFAULT_EXPANSION default expansion}.
+	 *
+	 * @return The options
+	 */
+	public static BatchOptions defaults() {
+		return DEFAULTS;
+	}
+
+	/**
+	 * Copy these options with a pool of the caller to load the schematics on, which is left running once the batch is
+	 * done.
+	 *
+	 * @param pool The pool, or {@code null} to create one for each batch with the {@link #getParallelism() parallelism}
+	 * @return The new options
+	 */
+	public BatchOptions withPool(@Nullable ForkJoinPool pool) {
+		return new BatchOptions(pool, parallelism, maxInFlightBytes, expansion);
+	}
+
+	/**
+	 * Copy these options with a different parallelism, for the pools created for each batch.
+	 *
+	 * @param parallelism The number of threads loading schematics
+	 * @return The new options
+	 */
+	public BatchOptions withParallelism(int parallelism) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("invalid parallelism " + parallelism);
+		}
+		return new BatchOptions(pool, parallelism, maxInFlightBytes, expansion);
+	}
+
+	/**
+	 * Copy these options with a different in-flight budget.
+	 *
+	 * @param maxInFlightBytes The maximum estimated heap used by the loads running at once, and the results not
+	 *                         taken yet
+	 * @return The new options
+	 */
+	public BatchOptions withMaxInFlightBytes(long maxInFlightBytes) {
+		if (maxInFlightBytes <= 0) {
+			throw new IllegalArgumentException("invalid max in-flight bytes " + maxInFlightBytes);
+		}
+		return new BatchOptions(pool, parallelism, maxInFlightBytes, expansion);
+	}
+
+	/**
+	 * Copy these options with a different expansion estimate.
+	 *
+	 * @param expansion The estimated heap used to load a schematic, for each byte of its file
+	 * @return The new options
+	 */
+	public BatchOptions withExpansion(double expansion) {
+		if (!(expansion > 0) || Double.isInfinite(expansion)) {
+			throw new IllegalArgumentException("invalid expansion " + expansion);
+		}
+		return new BatchOptions(pool, parallelism, maxInFlightBytes, expansion);
+	}
+
+	/**
+	 * Get the pool of the caller to load the schematics on.
+	 *
+	 * @return The pool, or {@code null} if one is created for each batch
+	 */
+	public @Nullable ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Get the number of threads of the pools created for each batch.
+	 *
+	 * @return The parallelism
+	 */
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Get the maximum estimated heap used by the loads running at once, and the results not taken yet.
+	 *
+	 * @return The in-flight budget, in bytes
+	 */
+	public long getMaxInFlightBytes() {
+		return maxInFlightBytes;
+	}
+
+	/**
+	 * Get the estimated heap used to load a schematic, for each byte of its file.
+	 *
+	 * @return The expansion
+	 */
+	public double getExpansion() {
+		return expansion;
+	}
+
+	/**
+	 * Estimate the heap used to load a file, capped to the in-flight budget so that it can always be loaded alone.
+	 *
+	 * @param fileSize The size of the file, in bytes
+	 * @return The estimate, in bytes
+	 */
+	long estimate(long fileSize) {
+		return (long) Math.max(1, Math.min((double) maxInFlightBytes, fileSize * expansion));
+	}
+}
@@ -0,0 +1,47 @@
+package net.sandrohc.schematic4j;
+
+import java.nio.file.Path;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sandrohc.schematic4j.schematic.Schematic;
+
+/**
+ * The outcome of loading one of the files of a batch: either the schematic, or the error it failed with.
+ *
+ * @see SchematicLoader#loadAll(java.util.Collection, BatchOptions)
+ */
+public final class BatchResult {
+	public final @NonNull Path path;
+	public final @Nullable Schematic schematic;
+	public final @Nullable Throwable error;
+
+	private BatchResult(@NonNull Path path, @Nullable Schematic schematic, @Nullable Throwable error) {
+		this.path = path;
+		this.schematic = schematic;
+		this.error = error;
+	}
+
+	static BatchResult success(@NonNull Path path, @NonNull Schematic schematic) {
+		return new BatchResult(path, schematic, null);
+	}
+
+	static BatchResult failure(@NonNull Path path, @NonNull Throwable error) {
+		return new BatchResult(path, null, error);
+	}
+
+	/**
+	 * Check whether the file was loaded.
+	 *
+	 * @return {@code true} if the schematic was loaded, {@code false} if the load failed with an error
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult[path=" + path + (error == null ? ", success" : ", error=" + error) + ']';
+	}
+}
@@ -0,0 +1,42 @@
+package net.sandrohc.schematic4j;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import net.sandrohc.schematic4j.schematic.Schematic;
+
+/**
+ * Runs the phases of loading a file, reading and decoding it, on the threads suited to each.
+ * <p>
+ * Both phases run on the pool, one after the other. The multi-release JAR replaces this class on Java 21, to read the
+ * file on a virtual thread instead and only decode it on the pool.
+ *
+ * @see BatchLoader
+ */
+final class LoadThreads {
+
+	private LoadThreads() {}
+
+	/**
+	 * Load a schematic from a file, and hand over the outcome.
+	 *
+	 * @param path The file to load the schematic from
+	 * @param pool The pool to decode the schematic on
+	 * @param done Called once with either the schematic or the error, on the thread which finished the load
+	 */
+	static void load(@NonNull Path path, @NonNull Executor pool, @NonNull BiConsumer<Schematic, Throwable> done) {
+		pool.execute(() -> {
+			final Schematic schematic;
+			try {
+				schematic = SchematicLoader.load(path);
+			} catch (Throwable e) {
+				done.accept(null, e);
+				return;
+			}
+			done.accept(schematic, null);
+		});
+	}
+}
@@ -1,16 +1,17 @@
 package net.sandrohc.schematic4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.function.Supplier;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import net.sandrohc.schematic4j.exception.NoParserFoundException;
 import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
@@ -19,15 +20,107 @@ import net.sandrohc.schematic4j.parser.Parser;
 import net.sandrohc.schematic4j.parser.SchematicaParser;
 import net.sandrohc.schematic4j.parser.SpongeParser;
 
-public enum SchematicFormat {
-	SPONGE_V1("schem", SpongeParser::new),
-	SPONGE_V2("schem", SpongeParser::new),
-	SPONGE_V3("schem", SpongeParser::new),
-	LITEMATICA("litematic", LitematicaParser::new),
-	SCHEMATICA("schematic", SchematicaParser::new),
-	UNKNOWN;
+/**
+ * The built-in schematic formats.
+ *
+ * @see SchematicFormatProvider
+ */
+public enum SchematicFormat implements SchematicFormatProvider {
+	SPONGE_V1("schem", SpongeParser::new) {
+		@Override
+		public @NonNull Map<String, Integer> keyWeights() {
+			return weights(1, SpongeParser.NBT_DATA_VERSION, SpongeParser.NBT_WIDTH, SpongeParser.NBT_HEIGHT,
+					SpongeParser.NBT_LENGTH, SpongeParser.NBT_PALETTE, SpongeParser.NBT_PALETTE_MAX,
+					SpongeParser.NBT_BLOCK_DATA, SpongeParser.NBT_TILE_ENTITIES, SpongeParser.NBT_METADATA);
+		}
 
-	private static final Logger log = LoggerFactory.getLogger(SchematicFormat.class);
+		@Override
+		public @NonNull String versionKey() {
+			return SpongeParser.NBT_VERSION;
+		}
+
+		@Override
+		public int versionScore(@Nullable Integer version) {
+			// some files of the first version lack the version
+			return version == null ? 1 : version == 1 ? 5 : 0;
+		}
+	},
+	SPONGE_V2("schem", SpongeParser::new) {
+		@Override
+		public @NonNull Map<String, Integer> keyWeights() {
+			return weights(1, SpongeParser.NBT_DATA_VERSION, SpongeParser.NBT_WIDTH, SpongeParser.NBT_HEIGHT,
+					SpongeParser.NBT_LENGTH, SpongeParser.NBT_PALETTE, SpongeParser.NBT_PALETTE_MAX,
+					SpongeParser.NBT_BLOCK_DATA, SpongeParser.NBT_BIOME_DATA, SpongeParser.NBT_BLOCK_ENTITIES,
+					SpongeParser.NBT_METADATA);
+		}
+
+		@Override
+		public @NonNull Set<String> requiredKeys() {
+			return keys(SpongeParser.NBT_VERSION, SpongeParser.NBT_DATA_VERSION);
+		}
+
+		@Override
+		public @NonNull String versionKey() {
+			return SpongeParser.NBT_VERSION;
+		}
+
+		@Override
+		public int versionScore(@Nullable Integer version) {
+			return version != null && version >= 1 && version <= 2 ? 5 : 0;
+		}
+	},
+	SPONGE_V3("schem", SpongeParser::new) {
+		@Override
+		public @NonNull Map<String, Integer> keyWeights() {
+			return weights(1, SpongeParser.NBT_DATA_VERSION, SpongeParser.NBT_WIDTH, SpongeParser.NBT_HEIGHT,
+					SpongeParser.NBT_LENGTH, SpongeParser.NBT_V3_BLOCKS, SpongeParser.NBT_V3_BIOMES,
+					SpongeParser.NBT_METADATA);
+		}
+
+		@Override
+		public @NonNull Set<String> requiredKeys() {
+			return keys(SpongeParser.NBT_VERSION, SpongeParser.NBT_DATA_VERSION);
+		}
+
+		@Override
+		public @NonNull String versionKey() {
+			return SpongeParser.NBT_VERSION;
+		}
+
+		@Override
+		public int versionScore(@Nullable Integer version) {
+			return version != null && version >= 1 && version <= 3 ? 5 : 0;
+		}
+	},
+	LITEMATICA("litematic", LitematicaParser::new) {
+		@Override
+		public @NonNull Map<String, Integer> keyWeights() {
+			final Map<String, Integer> weights = weights(1, LitematicaParser.NBT_MINECRAFT_DATA_VERSION,
+					LitematicaParser.NBT_VERSION, LitematicaParser.NBT_METADATA);
+			weights.put(LitematicaParser.NBT_REGIONS, 2);
+			return weights;
+		}
+
+		@Override
+		public @NonNull Set<String> requiredKeys() {
+			return keys(LitematicaParser.NBT_REGIONS);
+		}
+	},
+	SCHEMATICA("schematic", SchematicaParser::new) {
+		@Override
+		public @NonNull Map<String, Integer> keyWeights() {
+			final Map<String, Integer> weights = weights(1, SchematicaParser.NBT_WIDTH, SchematicaParser.NBT_HEIGHT,
+					SchematicaParser.NBT_LENGTH);
+			weights.put(SchematicaParser.NBT_MAPPING_SCHEMATICA, 10);
+			return weights;
+		}
+
+		@Override
+		public @NonNull Set<String> requiredKeys() {
+			return keyWeights().keySet();
+		}
+	},
+	UNKNOWN;
 
 	public final String fileExtension;
 	private final Supplier<Parser> parserGenerator;
@@ -45,6 +138,12 @@ public enum SchematicFormat {
 		this(null, null);
 	}
 
+	@Override
+	public @Nullable String fileExtension() {
+		return fileExtension;
+	}
+
+	@Override
 	public Parser createParser() throws NoParserFoundException {
 		if (parserGenerator == null)
 			throw new NoParserFoundException(this);
@@ -52,175 +151,65 @@ public enum SchematicFormat {
 		return parserGenerator.get();
 	}
 
+	@Override
+	public @NonNull Map<String, Integer> keyWeights() {
+		return Collections.emptyMap();
+	}
+
 	/**
 	 * Tries to guess the schematic format of the input.
 	 *
 	 * @param nbt The NBT input to check
-	 * @return The format guesses from looking at the input, or {@link SchematicFormat#UNKNOWN} if no known format was found.
+	 * @return The format guesses from looking at the input, or {@link SchematicFormat#UNKNOWN} if no known format was
+	 * found, or if a format from a {@link SchematicFormatProvider} was found.
+	 * @see SchematicFormatRegistry#guess(CompoundTag)
 	 */
 	public static @NonNull SchematicFormat guessFormat(@Nullable CompoundTag nbt) {
-		if (nbt == null) {
-			return SchematicFormat.UNKNOWN;
-		}
-
-		final Candidates<SchematicFormat> candidates = new Candidates<>();
-		guessSpongeFormat(candidates, nbt);
-		guessLitematicaFormat(candidates, nbt);
-		guessSchematicaFormat(candidates, nbt);
-
-		final SchematicFormat guess = candidates.best().orElse(SchematicFormat.UNKNOWN);
-		log.debug("Guessed {} as the format", guess);
-		return guess;
+		final SchematicFormatProvider guess = SchematicFormatRegistry.guess(nbt).format;
+		return guess instanceof SchematicFormat ? (SchematicFormat) guess : SchematicFormat.UNKNOWN;
 	}
 
-	private static void guessSpongeFormat(Candidates<SchematicFormat> candidates, @NonNull CompoundTag rootTag) {
-		if (rootTag.containsKey(SpongeParser.NBT_VERSION)) {
-			final int version = rootTag.getInt(SpongeParser.NBT_VERSION);
-			switch (version) {
-				case 1:
-					candidates.increment(SchematicFormat.SPONGE_V1, 5);
-				case 2:
-					candidates.increment(SchematicFormat.SPONGE_V2, 5);
-				case 3:
-					candidates.increment(SchematicFormat.SPONGE_V3, 5);
-			}
-		} else {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.exclude(SchematicFormat.SPONGE_V2);
-			candidates.exclude(SchematicFormat.SPONGE_V3);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_DATA_VERSION)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		} else {
-			candidates.exclude(SchematicFormat.SPONGE_V2);
-			candidates.exclude(SchematicFormat.SPONGE_V3);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_WIDTH)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_HEIGHT)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_LENGTH)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_PALETTE)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_PALETTE_MAX)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_BLOCK_DATA)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_BIOME_DATA)) {
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_TILE_ENTITIES)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_BLOCK_ENTITIES)) {
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_V3_BLOCKS)) {
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_V3_BIOMES)) {
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		}
-		if (rootTag.containsKey(SpongeParser.NBT_METADATA)) {
-			candidates.increment(SchematicFormat.SPONGE_V1, 1);
-			candidates.increment(SchematicFormat.SPONGE_V2, 1);
-			candidates.increment(SchematicFormat.SPONGE_V3, 1);
-		}
+	/**
+	 * Tries to guess the schematic format of the input, without decoding it.
+	 *
+	 * @param is The NBT input to check, which is read up to the end of the root tag
+	 * @return The format guessed from looking at the input, or {@link SchematicFormat#UNKNOWN} if no known format was
+	 * found, along with its score
+	 * @throws IOException in case of I/O error
+	 * @see SchematicFormatRegistry#sniff(InputStream)
+	 */
+	public static @NonNull Guess sniff(@NonNull InputStream is) throws IOException {
+		return SchematicFormatRegistry.sniff(is);
 	}
 
-	private static void guessLitematicaFormat(Candidates<SchematicFormat> candidates, @NonNull CompoundTag nbt) {
-		if (nbt.containsKey(LitematicaParser.NBT_MINECRAFT_DATA_VERSION)) {
-			candidates.increment(SchematicFormat.LITEMATICA, 1);
-		}
-		if (nbt.containsKey(LitematicaParser.NBT_VERSION)) {
-			candidates.increment(SchematicFormat.LITEMATICA, 1);
-		}
-		if (nbt.containsKey(LitematicaParser.NBT_METADATA)) {
-			candidates.increment(SchematicFormat.LITEMATICA, 1);
-		}
-		if (nbt.containsKey(LitematicaParser.NBT_REGIONS)) {
-			candidates.increment(SchematicFormat.LITEMATICA, 2);
-		} else {
-			candidates.exclude(SchematicFormat.LITEMATICA);
+	private static Map<String, Integer> weights(int weight, String... keys) {
+		final Map<String, Integer> weights = new HashMap<>();
+		for (String key : keys) {
+			weights.put(key, weight);
 		}
+		return weights;
 	}
 
-	private static void guessSchematicaFormat(Candidates<SchematicFormat> candidates, @NonNull CompoundTag nbt) {
-		if (nbt.containsKey(SchematicaParser.NBT_MAPPING_SCHEMATICA)) {
-			candidates.increment(SchematicFormat.SCHEMATICA, 10);
-		} else {
-			candidates.exclude(SchematicFormat.SCHEMATICA);
-		}
-		if (nbt.containsKey(SchematicaParser.NBT_WIDTH)) {
-			candidates.increment(SchematicFormat.SCHEMATICA, 1);
-		} else {
-			candidates.exclude(SchematicFormat.SCHEMATICA);
-		}
-		if (nbt.containsKey(SchematicaParser.NBT_HEIGHT)) {
-			candidates.increment(SchematicFormat.SCHEMATICA, 1);
-		} else {
-			candidates.exclude(SchematicFormat.SCHEMATICA);
-		}
-		if (nbt.containsKey(SchematicaParser.NBT_LENGTH)) {
-			candidates.increment(SchematicFormat.SCHEMATICA, 1);
-		} else {
-			candidates.exclude(SchematicFormat.SCHEMATICA);
-		}
+	private static Set<String> keys(String... keys) {
+		return new HashSet<>(Arrays.asList(keys));
 	}
 
-	protected static class Candidates<T> {
-		protected final Map<T, Integer> candidates = new HashMap<>();
-		protected final Set<T> excluded = new HashSet<>();
-
-		public void increment(T candidate, int weight) {
-			if (!excluded.contains(candidate)) {
-				final int currentWeight = candidates.getOrDefault(candidate, 0);
-				candidates.put(candidate, currentWeight + weight);
-				log.trace("Format candidate {} prioritized by {} (total: {})", candidate, weight, currentWeight + weight);
-			}
-		}
-
-		public void exclude(T candidate) {
-			log.trace("Excluded format: {}", candidate);
-			excluded.add(candidate);
-			candidates.remove(candidate);
-		}
+	/**
+	 * A guessed format, along with its score. The higher the score, the more of the keys expected by the format were
+	 * found.
+	 */
+	public static final class Guess {
+		public final @NonNull SchematicFormatProvider format;
+		public final int score;
 
-		public Optional<T> best() {
-			final Optional<Map.Entry<T, Integer>> best = candidates.entrySet().stream().reduce((a, b) -> {
-				if (a.getValue() >= b.getValue()) {
-					return a;
-				} else {
-					return b;
-				}
-			});
-			log.trace("Format candidates: {}", candidates);
-			log.trace("Excluded formats: {}", excluded);
-			log.trace("Best candidate: {}", best);
-			return best.map(Map.Entry::getKey);
+		public Guess(@NonNull SchematicFormatProvider format, int score) {
+			this.format = format;
+			this.score = score;
 		}
 
 		@Override
 		public String toString() {
-			return "Candidates[candidates=" + candidates + ", excluded=" + excluded + ']';
+			return "Guess[format=" + format.name() + ", score=" + score + ']';
 		}
 	}
 }
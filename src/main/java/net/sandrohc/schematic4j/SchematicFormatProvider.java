@@ -0,0 +1,90 @@
+package net.sandrohc.schematic4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import net.sandrohc.schematic4j.exception.ParsingException;
+import net.sandrohc.schematic4j.parser.Parser;
+
+/**
+ * A schematic format, recognized from the keys of its root tag.
+ * <p>
+ * Besides the built-in {@link SchematicFormat}s, providers are discovered with {@link ServiceLoader}, by listing them
+ * in a {@code META-INF/services/net.sandrohc.schematic4j.SchematicFormatProvider} file. They are loaded once, the
+ * first time a format is guessed, and must have a public no-argument constructor.
+ * <p>
+ * A format is a candidate for a root tag when the root has all of its {@link #requiredKeys() required keys}. Its score
+ * is the sum of the {@link #keyWeights() weights} of the keys the root has, plus the {@link #versionScore(Integer)
+ * version score}. The candidate with the highest positive score is the guess, and ties go to the format registered
+ * first.
+ *
+ * @see SchematicFormatRegistry
+ */
+public interface SchematicFormatProvider {
+
+	/**
+	 * Get the name of the format.
+	 *
+	 * @return The name, such as {@code SPONGE_V2}
+	 */
+	@NonNull String name();
+
+	/**
+	 * Get the file extension of the format.
+	 *
+	 * @return The file extension, without the leading dot, or {@code null} if it has none
+	 */
+	default @Nullable String fileExtension() {
+		return null;
+	}
+
+	/**
+	 * Create a parser for the format.
+	 *
+	 * @return The parser
+	 * @throws ParsingException in case the format cannot be parsed
+	 */
+	@NonNull Parser createParser() throws ParsingException;
+
+	/**
+	 * Get the weights of the root keys of the format. The map is read once, when the provider is registered.
+	 *
+	 * @return The weight of each key, which should be positive
+	 */
+	@NonNull Map<String, Integer> keyWeights();
+
+	/**
+	 * Get the root keys without which the input is not of this format. The set is read once, when the provider is
+	 * registered.
+	 *
+	 * @return The required keys
+	 */
+	default @NonNull Set<String> requiredKeys() {
+		return Collections.emptySet();
+	}
+
+	/**
+	 * Get the root key holding the version of the format, whose value is given to {@link #versionScore(Integer)}.
+	 *
+	 * @return The key, or {@code null} if the score does not depend on a version
+	 */
+	default @Nullable String versionKey() {
+		return null;
+	}
+
+	/**
+	 * Get the score of a version of the format.
+	 *
+	 * @param version The value of the {@link #versionKey() version key}, or {@code null} if it is missing or is not
+	 *                an int
+	 * @return The score to add to the weights of the keys
+	 */
+	default int versionScore(@Nullable Integer version) {
+		return 0;
+	}
+}
@@ -0,0 +1,245 @@
+package net.sandrohc.schematic4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sandrohc.schematic4j.SchematicFormat.Guess;
+import net.sandrohc.schematic4j.nbt.io.NBTUtil;
+import net.sandrohc.schematic4j.nbt.io.NBTVisitor;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * The registry of the schematic formats, which guesses the format of an input from the keys of its root tag.
+ * <p>
+ * The built-in {@link SchematicFormat}s are registered first, followed by the {@link SchematicFormatProvider}s found
+ * with {@link ServiceLoader}, once, when this class is initialized. The keys of all the formats are then indexed, so a
+ * guess takes a single pass over the root keys, adding the weights of each one to the scores of every format at once.
+ */
+public final class SchematicFormatRegistry {
+
+	private static final Logger log = LoggerFactory.getLogger(SchematicFormatRegistry.class);
+
+	private static final SchematicFormatProvider[] PROVIDERS = loadProviders();
+
+	/**
+	 * The weights of each key, and the formats which require it.
+	 */
+	private static final Map<String, KeyScores> KEYS = new HashMap<>();
+
+	/**
+	 * The number of keys each format requires.
+	 */
+	private static final int[] REQUIRED_COUNTS = new int[PROVIDERS.length];
+
+	/**
+	 * The version key of each format, and all of them.
+	 */
+	private static final String[] VERSION_KEYS = new String[PROVIDERS.length];
+	private static final Set<String> ALL_VERSION_KEYS = new HashSet<>();
+
+	static {
+		for (int i = 0; i < PROVIDERS.length; i++) {
+			final SchematicFormatProvider provider = PROVIDERS[i];
+			for (Map.Entry<String, Integer> weight : provider.keyWeights().entrySet()) {
+				KEYS.computeIfAbsent(weight.getKey(), key -> new KeyScores()).weights[i] += weight.getValue();
+			}
+			for (String key : provider.requiredKeys()) {
+				KEYS.computeIfAbsent(key, k -> new KeyScores()).require(i);
+				REQUIRED_COUNTS[i]++;
+			}
+			VERSION_KEYS[i] = provider.versionKey();
+			if (VERSION_KEYS[i] != null) {
+				ALL_VERSION_KEYS.add(VERSION_KEYS[i]);
+			}
+		}
+	}
+
+	private SchematicFormatRegistry() {}
+
+	/**
+	 * Get the registered formats, in the order they were registered.
+	 *
+	 * @return The formats, built-in ones first
+	 */
+	public static @NonNull List<SchematicFormatProvider> providers() {
+		return Collections.unmodifiableList(Arrays.asList(PROVIDERS));
+	}
+
+	/**
+	 * Tries to guess the schematic format of the input.
+	 *
+	 * @param nbt The NBT input to check
+	 * @return The format guessed from looking at the input, or {@link SchematicFormat#UNKNOWN} if no known format was
+	 * found, along with its score
+	 */
+	public static @NonNull Guess guess(@Nullable CompoundTag nbt) {
+		if (nbt == null) {
+			return new Guess(SchematicFormat.UNKNOWN, 0);
+		}
+
+		final Guess guess = guess(nbt.keySet(), key -> {
+			final Tag<?> version = nbt.get(key);
+			return version instanceof IntTag ? ((IntTag) version).asInt() : null;
+		});
+		log.debug("Guessed {} as the format", guess);
+		return guess;
+	}
+
+	/**
+	 * Tries to guess the schematic format of the input, without decoding it.
+	 * <p>
+	 * The input is decompressed if needed, and only the keys of the root compound and their tag types are read: all
+	 * values are skipped over, except for the versions of the formats. The guess is the same as
+	 * {@link #guess(CompoundTag)} would make.
+	 *
+	 * @param is The NBT input to check, which is read up to the end of the root tag
+	 * @return The format guessed from looking at the input, or {@link SchematicFormat#UNKNOWN} if no known format was
+	 * found, along with its score
+	 * @throws IOException in case of I/O error
+	 */
+	public static @NonNull Guess sniff(@NonNull InputStream is) throws IOException {
+		final RootKeys rootKeys = new RootKeys();
+		NBTUtil.Reader.read().visit(is, rootKeys);
+		if (!rootKeys.compound) {
+			return new Guess(SchematicFormat.UNKNOWN, 0);
+		}
+
+		final Guess guess = guess(rootKeys.keys, rootKeys.versions::get);
+		log.debug("Sniffed {} as the format", guess);
+		return guess;
+	}
+
+	private static @NonNull Guess guess(@NonNull Set<String> rootKeys, @NonNull Function<String, Integer> versions) {
+		final int[] scores = new int[PROVIDERS.length];
+		final int[] required = new int[PROVIDERS.length];
+		for (String key : rootKeys) {
+			final KeyScores keyScores = KEYS.get(key);
+			if (keyScores == null) {
+				continue;
+			}
+			for (int i = 0; i < scores.length; i++) {
+				scores[i] += keyScores.weights[i];
+			}
+			for (int i : keyScores.requiredBy) {
+				required[i]++;
+			}
+		}
+
+		int best = -1;
+		int bestScore = 0;
+		for (int i = 0; i < scores.length; i++) {
+			if (required[i] < REQUIRED_COUNTS[i]) {
+				continue;
+			}
+			int score = scores[i];
+			if (VERSION_KEYS[i] != null) {
+				score += PROVIDERS[i].versionScore(rootKeys.contains(VERSION_KEYS[i]) ? versions.apply(VERSION_KEYS[i]) : null);
+			}
+			if (score > bestScore) {
+				best = i;
+				bestScore = score;
+			}
+		}
+		return best < 0 ? new Guess(SchematicFormat.UNKNOWN, 0) : new Guess(PROVIDERS[best], bestScore);
+	}
+
+	private static SchematicFormatProvider[] loadProviders() {
+		final List<SchematicFormatProvider> providers = new ArrayList<>();
+		for (SchematicFormat format : SchematicFormat.values()) {
+			if (format != SchematicFormat.UNKNOWN) {
+				providers.add(format);
+			}
+		}
+
+		final Iterator<SchematicFormatProvider> loaded = ServiceLoader.load(SchematicFormatProvider.class,
+				SchematicFormatProvider.class.getClassLoader()).iterator();
+		while (hasNext(loaded)) {
+			try {
+				final SchematicFormatProvider provider = loaded.next();
+				providers.add(provider);
+				log.debug("Registered format {} from {}", provider.name(), provider.getClass().getName());
+			} catch (ServiceConfigurationError e) {
+				log.warn("Failed to load a schematic format provider", e);
+			}
+		}
+		return providers.toArray(new SchematicFormatProvider[0]);
+	}
+
+	private static boolean hasNext(Iterator<SchematicFormatProvider> loaded) {
+		try {
+			return loaded.hasNext();
+		} catch (ServiceConfigurationError e) {
+			log.warn("Failed to look up the schematic format providers", e);
+			return false;
+		}
+	}
+
+	/**
+	 * The weight of a key for each format, and the formats which require it.
+	 */
+	private static final class KeyScores {
+		private final int[] weights = new int[PROVIDERS.length];
+		private int[] requiredBy = new int[0];
+
+		private void require(int provider) {
+			requiredBy = Arrays.copyOf(requiredBy, requiredBy.length + 1);
+			requiredBy[requiredBy.length - 1] = provider;
+		}
+	}
+
+	/**
+	 * Collects the keys of the root compound and the int values of the version keys, skipping over every other value.
+	 */
+	private static final class RootKeys implements NBTVisitor {
+		private final Set<String> keys = new HashSet<>();
+		private final Map<String, Integer> versions = new HashMap<>();
+		private boolean compound;
+		private int depth;
+		private String version;
+
+		@Override
+		public boolean key(String name, byte type) {
+			if (depth == 0) {
+				compound = type == CompoundTag.ID;
+				return compound;
+			}
+			keys.add(name);
+			version = type == IntTag.ID && ALL_VERSION_KEYS.contains(name) ? name : null;
+			return version != null;
+		}
+
+		@Override
+		public void startCompound() {
+			depth++;
+		}
+
+		@Override
+		public void endCompound() {
+			depth--;
+		}
+
+		@Override
+		public void intValue(int value) {
+			versions.put(version, value);
+		}
+	}
+}
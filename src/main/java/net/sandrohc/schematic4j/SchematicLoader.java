@@ -1,12 +1,14 @@
 package net.sandrohc.schematic4j;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
@@ -57,9 +59,62 @@ public class SchematicLoader {
 	 * @see SchematicLoader#load(String)
 	 */
 	public static @NonNull Schematic load(@NonNull Path path) throws ParsingException, IOException {
-		try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
-			return load(is);
-		}
+		final NamedTag rootTag = NBTUtil.Reader.read().from(path);
+		return parse(rootTag);
+	}
+
+	/**
+	 * Load a schematic from a file asynchronously.
+	 * <p>
+	 * The file is read without blocking any thread on the disk, and then decompressed and parsed on the executor.
+	 * Cancelling the returned future stops the work partway through.
+	 *
+	 * @param path     The file to load the schematic from.
+	 * @param executor The executor to decompress and parse the schematic on.
+	 * @return The future loaded and parsed schematic, completed exceptionally with a {@link ParsingException} in case
+	 * no supported parses was found or there was a parsing error, or an {@link IOException} in case of I/O error
+	 * @see SchematicLoader#load(Path)
+	 * @see NBTUtil.Reader#fromAsync(Path, Executor)
+	 */
+	public static @NonNull CompletableFuture<Schematic> loadAsync(@NonNull Path path, @NonNull Executor executor) {
+		final CompletableFuture<NamedTag> rootTag = NBTUtil.Reader.read().fromAsync(path, executor);
+		final CompletableFuture<Schematic> result = new CompletableFuture<>();
+		result.whenComplete((schematic, e) -> rootTag.cancel(false));
+
+		// completed on the executor, so the schematic is parsed there too
+		rootTag.whenComplete((tag, e) -> {
+			if (e != null) {
+				result.completeExceptionally(e);
+			} else if (!result.isDone()) {
+				try {
+					result.complete(parse(tag));
+				} catch (Throwable t) {
+					result.completeExceptionally(t);
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Load many schematics from files concurrently.
+	 * <p>
+	 * The files are loaded on a work-stealing pool, and started in the order they are given as long as their estimated
+	 * heap, from the size of each file, fits in the budget of the options. A file counts against the budget until its
+	 * result is taken from the stream. Their sizes are read before this returns, and the files which cannot be read
+	 * fail right away.
+	 * <p>
+	 * The stream blocks until each result is ready, and should be closed to stop starting the pending files when not
+	 * consumed to the end.
+	 *
+	 * @param paths   The files to load the schematics from.
+	 * @param options The pool and heap budget of the batch.
+	 * @return The result of each file, in completion order
+	 * @see SchematicLoader#load(Path)
+	 * @see BatchOptions
+	 */
+	public static @NonNull Stream<BatchResult> loadAll(@NonNull Collection<Path> paths, @NonNull BatchOptions options) {
+		return BatchLoader.start(paths, options);
 	}
 
 	/**
@@ -102,8 +157,8 @@ public class SchematicLoader {
 	 * @throws ParsingException in case no supported parses was found or there was a parsing error
 	 */
 	public static @NonNull Schematic parse(@Nullable CompoundTag nbt) throws ParsingException {
-		SchematicFormat format = SchematicFormat.guessFormat(nbt);
-		log.info("Found format: {}", format);
+		SchematicFormatProvider format = SchematicFormatRegistry.guess(nbt).format;
+		log.info("Found format: {}", format.name());
 
 		Parser parser = format.createParser();
 		log.debug("Found parser: {}", parser);
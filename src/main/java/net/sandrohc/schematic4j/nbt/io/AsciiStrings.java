@@ -0,0 +1,48 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+/**
+ * Fast paths for strings made only of ASCII characters, which encode to the same bytes in UTF-8, modified UTF-8 and
+ * Latin-1. Nearly all NBT strings are ASCII: keys, block states and entity IDs.
+ */
+final class AsciiStrings {
+
+	private AsciiStrings() {
+	}
+
+	/**
+	 * Check if encoded bytes are all ASCII, i.e. none has its high bit set.
+	 *
+	 * @param bytes  The array holding the encoded bytes
+	 * @param offset The offset of the encoded bytes
+	 * @param length The number of encoded bytes
+	 * @return {@code true} if the bytes can be decoded as Latin-1
+	 */
+	static boolean isAscii(byte[] bytes, int offset, int length) {
+		for (int i = offset, end = offset + length; i < end; i++) {
+			if (bytes[i] < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encode a string into bytes, if it is all ASCII.
+	 *
+	 * @param s         The string to encode
+	 * @param dst       The destination array, with room for the whole string
+	 * @param offset    The offset in the destination array
+	 * @param allowNull Whether the null character is allowed, which modified UTF-8 encodes in two bytes
+	 * @return {@code true} if the string was encoded, {@code false} if it has characters that need the full encoder
+	 */
+	static boolean encode(String s, byte[] dst, int offset, boolean allowNull) {
+		for (int i = 0, length = s.length(); i < length; i++) {
+			char c = s.charAt(i);
+			if (c >= 0x80 || c == 0 && !allowNull) {
+				return false;
+			}
+			dst[offset + i] = (byte) c;
+		}
+		return true;
+	}
+}
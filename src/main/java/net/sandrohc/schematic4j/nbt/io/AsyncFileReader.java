@@ -0,0 +1,93 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Reads a whole file through an {@link AsynchronousFileChannel}, so that no thread blocks on the disk.
+ * <p>
+ * Cancelling the future stops reading after the pending read completes.
+ * <p>
+ * The multi-release JAR replaces this class on Java 21, to read the file on a virtual thread instead.
+ */
+final class AsyncFileReader implements CompletionHandler<Integer, Void> {
+
+	private final AsynchronousFileChannel channel;
+	private final ByteBuffer buffer;
+	private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+	private AsyncFileReader(AsynchronousFileChannel channel, ByteBuffer buffer) {
+		this.channel = channel;
+		this.buffer = buffer;
+	}
+
+	/**
+	 * Read the contents of a file.
+	 *
+	 * @param path The file to read
+	 * @return The future contents of the file
+	 */
+	static CompletableFuture<byte[]> read(Path path) {
+		AsynchronousFileChannel channel = null;
+		try {
+			channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("file is too large to be read: " + size + " bytes");
+			}
+			AsyncFileReader reader = new AsyncFileReader(channel, ByteBuffer.allocate((int) size));
+			reader.readNext();
+			return reader.future;
+		} catch (IOException | RuntimeException e) {
+			closeQuietly(channel);
+			CompletableFuture<byte[]> failed = new CompletableFuture<>();
+			failed.completeExceptionally(e);
+			return failed;
+		}
+	}
+
+	@Override
+	public void completed(Integer read, Void attachment) {
+		if (future.isDone()) {
+			// cancelled
+			closeQuietly(channel);
+		} else if (read < 0 || !buffer.hasRemaining()) {
+			// the file may have shrunk since its size was read
+			closeQuietly(channel);
+			byte[] contents = buffer.array();
+			future.complete(buffer.hasRemaining() ? Arrays.copyOf(contents, buffer.position()) : contents);
+		} else {
+			readNext();
+		}
+	}
+
+	@Override
+	public void failed(Throwable e, Void attachment) {
+		closeQuietly(channel);
+		future.completeExceptionally(e);
+	}
+
+	private void readNext() {
+		if (!buffer.hasRemaining()) {
+			// empty file
+			completed(0, null);
+			return;
+		}
+		channel.read(buffer, buffer.position(), null, this);
+	}
+
+	private static void closeQuietly(AsynchronousFileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			} catch (IOException ignored) {
+			}
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Input stream that stops reading once a future is completed elsewhere, typically cancelled, so that a decoder
+ * reading from it stops at its next refill.
+ */
+final class CancellableInputStream extends FilterInputStream {
+
+	private final Future<?> future;
+
+	CancellableInputStream(InputStream in, Future<?> future) {
+		super(in);
+		this.future = future;
+	}
+
+	@Override
+	public int read() throws IOException {
+		checkCancelled();
+		return super.read();
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		checkCancelled();
+		return super.read(b, off, len);
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		checkCancelled();
+		return super.skip(n);
+	}
+
+	private void checkCancelled() {
+		if (future.isDone()) {
+			throw new CancellationException("read cancelled");
+		}
+	}
+}
@@ -0,0 +1,211 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Output stream that compresses to the GZIP format, like {@link GZIPOutputStream}, with a deflater and buffers
+ * acquired from a {@link NBTResourcePool}.
+ * <p>
+ * Small writes, like the ones of the NBT output streams, are gathered in a buffer and deflated in large chunks.
+ * {@link #finish()} writes the remaining compressed data and the GZIP trailer, and {@link #end()} gives the deflater
+ * and the buffers back to the pool without closing the underlying stream.
+ */
+public final class CompressingOutputStream extends OutputStream {
+
+	/**
+	 * The default size of the buffers holding the uncompressed and the compressed bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	static final byte[] HEADER = {
+			(byte) GZIPInputStream.GZIP_MAGIC, (byte) (GZIPInputStream.GZIP_MAGIC >> 8), Deflater.DEFLATED,
+			0, // flags
+			0, 0, 0, 0, // modification time
+			0, // extra flags
+			(byte) 0xFF, // operating system, unknown
+	};
+
+	private final OutputStream out;
+	private final NBTResourcePool pool;
+	private final Deflater deflater;
+	private final CRC32 crc = new CRC32();
+	private byte[] input;
+	private int count;
+	private byte[] output;
+	private boolean finished;
+
+	/**
+	 * Compress to a stream, with the default compression level, buffer size and pool.
+	 *
+	 * @param out The stream to write the compressed bytes to
+	 * @throws IOException In case of error writing the GZIP header
+	 */
+	public CompressingOutputStream(OutputStream out) throws IOException {
+		this(out, Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE, NBTResourcePool.getDefault());
+	}
+
+	/**
+	 * Compress to a stream.
+	 *
+	 * @param out        The stream to write the compressed bytes to
+	 * @param level      The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param bufferSize The minimum size of the buffers holding the uncompressed and the compressed bytes
+	 * @param pool       The pool to acquire the deflater and the buffers from
+	 * @throws IOException In case of error writing the GZIP header
+	 */
+	public CompressingOutputStream(OutputStream out, int level, int bufferSize, NBTResourcePool pool) throws IOException {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("buffer size must be positive");
+		}
+		this.out = out;
+		this.pool = pool;
+		this.deflater = pool.acquireDeflater(level, true);
+		this.input = pool.acquireBuffer(bufferSize);
+		this.output = pool.acquireBuffer(bufferSize);
+		try {
+			out.write(HEADER);
+		} catch (IOException e) {
+			end();
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureWritable();
+		if (count == input.length) {
+			deflateInput();
+		}
+		input[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureWritable();
+		if (len >= input.length) {
+			// large writes skip the buffer
+			deflateInput();
+			deflate(b, off, len);
+			return;
+		}
+		if (len > input.length - count) {
+			deflateInput();
+		}
+		System.arraycopy(b, off, input, count, len);
+		count += len;
+	}
+
+	/**
+	 * Write all the buffered data, so that it can be decompressed, and flush the underlying stream.
+	 *
+	 * @throws IOException In case of error writing to the underlying stream
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (!finished) {
+			deflateInput();
+			int n;
+			do {
+				n = deflater.deflate(output, 0, output.length, Deflater.SYNC_FLUSH);
+				out.write(output, 0, n);
+			} while (n == output.length);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write the remaining compressed data and the GZIP trailer, without closing the underlying stream. Nothing can be
+	 * written afterwards.
+	 *
+	 * @throws IOException In case of error writing to the underlying stream
+	 */
+	public void finish() throws IOException {
+		ensureOpen();
+		if (finished) {
+			return;
+		}
+		deflateInput();
+		deflater.finish();
+		while (!deflater.finished()) {
+			out.write(output, 0, deflater.deflate(output, 0, output.length));
+		}
+
+		byte[] trailer = new byte[8];
+		writeIntLE(trailer, 0, (int) crc.getValue());
+		writeIntLE(trailer, 4, (int) deflater.getBytesRead());
+		out.write(trailer);
+		finished = true;
+	}
+
+	/**
+	 * Give the deflater and the buffers back to the pool, without finishing nor closing the underlying stream. The
+	 * stream cannot be written to anymore.
+	 */
+	public void end() {
+		if (input == null) {
+			return;
+		}
+		pool.releaseDeflater(deflater, true);
+		pool.releaseBuffer(input);
+		pool.releaseBuffer(output);
+		input = null;
+		output = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (input == null) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			end();
+			out.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (input == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	private void ensureWritable() throws IOException {
+		ensureOpen();
+		if (finished) {
+			throw new IOException("write beyond end of stream");
+		}
+	}
+
+	private void deflateInput() throws IOException {
+		if (count > 0) {
+			deflate(input, 0, count);
+			count = 0;
+		}
+	}
+
+	private void deflate(byte[] b, int off, int len) throws IOException {
+		crc.update(b, off, len);
+		deflater.setInput(b, off, len);
+		while (!deflater.needsInput()) {
+			int n = deflater.deflate(output, 0, output.length);
+			if (n > 0) {
+				out.write(output, 0, n);
+			}
+		}
+	}
+
+	static void writeIntLE(byte[] b, int off, int value) {
+		b[off] = (byte) value;
+		b[off + 1] = (byte) (value >> 8);
+		b[off + 2] = (byte) (value >> 16);
+		b[off + 3] = (byte) (value >> 24);
+	}
+}
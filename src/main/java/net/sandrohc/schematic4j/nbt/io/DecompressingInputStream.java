@@ -0,0 +1,368 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Input stream that detects and decompresses GZIP and zlib streams, and passes anything else through unchanged.
+ * <p>
+ * Compressed bytes are read from the source in large chunks, and inflated straight into the arrays passed to
+ * {@link #read(byte[], int, int)}, such as the window of an {@link NBTDecoder}, without any intermediate copies.
+ * Concatenated GZIP members are read as a single stream, like {@link GZIPInputStream} does.
+ * <p>
+ * The inflater and the buffer are acquired from a {@link NBTResourcePool}, and given back by {@link #end()}.
+ */
+public final class DecompressingInputStream extends InputStream {
+
+	/**
+	 * The default size of the buffer holding the compressed bytes.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+
+	/**
+	 * The compression formats detected.
+	 */
+	public enum Compression {
+		/**
+		 * Not compressed.
+		 */
+		NONE,
+		/**
+		 * GZIP compressed, as most schematic files are.
+		 */
+		GZIP,
+		/**
+		 * zlib compressed, as region file chunks are.
+		 */
+		ZLIB,
+	}
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final InputStream source;
+	private final NBTResourcePool pool;
+	private byte[] input;
+	private int position;
+	private int limit;
+	private final Compression compression;
+	private final Inflater inflater;
+	private final CRC32 crc;
+	private boolean eof;
+	private byte[] single;
+
+	/**
+	 * Detect the compression of a stream, using the default buffer size and pool.
+	 *
+	 * @param source The stream to decompress
+	 * @throws IOException In case of error reading from the stream, or if the GZIP header is malformed
+	 */
+	public DecompressingInputStream(InputStream source) throws IOException {
+		this(source, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Detect the compression of a stream, using the default pool.
+	 *
+	 * @param source     The stream to decompress
+	 * @param bufferSize The size of the buffer holding the compressed bytes
+	 * @throws IOException In case of error reading from the stream, or if the GZIP header is malformed
+	 */
+	public DecompressingInputStream(InputStream source, int bufferSize) throws IOException {
+		this(source, bufferSize, NBTResourcePool.getDefault());
+	}
+
+	/**
+	 * Detect the compression of a stream.
+	 *
+	 * @param source     The stream to decompress
+	 * @param bufferSize The minimum size of the buffer holding the compressed bytes
+	 * @param pool       The pool to acquire the inflater and the buffer from
+	 * @throws IOException In case of error reading from the stream, or if the GZIP header is malformed
+	 */
+	public DecompressingInputStream(InputStream source, int bufferSize, NBTResourcePool pool) throws IOException {
+		if (bufferSize < 2) {
+			throw new IllegalArgumentException("buffer size must be at least 2");
+		}
+		this.source = source;
+		this.pool = pool;
+		this.input = pool.acquireBuffer(bufferSize);
+
+		try {
+			while (limit < 2) {
+				int read = source.read(input, limit, input.length - limit);
+				if (read < 0) {
+					break;
+				}
+				limit += read;
+			}
+		} catch (IOException e) {
+			pool.releaseBuffer(input);
+			throw e;
+		}
+		this.compression = detect(input, limit);
+
+		switch (compression) {
+			case GZIP:
+				inflater = pool.acquireInflater(true);
+				crc = new CRC32();
+				try {
+					readGzipHeader();
+				} catch (IOException e) {
+					end();
+					throw e;
+				}
+				break;
+			case ZLIB:
+				inflater = pool.acquireInflater(false);
+				crc = null;
+				break;
+			default:
+				inflater = null;
+				crc = null;
+		}
+	}
+
+	/**
+	 * Detect the compression format from the first bytes of a stream.
+	 *
+	 * @param signature The first bytes of the stream
+	 * @param length    The number of bytes available, which may be less than two for very short streams
+	 * @return The compression format
+	 */
+	public static Compression detect(byte[] signature, int length) {
+		if (length < 2) {
+			return Compression.NONE;
+		}
+		int b0 = signature[0] & 0xFF;
+		int b1 = signature[1] & 0xFF;
+		if ((b0 | b1 << 8) == GZIPInputStream.GZIP_MAGIC) {
+			return Compression.GZIP;
+		}
+		// deflate method, window of at most 32K, and a header checksum that is a multiple of 31
+		if ((b0 & 0x0F) == 8 && (b0 >> 4) <= 7 && (b0 << 8 | b1) % 31 == 0) {
+			return Compression.ZLIB;
+		}
+		return Compression.NONE;
+	}
+
+	/**
+	 * Get the compression format detected.
+	 *
+	 * @return The compression format
+	 */
+	public Compression getCompression() {
+		return compression;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (single == null) {
+			single = new byte[1];
+		}
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (len == 0) {
+			return 0;
+		}
+		if (inflater == null) {
+			if (position < limit) {
+				int n = Math.min(len, limit - position);
+				System.arraycopy(input, position, b, off, n);
+				position += n;
+				return n;
+			}
+			return source.read(b, off, len);
+		}
+
+		try {
+			while (!eof) {
+				int n = inflater.inflate(b, off, len);
+				if (n > 0) {
+					if (crc != null) {
+						crc.update(b, off, n);
+					}
+					return n;
+				}
+				if (inflater.finished()) {
+					finishMember();
+				} else if (inflater.needsDictionary()) {
+					throw new ZipException("preset dictionaries are not supported");
+				} else if (inflater.needsInput()) {
+					if (!fill()) {
+						throw new EOFException("Unexpected end of " + compression + " input stream");
+					}
+					inflater.setInput(input, position, limit - position);
+					position = limit;
+				}
+			}
+			return -1;
+		} catch (DataFormatException e) {
+			String message = e.getMessage();
+			throw new ZipException(message != null ? message : "Invalid " + compression + " data format");
+		}
+	}
+
+	@Override
+	public int available() throws IOException {
+		ensureOpen();
+		if (inflater == null) {
+			return limit - position + source.available();
+		}
+		return eof ? 0 : 1;
+	}
+
+	/**
+	 * Give the inflater and the buffer back to the pool, without closing the source. The stream cannot be read
+	 * anymore.
+	 */
+	public void end() {
+		if (input == null) {
+			return;
+		}
+		if (inflater != null) {
+			pool.releaseInflater(inflater, compression == Compression.GZIP);
+		}
+		pool.releaseBuffer(input);
+		input = null;
+		eof = true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		end();
+		source.close();
+	}
+
+	private void ensureOpen() throws IOException {
+		if (input == null) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	/**
+	 * Handle the end of the deflate data: check the GZIP trailer, and start the next member if there is one.
+	 */
+	private void finishMember() throws IOException {
+		// give back the bytes the inflater did not consume
+		position = limit - inflater.getRemaining();
+
+		if (compression != Compression.GZIP) {
+			eof = true;
+			return;
+		}
+
+		long expectedCrc = readIntLE() & 0xFFFFFFFFL;
+		long expectedSize = readIntLE() & 0xFFFFFFFFL;
+		if (expectedCrc != crc.getValue() || expectedSize != (inflater.getBytesWritten() & 0xFFFFFFFFL)) {
+			throw new ZipException("Corrupt GZIP trailer");
+		}
+
+		// concatenated members are read as a single stream
+		if (fill() && (limit - position >= 2 || fillMore())
+				&& ((input[position] & 0xFF) | (input[position + 1] & 0xFF) << 8) == GZIPInputStream.GZIP_MAGIC) {
+			inflater.reset();
+			crc.reset();
+			readGzipHeader();
+		} else {
+			eof = true;
+		}
+	}
+
+	private void readGzipHeader() throws IOException {
+		if (readUShortLE() != GZIPInputStream.GZIP_MAGIC) {
+			throw new ZipException("Not in GZIP format");
+		}
+		if (readUByte() != 8) {
+			throw new ZipException("Unsupported compression method");
+		}
+		int flags = readUByte();
+		skipBytes(6); // modification time, extra flags and OS
+		if ((flags & FEXTRA) == FEXTRA) {
+			skipBytes(readUShortLE());
+		}
+		if ((flags & FNAME) == FNAME) {
+			while (readUByte() != 0) {
+				// skip the file name
+			}
+		}
+		if ((flags & FCOMMENT) == FCOMMENT) {
+			while (readUByte() != 0) {
+				// skip the comment
+			}
+		}
+		if ((flags & FHCRC) == FHCRC) {
+			skipBytes(2);
+		}
+	}
+
+	private int readUByte() throws IOException {
+		if (!fill()) {
+			throw new EOFException();
+		}
+		return input[position++] & 0xFF;
+	}
+
+	private int readUShortLE() throws IOException {
+		return readUByte() | readUByte() << 8;
+	}
+
+	private int readIntLE() throws IOException {
+		return readUShortLE() | readUShortLE() << 16;
+	}
+
+	private void skipBytes(int n) throws IOException {
+		while (n-- > 0) {
+			readUByte();
+		}
+	}
+
+	/**
+	 * Make sure the input buffer has at least one byte.
+	 *
+	 * @return {@code false} if the source has reached its end
+	 */
+	private boolean fill() throws IOException {
+		if (position < limit) {
+			return true;
+		}
+		int read = 0;
+		while (read == 0) {
+			read = source.read(input, 0, input.length);
+		}
+		position = 0;
+		limit = Math.max(read, 0);
+		return read > 0;
+	}
+
+	/**
+	 * Make sure the input buffer has at least two bytes, moving the remaining byte to the start if needed.
+	 *
+	 * @return {@code false} if the source has reached its end
+	 */
+	private boolean fillMore() throws IOException {
+		input[0] = input[position];
+		position = 0;
+		limit = 1;
+		int read = 0;
+		while (read == 0) {
+			read = source.read(input, 1, input.length - 1);
+		}
+		if (read > 0) {
+			limit += read;
+		}
+		return limit >= 2;
+	}
+}
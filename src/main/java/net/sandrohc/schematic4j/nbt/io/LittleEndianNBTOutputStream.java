@@ -6,54 +6,20 @@ import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
 
-import net.sandrohc.schematic4j.nbt.ExceptionTriConsumer;
 import net.sandrohc.schematic4j.nbt.MaxDepthIO;
-import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
-import net.sandrohc.schematic4j.nbt.tag.ByteTag;
-import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
-import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
-import net.sandrohc.schematic4j.nbt.tag.EndTag;
-import net.sandrohc.schematic4j.nbt.tag.FloatTag;
-import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
-import net.sandrohc.schematic4j.nbt.tag.IntTag;
-import net.sandrohc.schematic4j.nbt.tag.ListTag;
-import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
-import net.sandrohc.schematic4j.nbt.tag.LongTag;
-import net.sandrohc.schematic4j.nbt.tag.ShortTag;
-import net.sandrohc.schematic4j.nbt.tag.StringTag;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
 
+/**
+ * Little endian NBT output stream, writing tags through a {@link NBTEncoder} like {@link NBTOutputStream} does.
+ */
 public class LittleEndianNBTOutputStream implements DataOutput, NBTOutput, MaxDepthIO, Closeable {
 
 	private final DataOutputStream output;
-
-	private static Map<Byte, ExceptionTriConsumer<LittleEndianNBTOutputStream, Tag<?>, Integer, IOException>> writers = new HashMap<>();
-	private static Map<Class<?>, Byte> classIdMapping = new HashMap<>();
-
-	static {
-		put(EndTag.ID, (o, t, d) -> {}, EndTag.class);
-		put(ByteTag.ID, (o, t, d) -> writeByte(o, t), ByteTag.class);
-		put(ShortTag.ID, (o, t, d) -> writeShort(o, t), ShortTag.class);
-		put(IntTag.ID, (o, t, d) -> writeInt(o, t), IntTag.class);
-		put(LongTag.ID, (o, t, d) -> writeLong(o, t), LongTag.class);
-		put(FloatTag.ID, (o, t, d) -> writeFloat(o, t), FloatTag.class);
-		put(DoubleTag.ID, (o, t, d) -> writeDouble(o, t), DoubleTag.class);
-		put(ByteArrayTag.ID, (o, t, d) -> writeByteArray(o, t), ByteArrayTag.class);
-		put(StringTag.ID, (o, t, d) -> writeString(o, t), StringTag.class);
-		put(ListTag.ID, LittleEndianNBTOutputStream::writeList, ListTag.class);
-		put(CompoundTag.ID, LittleEndianNBTOutputStream::writeCompound, CompoundTag.class);
-		put(IntArrayTag.ID, (o, t, d) -> writeIntArray(o, t), IntArrayTag.class);
-		put(LongArrayTag.ID, (o, t, d) -> writeLongArray(o, t), LongArrayTag.class);
-	}
-
-	private static void put(byte id, ExceptionTriConsumer<LittleEndianNBTOutputStream, Tag<?>, Integer, IOException> f, Class<?> clazz) {
-		writers.put(id, f);
-		classIdMapping.put(clazz, id);
-	}
+	private byte[] stringBuffer;
+	private NBTEncoder encoder;
 
 	public LittleEndianNBTOutputStream(OutputStream out) {
 		output = new DataOutputStream(out);
@@ -64,102 +30,28 @@ public class LittleEndianNBTOutputStream implements DataOutput, NBTOutput, MaxDe
 	}
 
 	public void writeTag(NamedTag tag, int maxDepth) throws IOException {
-		writeByte(tag.getTag().getID());
-		if (tag.getTag().getID() != 0) {
-			writeUTF(tag.getName() == null ? "" : tag.getName());
-		}
-		writeRawTag(tag.getTag(), maxDepth);
+		NBTEncoder encoder = encoder();
+		encoder.writeTag(tag, maxDepth);
+		encoder.drain();
 	}
 
 	public void writeTag(Tag<?> tag, int maxDepth) throws IOException {
-		writeByte(tag.getID());
-		if (tag.getID() != 0) {
-			writeUTF("");
-		}
-		writeRawTag(tag, maxDepth);
+		NBTEncoder encoder = encoder();
+		encoder.writeTag(tag, maxDepth);
+		encoder.drain();
 	}
 
 	public void writeRawTag(Tag<?> tag, int maxDepth) throws IOException {
-		ExceptionTriConsumer<LittleEndianNBTOutputStream, Tag<?>, Integer, IOException> f;
-		if ((f = writers.get(tag.getID())) == null) {
-			throw new IOException("invalid tag \"" + tag.getID() + "\"");
-		}
-		f.accept(this, tag, maxDepth);
-	}
-
-	static byte idFromClass(Class<?> clazz) {
-		Byte id = classIdMapping.get(clazz);
-		if (id == null) {
-			throw new IllegalArgumentException("unknown Tag class " + clazz.getName());
-		}
-		return id;
-	}
-
-	private static void writeByte(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeByte(((ByteTag) tag).asByte());
-	}
-	
-	private static void writeShort(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeShort(((ShortTag) tag).asShort());
-	}
-	
-	private static void writeInt(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((IntTag) tag).asInt());
-	}
-
-	private static void writeLong(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeLong(((LongTag) tag).asLong());
-	}
-
-	private static void writeFloat(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeFloat(((FloatTag) tag).asFloat());
+		NBTEncoder encoder = encoder();
+		encoder.writeRawTag(tag, maxDepth);
+		encoder.drain();
 	}
 
-	private static void writeDouble(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeDouble(((DoubleTag) tag).asDouble());
-	}
-
-	private static void writeString(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeUTF(((StringTag) tag).getValue());
-	}
-
-	private static void writeByteArray(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((ByteArrayTag) tag).length());
-		out.write(((ByteArrayTag) tag).getValue());
-	}
-
-	private static void writeIntArray(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((IntArrayTag) tag).length());
-		for (int i : ((IntArrayTag) tag).getValue()) {
-			out.writeInt(i);
+	private NBTEncoder encoder() {
+		if (encoder == null) {
+			encoder = new NBTEncoder(output, ByteOrder.LITTLE_ENDIAN, new byte[NBTEncoder.DEFAULT_BUFFER_SIZE]);
 		}
-	}
-
-	private static void writeLongArray(LittleEndianNBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((LongArrayTag) tag).length());
-		for (long l : ((LongArrayTag) tag).getValue()) {
-			out.writeLong(l);
-		}
-	}
-
-	private static void writeList(LittleEndianNBTOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
-		out.writeByte(idFromClass(((ListTag<?>) tag).getTypeClass()));
-		out.writeInt(((ListTag<?>) tag).size());
-		for (Tag<?> t : ((ListTag<?>) tag)) {
-			out.writeRawTag(t, out.decrementMaxDepth(maxDepth));
-		}
-	}
-
-	private static void writeCompound(LittleEndianNBTOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
-		for (Map.Entry<String, Tag<?>> entry : (CompoundTag) tag) {
-			if (entry.getValue().getID() == 0) {
-				throw new IOException("end tag not allowed");
-			}
-			out.writeByte(entry.getValue().getID());
-			out.writeUTF(entry.getKey());
-			out.writeRawTag(entry.getValue(), out.decrementMaxDepth(maxDepth));
-		}
-		out.writeByte(0);
+		return encoder;
 	}
 
 	@Override
@@ -239,6 +131,19 @@ public class LittleEndianNBTOutputStream implements DataOutput, NBTOutput, MaxDe
 
 	@Override
 	public void writeUTF(String s) throws IOException {
+		int length = s.length();
+		if (length <= 0xFFFF) {
+			if (stringBuffer == null || stringBuffer.length < length + 2) {
+				stringBuffer = new byte[Math.max(length + 2, 256)];
+			}
+			// ASCII strings are written in a single pass, without going through the UTF-8 encoder
+			if (AsciiStrings.encode(s, stringBuffer, 2, true)) {
+				stringBuffer[0] = (byte) length;
+				stringBuffer[1] = (byte) (length >>> 8);
+				write(stringBuffer, 0, length + 2);
+				return;
+			}
+		}
 		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
 		writeShort(bytes.length);
 		write(bytes);
@@ -0,0 +1,200 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+
+/**
+ * Reads the elements of a byte, int or long array as they are decoded, either one at a time or in bulk.
+ * <p>
+ * A reader is only valid during the {@link NBTVisitor} event it is passed to, and is reused for the following arrays.
+ *
+ * @see NBTVisitor#longArray(NBTArrayReader)
+ */
+public final class NBTArrayReader {
+
+	private final NBTDecoder decoder;
+	private byte id;
+	private int length;
+	private int remaining;
+
+	NBTArrayReader(NBTDecoder decoder) {
+		this.decoder = decoder;
+	}
+
+	/**
+	 * Start reading an array.
+	 */
+	void reset(byte id, int length) {
+		this.id = id;
+		this.length = length;
+		this.remaining = length;
+	}
+
+	/**
+	 * Skip over the elements not read, and invalidate the reader.
+	 */
+	void finish() throws IOException {
+		decoder.skip((long) remaining * elementSize());
+		id = 0;
+		remaining = 0;
+	}
+
+	/**
+	 * Get the tag ID of the array.
+	 *
+	 * @return {@link ByteArrayTag#ID}, {@link IntArrayTag#ID} or {@link LongArrayTag#ID}
+	 */
+	public byte getID() {
+		return id;
+	}
+
+	/**
+	 * Get the number of elements in the array.
+	 *
+	 * @return The array length
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Get the number of elements not read yet.
+	 *
+	 * @return The number of remaining elements
+	 */
+	public int remaining() {
+		return remaining;
+	}
+
+	/**
+	 * Read the next element of a byte array.
+	 *
+	 * @return The element read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public byte nextByte() throws IOException {
+		take(ByteArrayTag.ID, 1);
+		return decoder.readByte();
+	}
+
+	/**
+	 * Read the next element of an int array.
+	 *
+	 * @return The element read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public int nextInt() throws IOException {
+		take(IntArrayTag.ID, 1);
+		return decoder.readInt();
+	}
+
+	/**
+	 * Read the next element of a long array.
+	 *
+	 * @return The element read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public long nextLong() throws IOException {
+		take(LongArrayTag.ID, 1);
+		return decoder.readLong();
+	}
+
+	/**
+	 * Read the next elements of a byte array.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of elements to read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public void read(byte[] b, int off, int len) throws IOException {
+		take(ByteArrayTag.ID, len);
+		decoder.readFully(b, off, len);
+	}
+
+	/**
+	 * Read the next elements of an int array.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of elements to read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public void read(int[] b, int off, int len) throws IOException {
+		take(IntArrayTag.ID, len);
+		decoder.readFully(b, off, len);
+	}
+
+	/**
+	 * Read the next elements of a long array.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of elements to read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public void read(long[] b, int off, int len) throws IOException {
+		take(LongArrayTag.ID, len);
+		decoder.readFully(b, off, len);
+	}
+
+	/**
+	 * Read the remaining elements of a byte array.
+	 *
+	 * @return The elements read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public byte[] readBytes() throws IOException {
+		byte[] b = new byte[remaining];
+		read(b, 0, b.length);
+		return b;
+	}
+
+	/**
+	 * Read the remaining elements of an int array.
+	 *
+	 * @return The elements read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public int[] readInts() throws IOException {
+		int[] b = new int[remaining];
+		read(b, 0, b.length);
+		return b;
+	}
+
+	/**
+	 * Read the remaining elements of a long array.
+	 *
+	 * @return The elements read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public long[] readLongs() throws IOException {
+		long[] b = new long[remaining];
+		read(b, 0, b.length);
+		return b;
+	}
+
+	private void take(byte expectedId, int n) {
+		if (id != expectedId) {
+			throw new IllegalStateException(id == 0 ? "array reader is no longer valid" : "cannot read tag id \"" + expectedId + "\" elements from array with tag id \"" + id + "\"");
+		}
+		if (n < 0 || n > remaining) {
+			throw new IllegalArgumentException("cannot read " + n + " elements, only " + remaining + " remaining");
+		}
+		remaining -= n;
+	}
+
+	private int elementSize() {
+		switch (id) {
+			case IntArrayTag.ID:
+				return Integer.BYTES;
+			case LongArrayTag.ID:
+				return Long.BYTES;
+			default:
+				return Byte.BYTES;
+		}
+	}
+}
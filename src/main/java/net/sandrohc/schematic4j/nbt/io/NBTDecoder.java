@@ -0,0 +1,1137 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import net.sandrohc.schematic4j.nbt.MaxDepthIO;
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ByteTag;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
+import net.sandrohc.schematic4j.nbt.tag.EndTag;
+import net.sandrohc.schematic4j.nbt.tag.FloatTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongTag;
+import net.sandrohc.schematic4j.nbt.tag.ShortTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Binary NBT decoder backed by a {@link ByteBuffer}, for both byte orders.
+ * <p>
+ * The decoder either works on a buffer holding the whole payload, or on a window that is refilled from an
+ * {@link InputStream} as decoding progresses. In the latter case the decoder reads ahead of what it has decoded, so
+ * the source stream must not be read from directly afterwards; use {@link #asInputStream()} instead.
+ * <p>
+ * Strings are decoded as modified UTF-8 in big endian mode (Java Edition), and as standard UTF-8 in little endian
+ * mode (Bedrock Edition).
+ *
+ * @see NBTInputStream
+ * @see LittleEndianNBTInputStream
+ */
+public final class NBTDecoder implements NBTInput, MaxDepthIO {
+
+	/**
+	 * The default size of the window used when decoding from an input stream.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/**
+	 * The number of elements of a list of numbers read from a stream before its array is grown.
+	 */
+	private static final int LIST_CHUNK = 8192;
+
+	/**
+	 * The tag classes, indexed by tag ID.
+	 */
+	private static final Class<?>[] ID_CLASSES = {
+			EndTag.class,
+			ByteTag.class,
+			ShortTag.class,
+			IntTag.class,
+			LongTag.class,
+			FloatTag.class,
+			DoubleTag.class,
+			ByteArrayTag.class,
+			StringTag.class,
+			ListTag.class,
+			CompoundTag.class,
+			IntArrayTag.class,
+			LongArrayTag.class,
+	};
+
+	private final ByteBuffer buffer;
+	private final InputStream source;
+	private final boolean modifiedUtf8;
+	private InputStream view;
+	private NBTArrayReader arrayReader;
+	private NBTStringCache stringCache;
+	private byte[] stringBuffer;
+	private long viewThreshold = -1;
+	private ReadLimits limits = ReadLimits.unlimited();
+	private long bytesAllocated;
+	private long elements;
+
+	/**
+	 * Decode the remaining bytes of a buffer, using the buffer's byte order.
+	 *
+	 * @param buffer The buffer holding the NBT payload
+	 */
+	public NBTDecoder(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.source = null;
+		this.modifiedUtf8 = buffer.order() == ByteOrder.BIG_ENDIAN;
+	}
+
+	/**
+	 * Decode from an input stream.
+	 *
+	 * @param source The input stream to read from
+	 * @param order  The byte order of the payload
+	 */
+	public NBTDecoder(InputStream source, ByteOrder order) {
+		this(source, order, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Decode from an input stream.
+	 *
+	 * @param source     The input stream to read from
+	 * @param order      The byte order of the payload
+	 * @param bufferSize The size of the window refilled from the input stream
+	 */
+	public NBTDecoder(InputStream source, ByteOrder order, int bufferSize) {
+		this(source, order, new byte[checkBufferSize(bufferSize)]);
+	}
+
+	/**
+	 * Decode from an input stream, using the specified array as the window, such as one acquired from a
+	 * {@link NBTResourcePool}.
+	 *
+	 * @param source The input stream to read from
+	 * @param order  The byte order of the payload
+	 * @param window The window refilled from the input stream
+	 */
+	NBTDecoder(InputStream source, ByteOrder order, byte[] window) {
+		checkBufferSize(window.length);
+		this.buffer = ByteBuffer.wrap(window).order(order);
+		this.buffer.limit(0);
+		this.source = source;
+		this.modifiedUtf8 = order == ByteOrder.BIG_ENDIAN;
+	}
+
+	private static int checkBufferSize(int bufferSize) {
+		if (bufferSize < Long.BYTES) {
+			throw new IllegalArgumentException("buffer size must be at least " + Long.BYTES);
+		}
+		return bufferSize;
+	}
+
+	/**
+	 * Get the tag class for a tag ID.
+	 *
+	 * @param id The tag ID
+	 * @return The tag class, or {@code null} if the ID is unknown
+	 */
+	public static Class<?> classFromId(byte id) {
+		return id >= 0 && id < ID_CLASSES.length ? ID_CLASSES[id] : null;
+	}
+
+	/**
+	 * Decode arrays of at least {@code minBytes} bytes as read-only views over the decoder's buffer, instead of copying
+	 * them. Only applies when decoding from a buffer holding the whole payload, such as a memory-mapped file.
+	 *
+	 * @param minBytes The minimum payload size of the arrays to decode as views, or {@code -1} to always copy them
+	 * @see ByteArrayTag#asBuffer()
+	 * @see IntArrayTag#asBuffer()
+	 * @see LongArrayTag#asBuffer()
+	 */
+	public void setViewThreshold(long minBytes) {
+		this.viewThreshold = minBytes;
+	}
+
+	/**
+	 * Intern the compound keys and short string values decoded, so that repeated strings share the same instance and
+	 * are only decoded once.
+	 *
+	 * @param stringCache The cache to intern strings in, or {@code null} to disable interning
+	 */
+	public void setStringCache(NBTStringCache stringCache) {
+		this.stringCache = stringCache;
+	}
+
+	/**
+	 * Limit the memory the tags read may allocate. Declared lengths are checked before allocating anything for them.
+	 *
+	 * @param limits The limits
+	 */
+	public void setLimits(ReadLimits limits) {
+		this.limits = limits;
+	}
+
+	/**
+	 * Get the estimated number of bytes allocated by the tags read so far.
+	 *
+	 * @return The bytes allocated
+	 * @see ReadLimits
+	 */
+	public long getBytesAllocated() {
+		return bytesAllocated;
+	}
+
+	/**
+	 * Get the number of tags read so far, including list elements and compound entries.
+	 *
+	 * @return The element count
+	 */
+	public long getElementCount() {
+		return elements;
+	}
+
+	/**
+	 * Get the byte order of the payload.
+	 *
+	 * @return The byte order
+	 */
+	public ByteOrder order() {
+		return buffer.order();
+	}
+
+	@Override
+	public NamedTag readTag(int maxDepth) throws IOException {
+		byte id = readByte();
+		return new NamedTag(readString(), readTag(id, maxDepth));
+	}
+
+	@Override
+	public Tag<?> readRawTag(int maxDepth) throws IOException {
+		byte id = readByte();
+		return readTag(id, maxDepth);
+	}
+
+	/**
+	 * Read a named tag, keeping only the paths selected by a filter. Unselected subtrees are skipped over without
+	 * creating any tags.
+	 *
+	 * @param maxDepth Maximum depth before failing deserialization
+	 * @param filter   The paths to read
+	 * @return The named tag read
+	 * @throws IOException In case of error reading from the input, or if a tag ID is invalid
+	 */
+	public NamedTag readTag(int maxDepth, NBTPathFilter filter) throws IOException {
+		byte id = readByte();
+		return new NamedTag(readString(), readTag(id, maxDepth, filter));
+	}
+
+	private Tag<?> readTag(byte id, int maxDepth, NBTPathFilter filter) throws IOException {
+		if (!filter.isLeaf()) {
+			if (id == CompoundTag.ID) {
+				allocateElement();
+				return readCompound(maxDepth, filter);
+			} else if (id == ListTag.ID) {
+				allocateElement();
+				return readListTag(maxDepth, filter);
+			}
+		}
+		return readTag(id, maxDepth);
+	}
+
+	/**
+	 * Whether a tag should be read for a filter. Scalars and arrays cannot hold the rest of a path, so they are only
+	 * read if selected as a whole.
+	 */
+	private static boolean isSelected(byte id, NBTPathFilter filter) {
+		return filter != null && (filter.isLeaf() || id == CompoundTag.ID || id == ListTag.ID);
+	}
+
+	/**
+	 * Read the payload of a tag whose ID is already known.
+	 *
+	 * @param id       The tag ID
+	 * @param maxDepth Maximum depth before failing deserialization
+	 * @return The tag read
+	 * @throws IOException In case of error reading from the input, or if the tag ID is invalid
+	 */
+	public Tag<?> readTag(byte id, int maxDepth) throws IOException {
+		allocateElement();
+		switch (id) {
+			case EndTag.ID:
+				return EndTag.INSTANCE;
+			case ByteTag.ID:
+				return new ByteTag(readByte());
+			case ShortTag.ID:
+				return new ShortTag(readShort());
+			case IntTag.ID:
+				return new IntTag(readInt());
+			case LongTag.ID:
+				return new LongTag(readLong());
+			case FloatTag.ID:
+				return new FloatTag(readFloat());
+			case DoubleTag.ID:
+				return new DoubleTag(readDouble());
+			case ByteArrayTag.ID:
+				return readByteArray();
+			case StringTag.ID:
+				return new StringTag(readAllocatedString());
+			case ListTag.ID:
+				return readListTag(maxDepth);
+			case CompoundTag.ID:
+				return readCompound(maxDepth);
+			case IntArrayTag.ID:
+				return readIntArray();
+			case LongArrayTag.ID:
+				return readLongArray();
+			default:
+				throw new IOException("invalid tag id \"" + id + "\"");
+		}
+	}
+
+	private ByteArrayTag readByteArray() throws IOException {
+		int length = readInt();
+		checkArrayLength(length);
+		if (isViewable((long) length * Byte.BYTES)) {
+			return new ByteArrayTag(slice(length * Byte.BYTES));
+		}
+		allocate((long) length * Byte.BYTES);
+		byte[] data = new byte[length];
+		readFully(data, 0, data.length);
+		return ByteArrayTag.wrap(data);
+	}
+
+	private IntArrayTag readIntArray() throws IOException {
+		int length = readInt();
+		checkArrayLength(length);
+		if (isViewable((long) length * Integer.BYTES)) {
+			return new IntArrayTag(slice(length * Integer.BYTES).asIntBuffer());
+		}
+		allocate((long) length * Integer.BYTES);
+		int[] data = new int[length];
+		readFully(data, 0, data.length);
+		return IntArrayTag.wrap(data);
+	}
+
+	private LongArrayTag readLongArray() throws IOException {
+		int length = readInt();
+		checkArrayLength(length);
+		if (isViewable((long) length * Long.BYTES)) {
+			return new LongArrayTag(slice(length * Long.BYTES).asLongBuffer());
+		}
+		allocate((long) length * Long.BYTES);
+		long[] data = new long[length];
+		readFully(data, 0, data.length);
+		return LongArrayTag.wrap(data);
+	}
+
+	private boolean isViewable(long bytes) {
+		return source == null && viewThreshold >= 0 && bytes >= viewThreshold && bytes <= buffer.remaining();
+	}
+
+	/**
+	 * Slice the next {@code bytes} bytes of the buffer, in the decoder's byte order, and skip past them.
+	 */
+	private ByteBuffer slice(int bytes) {
+		ByteBuffer slice = buffer.slice().order(buffer.order());
+		slice.limit(bytes);
+		buffer.position(buffer.position() + bytes);
+		return slice;
+	}
+
+	private ListTag<?> readListTag(int maxDepth) throws IOException {
+		byte listType = readByte();
+		int length = readInt();
+		if (length < 0) {
+			length = 0;
+		}
+		checkElements(length);
+		if (listType >= ByteTag.ID && listType <= DoubleTag.ID) {
+			if (length > 0) {
+				decrementMaxDepth(maxDepth);
+			}
+			return readNumberList(listType, length);
+		}
+		ListTag<?> list = ListTag.createUnchecked(classFromId(listType));
+		for (int i = 0; i < length; i++) {
+			list.addUnchecked(readTag(listType, decrementMaxDepth(maxDepth)));
+		}
+		return list;
+	}
+
+	/**
+	 * Read the elements of a list of numbers straight into a primitive array, without creating a tag per element.
+	 * <p>
+	 * The declared length is only trusted as far as the input goes: a buffer must hold all the elements before the
+	 * array is allocated, while the array read from a stream grows in chunks as the elements arrive.
+	 */
+	private ListTag<?> readNumberList(byte listType, int length) throws IOException {
+		elements += length;
+		allocate((long) length * payloadSize(listType));
+		switch (listType) {
+			case ByteTag.ID: {
+				byte[] values = new byte[listCapacity(length, Byte.BYTES)];
+				readFully(values, 0, values.length);
+				while (values.length < length) {
+					int read = values.length;
+					values = Arrays.copyOf(values, grownListCapacity(read, length));
+					readFully(values, read, values.length - read);
+				}
+				return ListTag.wrapUnchecked(values);
+			}
+			case ShortTag.ID: {
+				short[] values = new short[listCapacity(length, Short.BYTES)];
+				readFully(values, 0, values.length);
+				while (values.length < length) {
+					int read = values.length;
+					values = Arrays.copyOf(values, grownListCapacity(read, length));
+					readFully(values, read, values.length - read);
+				}
+				return ListTag.wrapUnchecked(values);
+			}
+			case IntTag.ID: {
+				int[] values = new int[listCapacity(length, Integer.BYTES)];
+				readFully(values, 0, values.length);
+				while (values.length < length) {
+					int read = values.length;
+					values = Arrays.copyOf(values, grownListCapacity(read, length));
+					readFully(values, read, values.length - read);
+				}
+				return ListTag.wrapUnchecked(values);
+			}
+			case LongTag.ID: {
+				long[] values = new long[listCapacity(length, Long.BYTES)];
+				readFully(values, 0, values.length);
+				while (values.length < length) {
+					int read = values.length;
+					values = Arrays.copyOf(values, grownListCapacity(read, length));
+					readFully(values, read, values.length - read);
+				}
+				return ListTag.wrapUnchecked(values);
+			}
+			case FloatTag.ID: {
+				float[] values = new float[listCapacity(length, Float.BYTES)];
+				readFully(values, 0, values.length);
+				while (values.length < length) {
+					int read = values.length;
+					values = Arrays.copyOf(values, grownListCapacity(read, length));
+					readFully(values, read, values.length - read);
+				}
+				return ListTag.wrapUnchecked(values);
+			}
+			default: {
+				double[] values = new double[listCapacity(length, Double.BYTES)];
+				readFully(values, 0, values.length);
+				while (values.length < length) {
+					int read = values.length;
+					values = Arrays.copyOf(values, grownListCapacity(read, length));
+					readFully(values, read, values.length - read);
+				}
+				return ListTag.wrapUnchecked(values);
+			}
+		}
+	}
+
+	/**
+	 * Get the initial capacity of the array of a list of numbers.
+	 */
+	private int listCapacity(int length, int size) throws IOException {
+		if (source == null) {
+			if ((long) length * size > buffer.remaining()) {
+				throw new EOFException();
+			}
+			return length;
+		}
+		return Math.min(length, LIST_CHUNK);
+	}
+
+	private static int grownListCapacity(int capacity, int length) {
+		return (int) Math.min(length, capacity * 2L);
+	}
+
+	private ListTag<?> readListTag(int maxDepth, NBTPathFilter filter) throws IOException {
+		byte listType = readByte();
+		ListTag<?> list = ListTag.createUnchecked(classFromId(listType));
+		int length = readInt();
+		checkElements(length);
+		for (int i = 0; i < length; i++) {
+			NBTPathFilter child = filter.child(i);
+			if (isSelected(listType, child)) {
+				list.addUnchecked(readTag(listType, decrementMaxDepth(maxDepth), child));
+			} else {
+				skipTag(listType, decrementMaxDepth(maxDepth));
+			}
+		}
+		return list;
+	}
+
+	private CompoundTag readCompound(int maxDepth) throws IOException {
+		CompoundTag comp = new CompoundTag();
+		for (int id = readByte() & 0xFF; id != 0; id = readByte() & 0xFF) {
+			String key = readAllocatedString();
+			Tag<?> element = readTag((byte) id, decrementMaxDepth(maxDepth));
+			comp.put(key, element);
+		}
+		return comp;
+	}
+
+	private CompoundTag readCompound(int maxDepth, NBTPathFilter filter) throws IOException {
+		CompoundTag comp = new CompoundTag();
+		for (int id = readByte() & 0xFF; id != 0; id = readByte() & 0xFF) {
+			String key = readString();
+			NBTPathFilter child = filter.child(key);
+			if (isSelected((byte) id, child)) {
+				allocate(key.length());
+				comp.put(key, readTag((byte) id, decrementMaxDepth(maxDepth), child));
+			} else {
+				skipTag((byte) id, decrementMaxDepth(maxDepth));
+			}
+		}
+		return comp;
+	}
+
+	/**
+	 * Decode a named tag as a sequence of events, without creating any tags.
+	 *
+	 * @param visitor  The visitor receiving the events
+	 * @param maxDepth Maximum depth before failing deserialization
+	 * @throws IOException In case of error reading from the input, or if a tag ID is invalid
+	 */
+	public void accept(NBTVisitor visitor, int maxDepth) throws IOException {
+		byte id = readByte();
+		if (visitor.key(readString(), id)) {
+			accept(id, visitor, maxDepth);
+		} else {
+			skipTag(id, maxDepth);
+		}
+	}
+
+	private void accept(byte id, NBTVisitor visitor, int maxDepth) throws IOException {
+		switch (id) {
+			case EndTag.ID:
+				break;
+			case ByteTag.ID:
+				visitor.byteValue(readByte());
+				break;
+			case ShortTag.ID:
+				visitor.shortValue(readShort());
+				break;
+			case IntTag.ID:
+				visitor.intValue(readInt());
+				break;
+			case LongTag.ID:
+				visitor.longValue(readLong());
+				break;
+			case FloatTag.ID:
+				visitor.floatValue(readFloat());
+				break;
+			case DoubleTag.ID:
+				visitor.doubleValue(readDouble());
+				break;
+			case ByteArrayTag.ID:
+				visitor.byteArray(startArray(id));
+				arrayReader.finish();
+				break;
+			case StringTag.ID:
+				visitor.stringValue(readString());
+				break;
+			case ListTag.ID: {
+				byte listType = readByte();
+				int length = Math.max(readInt(), 0);
+				visitor.startList(listType, length);
+				for (int i = 0; i < length; i++) {
+					accept(listType, visitor, decrementMaxDepth(maxDepth));
+				}
+				visitor.endList();
+				break;
+			}
+			case CompoundTag.ID:
+				visitor.startCompound();
+				for (byte entryId = readByte(); entryId != 0; entryId = readByte()) {
+					if (visitor.key(readString(), entryId)) {
+						accept(entryId, visitor, decrementMaxDepth(maxDepth));
+					} else {
+						skipTag(entryId, decrementMaxDepth(maxDepth));
+					}
+				}
+				visitor.endCompound();
+				break;
+			case IntArrayTag.ID:
+				visitor.intArray(startArray(id));
+				arrayReader.finish();
+				break;
+			case LongArrayTag.ID:
+				visitor.longArray(startArray(id));
+				arrayReader.finish();
+				break;
+			default:
+				throw new IOException("invalid tag id \"" + id + "\"");
+		}
+	}
+
+	/**
+	 * Account for a tag about to be read.
+	 */
+	private void allocateElement() throws ReadLimitExceededException {
+		if (++elements > limits.getMaxElements()) {
+			throw new ReadLimitExceededException("read more than " + limits.getMaxElements() + " elements", bytesAllocated);
+		}
+		allocate(ReadLimits.TAG_OVERHEAD);
+	}
+
+	/**
+	 * Check that the declared length of a list fits in the remaining element count, before reading its elements.
+	 */
+	private void checkElements(int length) throws ReadLimitExceededException {
+		if (elements + length > limits.getMaxElements()) {
+			throw new ReadLimitExceededException("list of " + length + " elements exceeds the maximum of " + limits.getMaxElements() + " elements", bytesAllocated);
+		}
+	}
+
+	private void checkArrayLength(int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("invalid array length " + length);
+		}
+		if (length > limits.getMaxArrayLength()) {
+			throw new ReadLimitExceededException("array of " + length + " elements exceeds the maximum length of " + limits.getMaxArrayLength(), bytesAllocated);
+		}
+	}
+
+	/**
+	 * Account for bytes about to be allocated.
+	 */
+	private void allocate(long bytes) throws ReadLimitExceededException {
+		if (bytes > limits.getMaxBytes() - bytesAllocated) {
+			throw new ReadLimitExceededException("allocating " + bytes + " bytes exceeds the budget of " + limits.getMaxBytes() + " bytes", bytesAllocated);
+		}
+		bytesAllocated += bytes;
+	}
+
+	private String readAllocatedString() throws IOException {
+		String value = readString();
+		allocate(value.length());
+		return value;
+	}
+
+	private NBTArrayReader startArray(byte id) throws IOException {
+		if (arrayReader == null) {
+			arrayReader = new NBTArrayReader(this);
+		}
+		int length = Math.max(readInt(), 0);
+		checkArrayLength(length);
+		arrayReader.reset(id, length);
+		return arrayReader;
+	}
+
+	/**
+	 * Skip over the payload of a tag whose ID is already known, without creating any tags. Arrays are skipped by their
+	 * length prefix, and lists of fixed-size elements by their element type.
+	 *
+	 * @param id       The tag ID
+	 * @param maxDepth Maximum depth before failing deserialization
+	 * @throws IOException In case of error reading from the input, or if the tag ID is invalid
+	 */
+	public void skipTag(byte id, int maxDepth) throws IOException {
+		switch (id) {
+			case EndTag.ID:
+				break;
+			case ByteArrayTag.ID:
+				skip(Math.max(readInt(), 0) * (long) Byte.BYTES);
+				break;
+			case StringTag.ID:
+				skip(readShort() & 0xFFFF);
+				break;
+			case ListTag.ID: {
+				byte listType = readByte();
+				int length = readInt();
+				int size = payloadSize(listType);
+				if (size >= 0) {
+					skip(Math.max(length, 0) * (long) size);
+				} else {
+					for (int i = 0; i < length; i++) {
+						skipTag(listType, decrementMaxDepth(maxDepth));
+					}
+				}
+				break;
+			}
+			case CompoundTag.ID:
+				for (byte entryId = readByte(); entryId != 0; entryId = readByte()) {
+					skip(readShort() & 0xFFFF);
+					skipTag(entryId, decrementMaxDepth(maxDepth));
+				}
+				break;
+			case IntArrayTag.ID:
+				skip(Math.max(readInt(), 0) * (long) Integer.BYTES);
+				break;
+			case LongArrayTag.ID:
+				skip(Math.max(readInt(), 0) * (long) Long.BYTES);
+				break;
+			default: {
+				int size = payloadSize(id);
+				if (size < 0) {
+					throw new IOException("invalid tag id \"" + id + "\"");
+				}
+				skip(size);
+			}
+		}
+	}
+
+	/**
+	 * Get the payload size of a fixed-size tag.
+	 *
+	 * @return The payload size in bytes, or {@code -1} if the tag has a variable size or the ID is invalid
+	 */
+	static int payloadSize(byte id) {
+		switch (id) {
+			case EndTag.ID:
+				return 0;
+			case ByteTag.ID:
+				return Byte.BYTES;
+			case ShortTag.ID:
+				return Short.BYTES;
+			case IntTag.ID:
+			case FloatTag.ID:
+				return Integer.BYTES;
+			case LongTag.ID:
+			case DoubleTag.ID:
+				return Long.BYTES;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Read a single byte.
+	 *
+	 * @return The byte read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public byte readByte() throws IOException {
+		ensure(Byte.BYTES);
+		return buffer.get();
+	}
+
+	/**
+	 * Read a short in the decoder's byte order.
+	 *
+	 * @return The short read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public short readShort() throws IOException {
+		ensure(Short.BYTES);
+		return buffer.getShort();
+	}
+
+	/**
+	 * Read an int in the decoder's byte order.
+	 *
+	 * @return The int read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public int readInt() throws IOException {
+		ensure(Integer.BYTES);
+		return buffer.getInt();
+	}
+
+	/**
+	 * Read a long in the decoder's byte order.
+	 *
+	 * @return The long read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public long readLong() throws IOException {
+		ensure(Long.BYTES);
+		return buffer.getLong();
+	}
+
+	/**
+	 * Read a float in the decoder's byte order.
+	 *
+	 * @return The float read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public float readFloat() throws IOException {
+		ensure(Float.BYTES);
+		return buffer.getFloat();
+	}
+
+	/**
+	 * Read a double in the decoder's byte order.
+	 *
+	 * @return The double read
+	 * @throws IOException In case of error reading from the input
+	 */
+	public double readDouble() throws IOException {
+		ensure(Double.BYTES);
+		return buffer.getDouble();
+	}
+
+	/**
+	 * Read a length-prefixed string.
+	 *
+	 * @return The string read
+	 * @throws IOException In case of error reading from the input, or if the string is malformed
+	 */
+	public String readString() throws IOException {
+		int length = readShort() & 0xFFFF;
+		if (buffer.hasArray() && (length <= buffer.remaining() || source != null && length <= buffer.capacity())) {
+			ensure(length);
+			int offset = buffer.arrayOffset() + buffer.position();
+			buffer.position(buffer.position() + length);
+			return decodeString(buffer.array(), offset, length);
+		}
+		byte[] bytes;
+		if (stringCache != null && length <= stringCache.getMaxLength()) {
+			if (stringBuffer == null || stringBuffer.length < length) {
+				stringBuffer = new byte[stringCache.getMaxLength()];
+			}
+			bytes = stringBuffer;
+		} else {
+			bytes = new byte[length];
+		}
+		readFully(bytes, 0, length);
+		return decodeString(bytes, 0, length);
+	}
+
+	private String decodeString(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+		if (stringCache == null || length > stringCache.getMaxLength()) {
+			return decode(bytes, offset, length);
+		}
+		String value = stringCache.get(bytes, offset, length);
+		if (value == null) {
+			value = decode(bytes, offset, length);
+			stringCache.put(bytes, offset, length, value);
+		}
+		return value;
+	}
+
+	private String decode(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+		if (AsciiStrings.isAscii(bytes, offset, length)) {
+			return new String(bytes, offset, length, StandardCharsets.ISO_8859_1);
+		}
+		return modifiedUtf8 ? decodeModifiedUtf8(bytes, offset, length) : new String(bytes, offset, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Decode modified UTF-8, as specified by {@link java.io.DataInput#readUTF()}.
+	 */
+	private static String decodeModifiedUtf8(byte[] bytes, int offset, int length) throws UTFDataFormatException {
+		char[] chars = new char[length];
+		int end = offset + length;
+		int i = offset;
+		int count = 0;
+		while (i < end) {
+			int c = bytes[i] & 0xFF;
+			switch (c >> 4) {
+				case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+					// 0xxxxxxx
+					i++;
+					chars[count++] = (char) c;
+					break;
+				case 12: case 13: {
+					// 110x xxxx 10xx xxxx
+					if (i + 2 > end) {
+						throw new UTFDataFormatException("malformed input: partial character at end");
+					}
+					int c2 = bytes[i + 1];
+					if ((c2 & 0xC0) != 0x80) {
+						throw new UTFDataFormatException("malformed input around byte " + (i - offset + 1));
+					}
+					chars[count++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+					i += 2;
+					break;
+				}
+				case 14: {
+					// 1110 xxxx 10xx xxxx 10xx xxxx
+					if (i + 3 > end) {
+						throw new UTFDataFormatException("malformed input: partial character at end");
+					}
+					int c2 = bytes[i + 1];
+					int c3 = bytes[i + 2];
+					if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80) {
+						throw new UTFDataFormatException("malformed input around byte " + (i - offset + 2));
+					}
+					chars[count++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+					i += 3;
+					break;
+				}
+				default:
+					// 10xx xxxx, 1111 xxxx
+					throw new UTFDataFormatException("malformed input around byte " + (i - offset));
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * Read bytes into an array, until it is filled.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of bytes to read
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void readFully(byte[] b, int off, int len) throws IOException {
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		off += n;
+		len -= n;
+		if (len == 0) {
+			return;
+		}
+		if (source == null) {
+			throw new EOFException();
+		}
+		while (len > 0) {
+			int read = source.read(b, off, len);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			off += read;
+			len -= read;
+		}
+	}
+
+	/**
+	 * Read shorts in the decoder's byte order into an array, until it is filled.
+	 * <p>
+	 * The shorts are converted in bulk, one buffered window at a time.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of shorts to read
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void readFully(short[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensure(Short.BYTES);
+			int n = Math.min(len, buffer.remaining() / Short.BYTES);
+			buffer.asShortBuffer().get(b, off, n);
+			buffer.position(buffer.position() + n * Short.BYTES);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Read ints in the decoder's byte order into an array, until it is filled.
+	 * <p>
+	 * The ints are converted in bulk, one buffered window at a time.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of ints to read
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void readFully(int[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensure(Integer.BYTES);
+			int n = Math.min(len, buffer.remaining() / Integer.BYTES);
+			buffer.asIntBuffer().get(b, off, n);
+			buffer.position(buffer.position() + n * Integer.BYTES);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Read longs in the decoder's byte order into an array, until it is filled.
+	 * <p>
+	 * The longs are converted in bulk, one buffered window at a time.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of longs to read
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void readFully(long[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensure(Long.BYTES);
+			int n = Math.min(len, buffer.remaining() / Long.BYTES);
+			buffer.asLongBuffer().get(b, off, n);
+			buffer.position(buffer.position() + n * Long.BYTES);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Read floats in the decoder's byte order into an array, until it is filled.
+	 * <p>
+	 * The floats are converted in bulk, one buffered window at a time.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of floats to read
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void readFully(float[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensure(Float.BYTES);
+			int n = Math.min(len, buffer.remaining() / Float.BYTES);
+			buffer.asFloatBuffer().get(b, off, n);
+			buffer.position(buffer.position() + n * Float.BYTES);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Read doubles in the decoder's byte order into an array, until it is filled.
+	 * <p>
+	 * The doubles are converted in bulk, one buffered window at a time.
+	 *
+	 * @param b   The destination array
+	 * @param off The offset in the destination array
+	 * @param len The number of doubles to read
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void readFully(double[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			ensure(Double.BYTES);
+			int n = Math.min(len, buffer.remaining() / Double.BYTES);
+			buffer.asDoubleBuffer().get(b, off, n);
+			buffer.position(buffer.position() + n * Double.BYTES);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Skip over bytes, discarding them.
+	 *
+	 * @param n The number of bytes to skip
+	 * @throws IOException In case of error reading from the input, or if the input ends first
+	 */
+	public void skip(long n) throws IOException {
+		int buffered = (int) Math.min(n, buffer.remaining());
+		buffer.position(buffer.position() + buffered);
+		n -= buffered;
+		while (n > 0) {
+			if (source != null && n >= buffer.capacity()) {
+				long skipped = source.skip(n);
+				if (skipped > 0) {
+					n -= skipped;
+					continue;
+				}
+			}
+			if (!fill()) {
+				throw new EOFException();
+			}
+			int k = (int) Math.min(n, buffer.remaining());
+			buffer.position(buffer.position() + k);
+			n -= k;
+		}
+	}
+
+	/**
+	 * Make sure at least {@code n} bytes are buffered, refilling the window from the source if needed.
+	 */
+	private void ensure(int n) throws IOException {
+		if (buffer.remaining() >= n) {
+			return;
+		}
+		if (source == null) {
+			throw new EOFException();
+		}
+		buffer.compact();
+		try {
+			while (buffer.position() < n) {
+				int read = source.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				if (read < 0) {
+					throw new EOFException();
+				}
+				buffer.position(buffer.position() + read);
+			}
+		} finally {
+			buffer.flip();
+		}
+	}
+
+	/**
+	 * Refill the window with at least one byte.
+	 *
+	 * @return {@code false} if the source has reached its end
+	 */
+	private boolean fill() throws IOException {
+		if (buffer.hasRemaining()) {
+			return true;
+		}
+		if (source == null) {
+			return false;
+		}
+		buffer.clear();
+		int read = 0;
+		try {
+			while (read == 0) {
+				read = source.read(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+			}
+		} finally {
+			buffer.limit(Math.max(read, 0));
+		}
+		return read > 0;
+	}
+
+	/**
+	 * An input stream over the bytes not yet decoded, starting with the ones already buffered.
+	 * <p>
+	 * Closing the returned stream closes the source.
+	 *
+	 * @return The input stream view
+	 */
+	public InputStream asInputStream() {
+		if (view == null) {
+			view = new InputStream() {
+				@Override
+				public int read() throws IOException {
+					return fill() ? buffer.get() & 0xFF : -1;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					if (len == 0) {
+						return 0;
+					}
+					if (!buffer.hasRemaining() && source != null && len >= buffer.capacity()) {
+						return source.read(b, off, len);
+					}
+					if (!fill()) {
+						return -1;
+					}
+					int n = Math.min(len, buffer.remaining());
+					buffer.get(b, off, n);
+					return n;
+				}
+
+				@Override
+				public long skip(long n) throws IOException {
+					if (n <= 0) {
+						return 0;
+					}
+					int buffered = (int) Math.min(n, buffer.remaining());
+					buffer.position(buffer.position() + buffered);
+					return buffered < n && source != null ? buffered + source.skip(n - buffered) : buffered;
+				}
+
+				@Override
+				public int available() throws IOException {
+					return buffer.remaining() + (source != null ? source.available() : 0);
+				}
+
+				@Override
+				public void close() throws IOException {
+					if (source != null) {
+						source.close();
+					}
+				}
+			};
+		}
+		return view;
+	}
+}
@@ -3,7 +3,8 @@ package net.sandrohc.schematic4j.nbt.io;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.zip.GZIPInputStream;
+import java.nio.ByteOrder;
+import java.util.zip.ZipException;
 
 import net.sandrohc.schematic4j.nbt.Deserializer;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
@@ -11,6 +12,7 @@ import net.sandrohc.schematic4j.nbt.tag.Tag;
 public class NBTDeserializer implements Deserializer<NamedTag> {
 
 	private boolean compressed, littleEndian;
+	private NBTResourcePool pool;
 
 	public NBTDeserializer() {
 		this(true);
@@ -25,21 +27,41 @@ public class NBTDeserializer implements Deserializer<NamedTag> {
 		this.littleEndian = littleEndian;
 	}
 
+	/**
+	 * @param compressed   Whether the input is GZIP compressed
+	 * @param littleEndian Whether the input is little endian
+	 * @param pool         The pool to acquire the inflater and buffers from, or {@code null} for the default pool
+	 */
+	public NBTDeserializer(boolean compressed, boolean littleEndian, NBTResourcePool pool) {
+		this.compressed = compressed;
+		this.littleEndian = littleEndian;
+		this.pool = pool;
+	}
+
 	@Override
 	public NamedTag fromStream(InputStream stream) throws IOException {
-		NBTInput nbtIn;
+		NBTResourcePool pool = this.pool != null ? this.pool : NBTResourcePool.getDefault();
+		DecompressingInputStream decompressing = null;
 		InputStream input;
 		if (compressed) {
-			input = new GZIPInputStream(stream);
+			input = decompressing = new DecompressingInputStream(stream, DecompressingInputStream.DEFAULT_BUFFER_SIZE, pool);
+			if (decompressing.getCompression() != DecompressingInputStream.Compression.GZIP) {
+				decompressing.end();
+				throw new ZipException("Not in GZIP format");
+			}
 		} else {
 			input = stream;
 		}
 
-		if (littleEndian) {
-			nbtIn = new LittleEndianNBTInputStream(input);
-		} else {
-			nbtIn = new NBTInputStream(input);
+		byte[] window = pool.acquireBuffer(NBTDecoder.DEFAULT_BUFFER_SIZE);
+		try {
+			ByteOrder order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			return new NBTDecoder(input, order, window).readTag(Tag.DEFAULT_MAX_DEPTH);
+		} finally {
+			pool.releaseBuffer(window);
+			if (decompressing != null) {
+				decompressing.end();
+			}
 		}
-		return nbtIn.readTag(Tag.DEFAULT_MAX_DEPTH);
 	}
 }
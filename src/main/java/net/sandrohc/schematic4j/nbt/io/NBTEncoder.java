@@ -0,0 +1,597 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+import net.sandrohc.schematic4j.nbt.MaxDepthIO;
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ByteTag;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
+import net.sandrohc.schematic4j.nbt.tag.EndTag;
+import net.sandrohc.schematic4j.nbt.tag.FloatTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongTag;
+import net.sandrohc.schematic4j.nbt.tag.ShortTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Binary NBT encoder backed by a {@link ByteBuffer}, for both byte orders.
+ * <p>
+ * The encoder either grows its buffer to hold the whole payload, which is then available from {@link #toByteBuffer()},
+ * or drains it to a {@link WritableByteChannel} or an {@link OutputStream} whenever it fills up. Tags are dispatched on
+ * their ID, numbers are put straight into the buffer and arrays are copied in bulk, so nothing is allocated per tag.
+ * <p>
+ * Strings are encoded as modified UTF-8 in big endian mode (Java Edition), and as standard UTF-8 in little endian
+ * mode (Bedrock Edition).
+ *
+ * @see NBTOutputStream
+ * @see LittleEndianNBTOutputStream
+ */
+public final class NBTEncoder implements NBTOutput, MaxDepthIO {
+
+	/**
+	 * The default size of the buffer, either the initial size of a growable one or the size of the one drained to a
+	 * channel or stream.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	private ByteBuffer buffer;
+	private final WritableByteChannel channel;
+	private final OutputStream out;
+	private final boolean modifiedUtf8;
+	private long bytesWritten;
+
+	/**
+	 * Encode into a buffer that grows to hold the whole payload.
+	 *
+	 * @param order The byte order of the payload
+	 */
+	public NBTEncoder(ByteOrder order) {
+		this(order, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Encode into a buffer that grows to hold the whole payload.
+	 *
+	 * @param order           The byte order of the payload
+	 * @param initialCapacity The initial size of the buffer, such as the exact size of the payload when known
+	 */
+	public NBTEncoder(ByteOrder order, int initialCapacity) {
+		this(ByteBuffer.allocate(checkBufferSize(initialCapacity)), order, null, null);
+	}
+
+	/**
+	 * Encode to a channel.
+	 *
+	 * @param channel The channel to write to
+	 * @param order   The byte order of the payload
+	 */
+	public NBTEncoder(WritableByteChannel channel, ByteOrder order) {
+		this(channel, order, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Encode to a channel, through a direct buffer.
+	 *
+	 * @param channel    The channel to write to
+	 * @param order      The byte order of the payload
+	 * @param bufferSize The size of the buffer drained to the channel
+	 */
+	public NBTEncoder(WritableByteChannel channel, ByteOrder order, int bufferSize) {
+		this(ByteBuffer.allocateDirect(checkBufferSize(bufferSize)), order, channel, null);
+	}
+
+	/**
+	 * Encode to an output stream, using the specified array as the buffer, such as one acquired from a
+	 * {@link NBTResourcePool}.
+	 *
+	 * @param out    The output stream to write to
+	 * @param order  The byte order of the payload
+	 * @param buffer The buffer drained to the output stream
+	 */
+	NBTEncoder(OutputStream out, ByteOrder order, byte[] buffer) {
+		this(ByteBuffer.wrap(buffer, 0, checkBufferSize(buffer.length)), order, null, out);
+	}
+
+	private NBTEncoder(ByteBuffer buffer, ByteOrder order, WritableByteChannel channel, OutputStream out) {
+		this.buffer = buffer.order(order);
+		this.channel = channel;
+		this.out = out;
+		this.modifiedUtf8 = order == ByteOrder.BIG_ENDIAN;
+	}
+
+	private static int checkBufferSize(int bufferSize) {
+		if (bufferSize < Long.BYTES) {
+			throw new IllegalArgumentException("buffer size must be at least " + Long.BYTES);
+		}
+		return bufferSize;
+	}
+
+	/**
+	 * Get the tag ID for a tag class.
+	 *
+	 * @param clazz The tag class
+	 * @return The tag ID
+	 * @throws IllegalArgumentException If the class is not a known tag class
+	 */
+	static byte idFromClass(Class<?> clazz) {
+		for (byte id = EndTag.ID; id <= LongArrayTag.ID; id++) {
+			if (NBTDecoder.classFromId(id) == clazz) {
+				return id;
+			}
+		}
+		throw new IllegalArgumentException("unknown Tag class " + clazz.getName());
+	}
+
+	/**
+	 * Get the byte order of the payload.
+	 *
+	 * @return The byte order
+	 */
+	public ByteOrder order() {
+		return buffer.order();
+	}
+
+	/**
+	 * Get the bytes encoded so far, when encoding into a growable buffer.
+	 *
+	 * @return A buffer holding the payload, which shares the encoder's buffer until more is written
+	 * @throws IllegalStateException If the encoder writes to a channel or an output stream
+	 */
+	public ByteBuffer toByteBuffer() {
+		if (isDraining()) {
+			throw new IllegalStateException("the payload was written to the output");
+		}
+		ByteBuffer payload = buffer.duplicate().order(buffer.order());
+		payload.flip();
+		return payload;
+	}
+
+	@Override
+	public void writeTag(NamedTag tag, int maxDepth) throws IOException {
+		writeByte(tag.getTag().getID());
+		if (tag.getTag().getID() != 0) {
+			writeString(tag.getName() == null ? "" : tag.getName());
+		}
+		writeRawTag(tag.getTag(), maxDepth);
+	}
+
+	@Override
+	public void writeTag(Tag<?> tag, int maxDepth) throws IOException {
+		writeByte(tag.getID());
+		if (tag.getID() != 0) {
+			writeString("");
+		}
+		writeRawTag(tag, maxDepth);
+	}
+
+	/**
+	 * Write the payload of a tag, without its ID nor name.
+	 *
+	 * @param tag      The tag to write
+	 * @param maxDepth Maximum depth before failing serialization
+	 * @throws IOException In case of error writing to the output, or if the tag ID is invalid
+	 */
+	public void writeRawTag(Tag<?> tag, int maxDepth) throws IOException {
+		switch (tag.getID()) {
+			case EndTag.ID:
+				break;
+			case ByteTag.ID:
+				writeByte(((ByteTag) tag).asByte());
+				break;
+			case ShortTag.ID:
+				writeShort(((ShortTag) tag).asShort());
+				break;
+			case IntTag.ID:
+				writeInt(((IntTag) tag).asInt());
+				break;
+			case LongTag.ID:
+				writeLong(((LongTag) tag).asLong());
+				break;
+			case FloatTag.ID:
+				writeFloat(((FloatTag) tag).asFloat());
+				break;
+			case DoubleTag.ID:
+				writeDouble(((DoubleTag) tag).asDouble());
+				break;
+			case ByteArrayTag.ID:
+				writeInt(((ByteArrayTag) tag).length());
+				writeBytes(((ByteArrayTag) tag).asBuffer());
+				break;
+			case StringTag.ID:
+				writeString(((StringTag) tag).getValue());
+				break;
+			case ListTag.ID:
+				writeList((ListTag<?>) tag, maxDepth);
+				break;
+			case CompoundTag.ID:
+				writeCompound((CompoundTag) tag, maxDepth);
+				break;
+			case IntArrayTag.ID:
+				writeInt(((IntArrayTag) tag).length());
+				writeInts(((IntArrayTag) tag).asBuffer());
+				break;
+			case LongArrayTag.ID:
+				writeInt(((LongArrayTag) tag).length());
+				writeLongs(((LongArrayTag) tag).asBuffer());
+				break;
+			default:
+				throw new IOException("invalid tag \"" + tag.getID() + "\"");
+		}
+	}
+
+	private void writeList(ListTag<?> list, int maxDepth) throws IOException {
+		byte listType = idFromClass(list.getTypeClass());
+		int size = list.size();
+		writeByte(listType);
+		writeInt(size);
+		if (listType < ByteTag.ID || listType > DoubleTag.ID) {
+			for (Tag<?> t : list) {
+				writeRawTag(t, decrementMaxDepth(maxDepth));
+			}
+			return;
+		}
+
+		if (size > 0) {
+			decrementMaxDepth(maxDepth);
+		}
+		// the typed getters do not box the elements of lists backed by primitive arrays
+		int elementSize = NBTDecoder.payloadSize(listType);
+		for (int i = 0; i < size; i++) {
+			ensure(elementSize);
+			switch (listType) {
+				case ByteTag.ID:
+					buffer.put(list.getByte(i));
+					break;
+				case ShortTag.ID:
+					buffer.putShort(list.getShort(i));
+					break;
+				case IntTag.ID:
+					buffer.putInt(list.getInt(i));
+					break;
+				case LongTag.ID:
+					buffer.putLong(list.getLong(i));
+					break;
+				case FloatTag.ID:
+					buffer.putFloat(list.getFloat(i));
+					break;
+				default:
+					buffer.putDouble(list.getDouble(i));
+			}
+		}
+	}
+
+	private void writeCompound(CompoundTag compound, int maxDepth) throws IOException {
+		for (Map.Entry<String, Tag<?>> entry : compound) {
+			Tag<?> value = entry.getValue();
+			if (value.getID() == 0) {
+				throw new IOException("end tag not allowed");
+			}
+			writeByte(value.getID());
+			writeString(entry.getKey());
+			writeRawTag(value, decrementMaxDepth(maxDepth));
+		}
+		writeByte(0);
+	}
+
+	/**
+	 * Write a single byte.
+	 *
+	 * @param v The value to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeByte(int v) throws IOException {
+		ensure(Byte.BYTES);
+		buffer.put((byte) v);
+	}
+
+	/**
+	 * Write a short in the encoder's byte order.
+	 *
+	 * @param v The value to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeShort(int v) throws IOException {
+		ensure(Short.BYTES);
+		buffer.putShort((short) v);
+	}
+
+	/**
+	 * Write an int in the encoder's byte order.
+	 *
+	 * @param v The value to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeInt(int v) throws IOException {
+		ensure(Integer.BYTES);
+		buffer.putInt(v);
+	}
+
+	/**
+	 * Write a long in the encoder's byte order.
+	 *
+	 * @param v The value to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeLong(long v) throws IOException {
+		ensure(Long.BYTES);
+		buffer.putLong(v);
+	}
+
+	/**
+	 * Write a float in the encoder's byte order.
+	 *
+	 * @param v The value to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeFloat(float v) throws IOException {
+		ensure(Float.BYTES);
+		buffer.putFloat(v);
+	}
+
+	/**
+	 * Write a double in the encoder's byte order.
+	 *
+	 * @param v The value to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeDouble(double v) throws IOException {
+		ensure(Double.BYTES);
+		buffer.putDouble(v);
+	}
+
+	/**
+	 * Write a string, prefixed by its encoded length.
+	 *
+	 * @param s The string to write
+	 * @throws UTFDataFormatException If the encoded string is longer than 65535 bytes
+	 * @throws IOException             In case of error writing to the output
+	 */
+	public void writeString(String s) throws IOException {
+		int length = s.length();
+		int encodedLength = encodedLength(s, modifiedUtf8);
+		if (encodedLength > 0xFFFF) {
+			throw new UTFDataFormatException("encoded string too long: " + encodedLength + " bytes");
+		}
+		writeShort(encodedLength);
+
+		if (encodedLength == length && buffer.hasArray() && (!isDraining() || length <= buffer.capacity())) {
+			// ASCII strings are copied in a single pass, without going through the encoder below
+			ensure(length);
+			if (AsciiStrings.encode(s, buffer.array(), buffer.arrayOffset() + buffer.position(), !modifiedUtf8)) {
+				buffer.position(buffer.position() + length);
+				return;
+			}
+		}
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (isSingleByte(c, modifiedUtf8)) {
+				ensure(1);
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				ensure(2);
+				buffer.put((byte) (0xC0 | c >> 6));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			} else if (!modifiedUtf8 && Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+					int cp = Character.toCodePoint(c, s.charAt(++i));
+					ensure(4);
+					buffer.put((byte) (0xF0 | cp >> 18));
+					buffer.put((byte) (0x80 | cp >> 12 & 0x3F));
+					buffer.put((byte) (0x80 | cp >> 6 & 0x3F));
+					buffer.put((byte) (0x80 | cp & 0x3F));
+				} else {
+					// unpaired surrogates are replaced, like String.getBytes does
+					ensure(1);
+					buffer.put((byte) '?');
+				}
+			} else {
+				ensure(3);
+				buffer.put((byte) (0xE0 | c >> 12));
+				buffer.put((byte) (0x80 | c >> 6 & 0x3F));
+				buffer.put((byte) (0x80 | c & 0x3F));
+			}
+		}
+	}
+
+	/**
+	 * Get the number of bytes a string encodes to.
+	 *
+	 * @param s            The string
+	 * @param modifiedUtf8 Whether the string is encoded in modified UTF-8, as in big endian, or standard UTF-8
+	 * @return The encoded length, without the length prefix
+	 */
+	static int encodedLength(String s, boolean modifiedUtf8) {
+		int length = s.length();
+		int bytes = length;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (isSingleByte(c, modifiedUtf8)) {
+				continue;
+			}
+			if (c < 0x800) {
+				bytes += 1;
+			} else if (!modifiedUtf8 && Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+					// both surrogates of a pair encode to four bytes
+					bytes += 2;
+					i++;
+				}
+			} else {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Whether a character encodes to a single byte. Modified UTF-8 encodes the null character in two bytes.
+	 */
+	private static boolean isSingleByte(char c, boolean modifiedUtf8) {
+		return c < 0x80 && (c != 0 || !modifiedUtf8);
+	}
+
+	/**
+	 * Write the remaining bytes of a buffer, without moving its position.
+	 *
+	 * @param data The bytes to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeBytes(ByteBuffer data) throws IOException {
+		ByteBuffer source = data.duplicate();
+		if (source.remaining() > buffer.capacity() && (channel != null || out != null && source.hasArray())) {
+			// large arrays skip the buffer
+			writeBuffer();
+			bytesWritten += source.remaining();
+			if (channel != null) {
+				while (source.hasRemaining()) {
+					channel.write(source);
+				}
+			} else {
+				out.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+			}
+			return;
+		}
+		while (source.hasRemaining()) {
+			int n = reserve(source.remaining(), Byte.BYTES);
+			ByteBuffer part = source.slice();
+			part.limit(n);
+			buffer.put(part);
+			source.position(source.position() + n);
+		}
+	}
+
+	/**
+	 * Write the remaining ints of a buffer in the payload's byte order, without moving its position.
+	 *
+	 * @param data The ints to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeInts(IntBuffer data) throws IOException {
+		IntBuffer source = data.duplicate();
+		while (source.hasRemaining()) {
+			int n = reserve(source.remaining(), Integer.BYTES);
+			IntBuffer part = source.slice();
+			part.limit(n);
+			buffer.asIntBuffer().put(part);
+			buffer.position(buffer.position() + n * Integer.BYTES);
+			source.position(source.position() + n);
+		}
+	}
+
+	/**
+	 * Write the remaining longs of a buffer in the payload's byte order, without moving its position.
+	 *
+	 * @param data The longs to write
+	 * @throws IOException In case of error writing to the output
+	 */
+	public void writeLongs(LongBuffer data) throws IOException {
+		LongBuffer source = data.duplicate();
+		while (source.hasRemaining()) {
+			int n = reserve(source.remaining(), Long.BYTES);
+			LongBuffer part = source.slice();
+			part.limit(n);
+			buffer.asLongBuffer().put(part);
+			buffer.position(buffer.position() + n * Long.BYTES);
+			source.position(source.position() + n);
+		}
+	}
+
+	/**
+	 * Write the buffered bytes to the channel or output stream, and flush the output stream.
+	 *
+	 * @throws IOException In case of error writing to the output
+	 */
+	@Override
+	public void flush() throws IOException {
+		writeBuffer();
+		if (out != null) {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Write the buffered bytes to the channel or output stream, if any.
+	 *
+	 * @return The number of bytes written to the channel or output stream since the previous call, including those
+	 * written while encoding because the buffer filled up
+	 * @throws IOException In case of error writing to the output
+	 */
+	long drain() throws IOException {
+		writeBuffer();
+		long n = bytesWritten;
+		bytesWritten = 0;
+		return n;
+	}
+
+	private void writeBuffer() throws IOException {
+		if (!isDraining() || buffer.position() == 0) {
+			return;
+		}
+		buffer.flip();
+		bytesWritten += buffer.limit();
+		if (channel != null) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} else {
+			out.write(buffer.array(), buffer.arrayOffset(), buffer.limit());
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Whether the buffer is drained to a channel or output stream, instead of growing.
+	 */
+	private boolean isDraining() {
+		return channel != null || out != null;
+	}
+
+	/**
+	 * Make room for at least one element, and up to a number of elements, in the buffer.
+	 *
+	 * @return The number of elements that fit
+	 */
+	private int reserve(int elements, int elementSize) throws IOException {
+		long bytes = (long) elements * elementSize;
+		ensure((int) Math.min(bytes, isDraining() ? buffer.capacity() / elementSize * elementSize : Integer.MAX_VALUE));
+		return Math.min(elements, buffer.remaining() / elementSize);
+	}
+
+	/**
+	 * Make sure the buffer has room for a number of bytes, which must not exceed its capacity when draining to an
+	 * output, by draining or growing it.
+	 */
+	private void ensure(int n) throws IOException {
+		if (buffer.remaining() >= n) {
+			return;
+		}
+		if (isDraining()) {
+			writeBuffer();
+			return;
+		}
+		long capacity = Math.max((long) buffer.capacity() * 2, (long) buffer.position() + n);
+		if (capacity > Integer.MAX_VALUE - 8) {
+			if ((long) buffer.position() + n > Integer.MAX_VALUE - 8) {
+				throw new IOException("NBT payload too large for a buffer");
+			}
+			capacity = Integer.MAX_VALUE - 8;
+		}
+		ByteBuffer grown = ByteBuffer.allocate((int) capacity).order(buffer.order());
+		buffer.flip();
+		grown.put(buffer);
+		buffer = grown;
+	}
+}
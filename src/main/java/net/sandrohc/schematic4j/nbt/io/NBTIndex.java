@@ -0,0 +1,220 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import net.sandrohc.schematic4j.nbt.MaxDepthIO;
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.EndTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+
+/**
+ * Structural index of an NBT payload held in a buffer, built by a single pass that skips over all the values.
+ * <p>
+ * Only compounds, lists and arrays are indexed, in document order: each entry records where its payload starts and
+ * ends, and the index of the entry following its subtree. Scalars and strings are not indexed, since they are decoded
+ * along with their parent. This is enough for independent decoders to start at any indexed tag, which is what
+ * {@link ParallelNBTDecoder} relies on.
+ * <p>
+ * The pass also checks the {@link ReadLimits} and estimates the bytes the tags will allocate, the same way
+ * {@link NBTDecoder} does, so a payload exceeding the limits fails before any tag is created.
+ */
+final class NBTIndex implements MaxDepthIO {
+
+	private final ByteBuffer buffer;
+	private final ReadLimits limits;
+	private int[] starts = new int[64];
+	private int[] ends = new int[64];
+	private int[] nexts = new int[64];
+	private int size;
+	private long bytesAllocated;
+	private long elements;
+
+	private NBTIndex(ByteBuffer buffer, ReadLimits limits, long bytesAllocated) {
+		this.buffer = buffer;
+		this.limits = limits;
+		this.bytesAllocated = bytesAllocated;
+	}
+
+	/**
+	 * Index the payload of a tag.
+	 *
+	 * @param buffer   The buffer, positioned at the start of the payload, which is left untouched
+	 * @param id       The tag ID
+	 * @param maxDepth Maximum depth before failing deserialization
+	 * @param limits         The limits to check
+	 * @param bytesAllocated The bytes already allocated by the read, such as the buffered payload, which count
+	 *                       towards the byte budget
+	 * @return The index
+	 * @throws IOException If the payload is truncated or malformed, or exceeds the limits
+	 */
+	static NBTIndex scan(ByteBuffer buffer, byte id, int maxDepth, ReadLimits limits, long bytesAllocated) throws IOException {
+		NBTIndex index = new NBTIndex(buffer.duplicate().order(buffer.order()), limits, bytesAllocated);
+		try {
+			index.scan(id, maxDepth);
+		} catch (BufferUnderflowException | IllegalArgumentException e) {
+			throw new EOFException("unexpected end of NBT payload");
+		}
+		return index;
+	}
+
+	/**
+	 * Whether the tags with an ID are indexed.
+	 */
+	static boolean isIndexed(byte id) {
+		switch (id) {
+			case ByteArrayTag.ID:
+			case ListTag.ID:
+			case CompoundTag.ID:
+			case IntArrayTag.ID:
+			case LongArrayTag.ID:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	int start(int entry) {
+		return starts[entry];
+	}
+
+	int end(int entry) {
+		return ends[entry];
+	}
+
+	/**
+	 * Get the entry following the subtree of an entry, which is its next sibling if it has one.
+	 */
+	int next(int entry) {
+		return nexts[entry];
+	}
+
+	/**
+	 * Get the estimated number of bytes the tags will allocate, on top of those already allocated before the scan.
+	 */
+	long getBytesAllocated() {
+		return bytesAllocated;
+	}
+
+	private void scan(byte id, int maxDepth) throws IOException {
+		allocateElement();
+		switch (id) {
+			case StringTag.ID: {
+				int length = buffer.getShort() & 0xFFFF;
+				allocate(length);
+				skip(length);
+				break;
+			}
+			case ByteArrayTag.ID:
+				scanArray(Byte.BYTES);
+				break;
+			case IntArrayTag.ID:
+				scanArray(Integer.BYTES);
+				break;
+			case LongArrayTag.ID:
+				scanArray(Long.BYTES);
+				break;
+			case ListTag.ID: {
+				int entry = add();
+				byte listType = buffer.get();
+				int length = Math.max(buffer.getInt(), 0);
+				if (elements + length > limits.getMaxElements()) {
+					throw new ReadLimitExceededException("list of " + length + " elements exceeds the maximum of " + limits.getMaxElements() + " elements", bytesAllocated);
+				}
+				int size = NBTDecoder.payloadSize(listType);
+				if (size >= 0) {
+					elements += length;
+					// lists of numbers are read into primitive arrays
+					allocate((long) length * (listType == EndTag.ID ? ReadLimits.TAG_OVERHEAD : size));
+					skip((long) length * size);
+				} else {
+					for (int i = 0; i < length; i++) {
+						scan(listType, decrementMaxDepth(maxDepth));
+					}
+				}
+				finish(entry);
+				break;
+			}
+			case CompoundTag.ID: {
+				int entry = add();
+				for (byte entryId = buffer.get(); entryId != 0; entryId = buffer.get()) {
+					int keyLength = buffer.getShort() & 0xFFFF;
+					allocate(keyLength);
+					skip(keyLength);
+					scan(entryId, decrementMaxDepth(maxDepth));
+				}
+				finish(entry);
+				break;
+			}
+			default: {
+				int size = NBTDecoder.payloadSize(id);
+				if (size < 0) {
+					throw new IOException("invalid tag id \"" + id + "\"");
+				}
+				skip(size);
+			}
+		}
+	}
+
+	private void scanArray(int elementSize) throws IOException {
+		int entry = add();
+		int length = buffer.getInt();
+		if (length < 0) {
+			throw new IOException("invalid array length " + length);
+		}
+		if (length > limits.getMaxArrayLength()) {
+			throw new ReadLimitExceededException("array of " + length + " elements exceeds the maximum length of " + limits.getMaxArrayLength(), bytesAllocated);
+		}
+		allocate((long) length * elementSize);
+		skip((long) length * elementSize);
+		finish(entry);
+	}
+
+	private int add() {
+		if (size == starts.length) {
+			int capacity = size * 2;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			nexts = Arrays.copyOf(nexts, capacity);
+		}
+		starts[size] = buffer.position();
+		return size++;
+	}
+
+	private void finish(int entry) {
+		ends[entry] = buffer.position();
+		nexts[entry] = size;
+	}
+
+	private void skip(long n) throws EOFException {
+		if (n > buffer.remaining()) {
+			throw new EOFException("unexpected end of NBT payload");
+		}
+		buffer.position(buffer.position() + (int) n);
+	}
+
+	private void allocateElement() throws ReadLimitExceededException {
+		if (++elements > limits.getMaxElements()) {
+			throw new ReadLimitExceededException("read more than " + limits.getMaxElements() + " elements", bytesAllocated);
+		}
+		allocate(ReadLimits.TAG_OVERHEAD);
+	}
+
+	private void allocate(long bytes) throws ReadLimitExceededException {
+		if (bytes > limits.getMaxBytes() - bytesAllocated) {
+			throw new ReadLimitExceededException("allocating " + bytes + " bytes exceeds the budget of " + limits.getMaxBytes() + " bytes", bytesAllocated);
+		}
+		bytesAllocated += bytes;
+	}
+}
@@ -4,152 +4,54 @@ package net.sandrohc.schematic4j.nbt.io;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteOrder;
 
-import net.sandrohc.schematic4j.nbt.ExceptionTriConsumer;
 import net.sandrohc.schematic4j.nbt.MaxDepthIO;
-import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
-import net.sandrohc.schematic4j.nbt.tag.ByteTag;
-import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
-import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
-import net.sandrohc.schematic4j.nbt.tag.EndTag;
-import net.sandrohc.schematic4j.nbt.tag.FloatTag;
-import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
-import net.sandrohc.schematic4j.nbt.tag.IntTag;
-import net.sandrohc.schematic4j.nbt.tag.ListTag;
-import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
-import net.sandrohc.schematic4j.nbt.tag.LongTag;
-import net.sandrohc.schematic4j.nbt.tag.ShortTag;
-import net.sandrohc.schematic4j.nbt.tag.StringTag;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
 
+/**
+ * Big endian NBT output stream. Tags are written by a {@link NBTEncoder} buffering in front of the underlying stream,
+ * which is drained after each tag, so they can be freely mixed with the {@link DataOutputStream} methods and are
+ * counted by {@link #size()}.
+ */
 public class NBTOutputStream extends DataOutputStream implements NBTOutput, MaxDepthIO {
 
-	private static Map<Byte, ExceptionTriConsumer<NBTOutputStream, Tag<?>, Integer, IOException>> writers = new HashMap<>();
-	private static Map<Class<?>, Byte> classIdMapping = new HashMap<>();
-
-	static {
-		put(EndTag.ID, (o, t, d) -> {}, EndTag.class);
-		put(ByteTag.ID, (o, t, d) -> writeByte(o, t), ByteTag.class);
-		put(ShortTag.ID, (o, t, d) -> writeShort(o, t), ShortTag.class);
-		put(IntTag.ID, (o, t, d) -> writeInt(o, t), IntTag.class);
-		put(LongTag.ID, (o, t, d) -> writeLong(o, t), LongTag.class);
-		put(FloatTag.ID, (o, t, d) -> writeFloat(o, t), FloatTag.class);
-		put(DoubleTag.ID, (o, t, d) -> writeDouble(o, t), DoubleTag.class);
-		put(ByteArrayTag.ID, (o, t, d) -> writeByteArray(o, t), ByteArrayTag.class);
-		put(StringTag.ID, (o, t, d) -> writeString(o, t), StringTag.class);
-		put(ListTag.ID, NBTOutputStream::writeList, ListTag.class);
-		put(CompoundTag.ID, NBTOutputStream::writeCompound, CompoundTag.class);
-		put(IntArrayTag.ID, (o, t, d) -> writeIntArray(o, t), IntArrayTag.class);
-		put(LongArrayTag.ID, (o, t, d) -> writeLongArray(o, t), LongArrayTag.class);
-	}
-
-	private static void put(byte id, ExceptionTriConsumer<NBTOutputStream, Tag<?>, Integer, IOException> f, Class<?> clazz) {
-		writers.put(id, f);
-		classIdMapping.put(clazz, id);
-	}
+	private NBTEncoder encoder;
 
 	public NBTOutputStream(OutputStream out) {
 		super(out);
 	}
 
 	public void writeTag(NamedTag tag, int maxDepth) throws IOException {
-		writeByte(tag.getTag().getID());
-		if (tag.getTag().getID() != 0) {
-			writeUTF(tag.getName() == null ? "" : tag.getName());
-		}
-		writeRawTag(tag.getTag(), maxDepth);
+		NBTEncoder encoder = encoder();
+		encoder.writeTag(tag, maxDepth);
+		drain(encoder);
 	}
 
 	public void writeTag(Tag<?> tag, int maxDepth) throws IOException {
-		writeByte(tag.getID());
-		if (tag.getID() != 0) {
-			writeUTF("");
-		}
-		writeRawTag(tag, maxDepth);
+		NBTEncoder encoder = encoder();
+		encoder.writeTag(tag, maxDepth);
+		drain(encoder);
 	}
 
 	public void writeRawTag(Tag<?> tag, int maxDepth) throws IOException {
-		ExceptionTriConsumer<NBTOutputStream, Tag<?>, Integer, IOException> f;
-		if ((f = writers.get(tag.getID())) == null) {
-			throw new IOException("invalid tag \"" + tag.getID() + "\"");
-		}
-		f.accept(this, tag, maxDepth);
-	}
-
-	static byte idFromClass(Class<?> clazz) {
-		Byte id = classIdMapping.get(clazz);
-		if (id == null) {
-			throw new IllegalArgumentException("unknown Tag class " + clazz.getName());
-		}
-		return id;
-	}
-
-	private static void writeByte(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeByte(((ByteTag) tag).asByte());
-	}
-	
-	private static void writeShort(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeShort(((ShortTag) tag).asShort());
-	}
-	
-	private static void writeInt(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((IntTag) tag).asInt());
-	}
-
-	private static void writeLong(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeLong(((LongTag) tag).asLong());
+		NBTEncoder encoder = encoder();
+		encoder.writeRawTag(tag, maxDepth);
+		drain(encoder);
 	}
 
-	private static void writeFloat(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeFloat(((FloatTag) tag).asFloat());
-	}
-
-	private static void writeDouble(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeDouble(((DoubleTag) tag).asDouble());
-	}
-
-	private static void writeString(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeUTF(((StringTag) tag).getValue());
-	}
-
-	private static void writeByteArray(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((ByteArrayTag) tag).length());
-		out.write(((ByteArrayTag) tag).getValue());
-	}
-
-	private static void writeIntArray(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((IntArrayTag) tag).length());
-		for (int i : ((IntArrayTag) tag).getValue()) {
-			out.writeInt(i);
-		}
-	}
-
-	private static void writeLongArray(NBTOutputStream out, Tag<?> tag) throws IOException {
-		out.writeInt(((LongArrayTag) tag).length());
-		for (long l : ((LongArrayTag) tag).getValue()) {
-			out.writeLong(l);
-		}
-	}
-
-	private static void writeList(NBTOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
-		out.writeByte(idFromClass(((ListTag<?>) tag).getTypeClass()));
-		out.writeInt(((ListTag<?>) tag).size());
-		for (Tag<?> t : ((ListTag<?>) tag)) {
-			out.writeRawTag(t, out.decrementMaxDepth(maxDepth));
-		}
+	/**
+	 * Drain the encoder, counting its bytes in {@link #size()} as {@link DataOutputStream} counts the bytes written
+	 * through it.
+	 */
+	private void drain(NBTEncoder encoder) throws IOException {
+		written = (int) Math.min(written + encoder.drain(), Integer.MAX_VALUE);
 	}
 
-	private static void writeCompound(NBTOutputStream out, Tag<?> tag, int maxDepth) throws IOException {
-		for (Map.Entry<String, Tag<?>> entry : (CompoundTag) tag) {
-			if (entry.getValue().getID() == 0) {
-				throw new IOException("end tag not allowed");
-			}
-			out.writeByte(entry.getValue().getID());
-			out.writeUTF(entry.getKey());
-			out.writeRawTag(entry.getValue(), out.decrementMaxDepth(maxDepth));
+	private NBTEncoder encoder() {
+		if (encoder == null) {
+			encoder = new NBTEncoder(out, ByteOrder.BIG_ENDIAN, new byte[NBTEncoder.DEFAULT_BUFFER_SIZE]);
 		}
-		out.writeByte(0);
+		return encoder;
 	}
 }
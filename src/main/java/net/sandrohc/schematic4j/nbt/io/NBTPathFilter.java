@@ -0,0 +1,129 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Selects which parts of an NBT tree to read, by their path from the root compound.
+ * <p>
+ * Paths are made of segments separated by {@code /}. Each segment matches a compound key or, inside a list, an element
+ * index. The {@code *} segment matches any key or index. A selected path is read as a whole, while the compounds and
+ * lists leading to it only hold the selected entries. For example, {@code Regions/*&#47;Size} reads the {@code Size}
+ * of every region, and nothing else.
+ * <p>
+ * The filter is a trie of path segments, where each node is itself a filter for the subtree below it.
+ *
+ * @see NBTUtil.Reader#only(String...)
+ */
+public final class NBTPathFilter {
+
+	/**
+	 * The segment matching any compound key or list index.
+	 */
+	public static final String WILDCARD = "*";
+
+	private final Map<String, NBTPathFilter> children = new HashMap<>();
+	private NBTPathFilter any;
+	private boolean leaf;
+
+	private NBTPathFilter() {
+	}
+
+	/**
+	 * Create a filter selecting the specified paths.
+	 *
+	 * @param paths The paths to select, relative to the root compound
+	 * @return The filter
+	 * @throws IllegalArgumentException If a path is empty or has empty segments
+	 */
+	public static NBTPathFilter of(String... paths) {
+		NBTPathFilter root = new NBTPathFilter();
+		for (String path : paths) {
+			String[] segments = path.split("/", -1);
+			for (String segment : segments) {
+				if (segment.isEmpty()) {
+					throw new IllegalArgumentException("invalid path \"" + path + "\"");
+				}
+			}
+			root.add(segments, 0);
+		}
+		root.resolve();
+		return root;
+	}
+
+	/**
+	 * Whether the whole subtree is selected.
+	 *
+	 * @return {@code true} if the subtree must be read as a whole
+	 */
+	public boolean isLeaf() {
+		return leaf;
+	}
+
+	/**
+	 * Get the filter for a compound entry.
+	 *
+	 * @param key The compound key
+	 * @return The filter for the entry, or {@code null} if it is not selected
+	 */
+	public NBTPathFilter child(String key) {
+		NBTPathFilter child = children.get(key);
+		return child != null ? child : any;
+	}
+
+	/**
+	 * Get the filter for a list element.
+	 *
+	 * @param index The element index
+	 * @return The filter for the element, or {@code null} if it is not selected
+	 */
+	public NBTPathFilter child(int index) {
+		return children.isEmpty() ? any : child(Integer.toString(index));
+	}
+
+	private void add(String[] segments, int index) {
+		if (index == segments.length) {
+			leaf = true;
+			return;
+		}
+
+		NBTPathFilter child;
+		if (WILDCARD.equals(segments[index])) {
+			if (any == null) {
+				any = new NBTPathFilter();
+			}
+			child = any;
+		} else {
+			child = children.computeIfAbsent(segments[index], k -> new NBTPathFilter());
+		}
+		child.add(segments, index + 1);
+	}
+
+	/**
+	 * Merge the wildcard subtree into the named children, so that {@link #child(String)} only has to look up one node.
+	 */
+	private void resolve() {
+		for (NBTPathFilter child : children.values()) {
+			if (any != null) {
+				child.merge(any);
+			}
+			child.resolve();
+		}
+		if (any != null) {
+			any.resolve();
+		}
+	}
+
+	private void merge(NBTPathFilter other) {
+		leaf |= other.leaf;
+		for (Map.Entry<String, NBTPathFilter> entry : other.children.entrySet()) {
+			children.computeIfAbsent(entry.getKey(), k -> new NBTPathFilter()).merge(entry.getValue());
+		}
+		if (other.any != null) {
+			if (any == null) {
+				any = new NBTPathFilter();
+			}
+			any.merge(other.any);
+		}
+	}
+}
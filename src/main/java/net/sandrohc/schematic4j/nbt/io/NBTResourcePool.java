@@ -0,0 +1,311 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A pool of the resources used to read and write NBT: {@link Inflater inflaters}, {@link Deflater deflaters} and I/O
+ * buffers.
+ * <p>
+ * Inflaters and deflaters hold native memory, which is only released when they are ended or garbage collected, so
+ * allocating one per read or write causes native memory spikes under batch workloads. Pooling them, along with the
+ * buffers, avoids both those spikes and the garbage collection churn.
+ * <p>
+ * The available strategies are:
+ * <ul>
+ *     <li>{@link #unpooled()}: every resource is allocated when acquired and released right away. This is the
+ *     default;</li>
+ *     <li>{@link #threadLocal(int)}: each thread keeps its own idle resources, with no contention. Best for a fixed
+ *     set of worker threads, since the idle resources of a thread are only freed once it terminates;</li>
+ *     <li>{@link #bounded(int)}: idle resources are shared by all threads, up to a fixed number of each kind.</li>
+ * </ul>
+ * The pool used when none is specified can be changed with {@link #setDefault(NBTResourcePool)}. All the pools are
+ * thread-safe.
+ *
+ * @see NBTUtil.Reader#pool(NBTResourcePool)
+ * @see NBTUtil.Writer#pool(NBTResourcePool)
+ */
+public abstract class NBTResourcePool {
+
+	/**
+	 * The default maximum number of idle resources kept of each kind.
+	 */
+	public static final int DEFAULT_MAX_IDLE = 4;
+
+	static final int INFLATER = 0;
+	static final int ZLIB_INFLATER = 1;
+	static final int DEFLATER = 2;
+	static final int ZLIB_DEFLATER = 3;
+	static final int BUFFER = 4;
+	static final int KINDS = 5;
+
+	private static final NBTResourcePool UNPOOLED = new Unpooled();
+
+	private static volatile NBTResourcePool defaultPool = UNPOOLED;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	NBTResourcePool() {
+	}
+
+	/**
+	 * Get the pool that allocates every resource when acquired, and releases it right away.
+	 *
+	 * @return The pool
+	 */
+	public static NBTResourcePool unpooled() {
+		return UNPOOLED;
+	}
+
+	/**
+	 * Create a pool keeping up to {@value #DEFAULT_MAX_IDLE} idle resources of each kind per thread.
+	 *
+	 * @return The pool
+	 */
+	public static NBTResourcePool threadLocal() {
+		return threadLocal(DEFAULT_MAX_IDLE);
+	}
+
+	/**
+	 * Create a pool keeping the idle resources per thread.
+	 *
+	 * @param maxIdle The maximum number of idle resources kept of each kind, per thread
+	 * @return The pool
+	 */
+	public static NBTResourcePool threadLocal(int maxIdle) {
+		return new ThreadLocalPool(checkMaxIdle(maxIdle));
+	}
+
+	/**
+	 * Create a pool sharing the idle resources between all threads.
+	 *
+	 * @param maxIdle The maximum number of idle resources kept of each kind
+	 * @return The pool
+	 */
+	public static NBTResourcePool bounded(int maxIdle) {
+		return new BoundedPool(checkMaxIdle(maxIdle));
+	}
+
+	/**
+	 * Get the pool used by the readers and writers when none is specified.
+	 *
+	 * @return The default pool, {@link #unpooled()} unless changed
+	 */
+	public static NBTResourcePool getDefault() {
+		return defaultPool;
+	}
+
+	/**
+	 * Set the pool used by the readers and writers when none is specified.
+	 *
+	 * @param pool The default pool
+	 */
+	public static void setDefault(NBTResourcePool pool) {
+		if (pool == null) {
+			throw new IllegalArgumentException("pool must be set");
+		}
+		defaultPool = pool;
+	}
+
+	/**
+	 * Acquire an inflater.
+	 *
+	 * @param nowrap Whether the inflater reads raw deflate data, as in GZIP, instead of zlib
+	 * @return The inflater, to be given back with {@link #releaseInflater(Inflater, boolean)}
+	 */
+	public Inflater acquireInflater(boolean nowrap) {
+		Inflater inflater = (Inflater) acquire(nowrap ? INFLATER : ZLIB_INFLATER);
+		return inflater != null ? inflater : new Inflater(nowrap);
+	}
+
+	/**
+	 * Give back an inflater, which must not be used anymore.
+	 *
+	 * @param inflater The inflater
+	 * @param nowrap   Whether the inflater was acquired to read raw deflate data
+	 */
+	public void releaseInflater(Inflater inflater, boolean nowrap) {
+		inflater.reset();
+		if (!offer(nowrap ? INFLATER : ZLIB_INFLATER, inflater)) {
+			inflater.end();
+		}
+	}
+
+	/**
+	 * Acquire a deflater.
+	 *
+	 * @param level  The compression level, from 0 to 9
+	 * @param nowrap Whether the deflater writes raw deflate data, as in GZIP, instead of zlib
+	 * @return The deflater, to be given back with {@link #releaseDeflater(Deflater, boolean)}
+	 */
+	public Deflater acquireDeflater(int level, boolean nowrap) {
+		Deflater deflater = (Deflater) acquire(nowrap ? DEFLATER : ZLIB_DEFLATER);
+		if (deflater == null) {
+			return new Deflater(level, nowrap);
+		}
+		deflater.setLevel(level);
+		return deflater;
+	}
+
+	/**
+	 * Give back a deflater, which must not be used anymore.
+	 *
+	 * @param deflater The deflater
+	 * @param nowrap   Whether the deflater was acquired to write raw deflate data
+	 */
+	public void releaseDeflater(Deflater deflater, boolean nowrap) {
+		deflater.reset();
+		if (!offer(nowrap ? DEFLATER : ZLIB_DEFLATER, deflater)) {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Acquire a buffer. Its contents are undefined.
+	 *
+	 * @param minSize The minimum size of the buffer
+	 * @return The buffer, which may be larger than requested, to be given back with {@link #releaseBuffer(byte[])}
+	 */
+	public byte[] acquireBuffer(int minSize) {
+		Object buffer = poll(BUFFER);
+		if (buffer != null && ((byte[]) buffer).length >= minSize) {
+			hits.increment();
+			return (byte[]) buffer;
+		}
+		// a buffer too small is dropped, so that the pool adapts to the sizes requested
+		misses.increment();
+		return new byte[minSize];
+	}
+
+	/**
+	 * Give back a buffer, which must not be used anymore.
+	 *
+	 * @param buffer The buffer
+	 */
+	public void releaseBuffer(byte[] buffer) {
+		offer(BUFFER, buffer);
+	}
+
+	/**
+	 * Get the number of resources acquired from the idle ones.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * Get the number of resources that had to be allocated when acquired.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	private Object acquire(int kind) {
+		Object resource = poll(kind);
+		if (resource != null) {
+			hits.increment();
+		} else {
+			misses.increment();
+		}
+		return resource;
+	}
+
+	/**
+	 * Take an idle resource.
+	 *
+	 * @param kind The kind of resource
+	 * @return The resource, or {@code null} if there are none idle
+	 */
+	abstract Object poll(int kind);
+
+	/**
+	 * Keep an idle resource.
+	 *
+	 * @param kind     The kind of resource
+	 * @param resource The resource
+	 * @return {@code false} if the resource was not kept, and must be freed
+	 */
+	abstract boolean offer(int kind, Object resource);
+
+	private static int checkMaxIdle(int maxIdle) {
+		if (maxIdle <= 0) {
+			throw new IllegalArgumentException("invalid max idle " + maxIdle);
+		}
+		return maxIdle;
+	}
+
+	private static final class Unpooled extends NBTResourcePool {
+
+		@Override
+		Object poll(int kind) {
+			return null;
+		}
+
+		@Override
+		boolean offer(int kind, Object resource) {
+			return false;
+		}
+	}
+
+	private static final class ThreadLocalPool extends NBTResourcePool {
+
+		private final int maxIdle;
+		private final ThreadLocal<ArrayDeque<?>[]> idle;
+
+		ThreadLocalPool(int maxIdle) {
+			this.maxIdle = maxIdle;
+			this.idle = ThreadLocal.withInitial(() -> new ArrayDeque<?>[KINDS]);
+		}
+
+		@Override
+		Object poll(int kind) {
+			ArrayDeque<?> resources = idle.get()[kind];
+			return resources != null ? resources.pollLast() : null;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		boolean offer(int kind, Object resource) {
+			ArrayDeque<?>[] kinds = idle.get();
+			if (kinds[kind] == null) {
+				kinds[kind] = new ArrayDeque<>(maxIdle);
+			}
+			ArrayDeque<Object> resources = (ArrayDeque<Object>) kinds[kind];
+			if (resources.size() >= maxIdle) {
+				return false;
+			}
+			resources.addLast(resource);
+			return true;
+		}
+	}
+
+	private static final class BoundedPool extends NBTResourcePool {
+
+		private final ArrayBlockingQueue<?>[] idle = new ArrayBlockingQueue<?>[KINDS];
+
+		BoundedPool(int maxIdle) {
+			for (int kind = 0; kind < KINDS; kind++) {
+				idle[kind] = new ArrayBlockingQueue<>(maxIdle);
+			}
+		}
+
+		@Override
+		Object poll(int kind) {
+			return idle[kind].poll();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		boolean offer(int kind, Object resource) {
+			return ((ArrayBlockingQueue<Object>) idle[kind]).offer(resource);
+		}
+	}
+}
@@ -3,7 +3,9 @@ package net.sandrohc.schematic4j.nbt.io;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.zip.GZIPOutputStream;
+import java.nio.ByteOrder;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
 
 import net.sandrohc.schematic4j.nbt.Serializer;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
@@ -11,6 +13,9 @@ import net.sandrohc.schematic4j.nbt.tag.Tag;
 public class NBTSerializer implements Serializer<NamedTag> {
 
 	private boolean compressed, littleEndian;
+	private NBTResourcePool pool;
+	private int level = Deflater.DEFAULT_COMPRESSION;
+	private ForkJoinPool compressionPool;
 
 	public NBTSerializer() {
 		this(true);
@@ -25,22 +30,72 @@ public class NBTSerializer implements Serializer<NamedTag> {
 		this.littleEndian = littleEndian;
 	}
 
+	/**
+	 * @param compressed   Whether to GZIP compress the output
+	 * @param littleEndian Whether to write the output as little endian
+	 * @param pool         The pool to acquire the deflater and buffers from, or {@code null} for the default pool
+	 */
+	public NBTSerializer(boolean compressed, boolean littleEndian, NBTResourcePool pool) {
+		this.compressed = compressed;
+		this.littleEndian = littleEndian;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param compressed      Whether to GZIP compress the output
+	 * @param littleEndian    Whether to write the output as little endian
+	 * @param pool            The pool to acquire the deflaters and buffers from, or {@code null} for the default pool
+	 * @param level           The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param compressionPool The pool to compress on in parallel, or {@code null} to compress on the calling thread
+	 * @see ParallelCompressingOutputStream
+	 */
+	public NBTSerializer(boolean compressed, boolean littleEndian, NBTResourcePool pool, int level, ForkJoinPool compressionPool) {
+		this.compressed = compressed;
+		this.littleEndian = littleEndian;
+		this.pool = pool;
+		this.level = level;
+		this.compressionPool = compressionPool;
+	}
+
 	@Override
 	public void toStream(NamedTag object, OutputStream out) throws IOException {
-		NBTOutput nbtOut;
+		NBTResourcePool pool = this.pool != null ? this.pool : NBTResourcePool.getDefault();
+		CompressingOutputStream compressing = null;
+		ParallelCompressingOutputStream parallelCompressing = null;
 		OutputStream output;
+		// the encoder buffer is as large as the compression buffers, so that any of them can be reused for the other
+		int bufferSize;
 		if (compressed) {
-			output = new GZIPOutputStream(out, true);
+			if (compressionPool != null) {
+				bufferSize = ParallelCompressingOutputStream.DEFAULT_BLOCK_SIZE;
+				output = parallelCompressing = new ParallelCompressingOutputStream(out, level, bufferSize, compressionPool, pool);
+			} else {
+				bufferSize = CompressingOutputStream.DEFAULT_BUFFER_SIZE;
+				output = compressing = new CompressingOutputStream(out, level, bufferSize, pool);
+			}
 		} else {
+			bufferSize = NBTEncoder.DEFAULT_BUFFER_SIZE;
 			output = out;
 		}
 
-		if (littleEndian) {
-			nbtOut = new LittleEndianNBTOutputStream(output);
-		} else {
-			nbtOut = new NBTOutputStream(output);
+		byte[] buffer = pool.acquireBuffer(bufferSize);
+		try {
+			NBTEncoder encoder = new NBTEncoder(output, littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN, buffer);
+			encoder.writeTag(object, Tag.DEFAULT_MAX_DEPTH);
+			encoder.drain();
+			if (compressing != null) {
+				compressing.finish();
+			} else if (parallelCompressing != null) {
+				parallelCompressing.finish();
+			}
+			encoder.flush();
+		} finally {
+			if (compressing != null) {
+				compressing.end();
+			} else if (parallelCompressing != null) {
+				parallelCompressing.end();
+			}
+			pool.releaseBuffer(buffer);
 		}
-		nbtOut.writeTag(object, Tag.DEFAULT_MAX_DEPTH);
-		nbtOut.flush();
 	}
 }
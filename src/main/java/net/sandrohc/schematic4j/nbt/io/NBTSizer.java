@@ -0,0 +1,151 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Map;
+
+import net.sandrohc.schematic4j.nbt.MaxDepthIO;
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ByteTag;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
+import net.sandrohc.schematic4j.nbt.tag.EndTag;
+import net.sandrohc.schematic4j.nbt.tag.FloatTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongTag;
+import net.sandrohc.schematic4j.nbt.tag.ShortTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Computes the exact size of the uncompressed binary NBT a tag encodes to, without encoding it.
+ * <p>
+ * The size only depends on the byte order through the strings, which are modified UTF-8 in big endian and standard
+ * UTF-8 in little endian. Knowing it upfront lets the output be written into a single buffer of the right size, such
+ * as by {@link NBTUtil.Writer#toBytes()}.
+ *
+ * @see NBTEncoder
+ */
+public final class NBTSizer implements MaxDepthIO {
+
+	private static final NBTSizer BIG_ENDIAN = new NBTSizer(true);
+	private static final NBTSizer LITTLE_ENDIAN = new NBTSizer(false);
+
+	private final boolean modifiedUtf8;
+
+	private NBTSizer(boolean modifiedUtf8) {
+		this.modifiedUtf8 = modifiedUtf8;
+	}
+
+	/**
+	 * Get the size of a named tag, as written by {@link NBTOutput#writeTag(NamedTag, int)}.
+	 *
+	 * @param tag   The named tag
+	 * @param order The byte order of the output
+	 * @return The size in bytes
+	 * @throws IOException If a tag ID is invalid
+	 */
+	public static long sizeOf(NamedTag tag, ByteOrder order) throws IOException {
+		NBTSizer sizer = forOrder(order);
+		return sizer.named(tag.getTag(), tag.getName() == null ? "" : tag.getName());
+	}
+
+	/**
+	 * Get the size of an unnamed tag, as written by {@link NBTOutput#writeTag(Tag, int)}.
+	 *
+	 * @param tag   The tag
+	 * @param order The byte order of the output
+	 * @return The size in bytes
+	 * @throws IOException If a tag ID is invalid
+	 */
+	public static long sizeOf(Tag<?> tag, ByteOrder order) throws IOException {
+		return forOrder(order).named(tag, "");
+	}
+
+	/**
+	 * Get the size of the payload of a tag, without its ID nor name, as written by
+	 * {@link NBTEncoder#writeRawTag(Tag, int)}.
+	 *
+	 * @param tag   The tag
+	 * @param order The byte order of the output
+	 * @return The size in bytes
+	 * @throws IOException If a tag ID is invalid
+	 */
+	public static long payloadSizeOf(Tag<?> tag, ByteOrder order) throws IOException {
+		return forOrder(order).payload(tag, Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	private static NBTSizer forOrder(ByteOrder order) {
+		return order == ByteOrder.BIG_ENDIAN ? BIG_ENDIAN : LITTLE_ENDIAN;
+	}
+
+	private long named(Tag<?> tag, String name) throws IOException {
+		if (tag.getID() == EndTag.ID) {
+			return Byte.BYTES;
+		}
+		return Byte.BYTES + string(name) + payload(tag, Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	private long string(String s) {
+		return Short.BYTES + NBTEncoder.encodedLength(s, modifiedUtf8);
+	}
+
+	private long payload(Tag<?> tag, int maxDepth) throws IOException {
+		switch (tag.getID()) {
+			case EndTag.ID:
+				return 0;
+			case ByteTag.ID:
+				return Byte.BYTES;
+			case ShortTag.ID:
+				return Short.BYTES;
+			case IntTag.ID:
+			case FloatTag.ID:
+				return Integer.BYTES;
+			case LongTag.ID:
+			case DoubleTag.ID:
+				return Long.BYTES;
+			case ByteArrayTag.ID:
+				return Integer.BYTES + (long) ((ByteArrayTag) tag).length();
+			case StringTag.ID:
+				return string(((StringTag) tag).getValue());
+			case ListTag.ID:
+				return list((ListTag<?>) tag, maxDepth);
+			case CompoundTag.ID:
+				return compound((CompoundTag) tag, maxDepth);
+			case IntArrayTag.ID:
+				return Integer.BYTES + (long) ((IntArrayTag) tag).length() * Integer.BYTES;
+			case LongArrayTag.ID:
+				return Integer.BYTES + (long) ((LongArrayTag) tag).length() * Long.BYTES;
+			default:
+				throw new IOException("invalid tag \"" + tag.getID() + "\"");
+		}
+	}
+
+	private long list(ListTag<?> list, int maxDepth) throws IOException {
+		byte listType = NBTEncoder.idFromClass(list.getTypeClass());
+		int size = list.size();
+		long bytes = Byte.BYTES + Integer.BYTES;
+		if (listType >= ByteTag.ID && listType <= DoubleTag.ID) {
+			if (size > 0) {
+				decrementMaxDepth(maxDepth);
+			}
+			// the elements of lists of numbers all have the same size, and need not be visited
+			return bytes + (long) size * NBTDecoder.payloadSize(listType);
+		}
+		for (Tag<?> t : list) {
+			bytes += payload(t, decrementMaxDepth(maxDepth));
+		}
+		return bytes;
+	}
+
+	private long compound(CompoundTag compound, int maxDepth) throws IOException {
+		long bytes = Byte.BYTES;
+		for (Map.Entry<String, Tag<?>> entry : compound) {
+			bytes += Byte.BYTES + string(entry.getKey()) + payload(entry.getValue(), decrementMaxDepth(maxDepth));
+		}
+		return bytes;
+	}
+}
@@ -0,0 +1,162 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+/**
+ * A bounded intern table for decoded strings, keyed on their raw encoded bytes.
+ * <p>
+ * Repeated compound keys and short string values, like block states and entity IDs, resolve to a shared
+ * {@link String} instance without being decoded again. The table has a fixed number of slots: when all the slots a
+ * string hashes to are taken, the first of them is overwritten, so memory use stays bounded regardless of the input.
+ * <p>
+ * A cache can be reused across reads to share strings between them, as long as the reads use the same byte order,
+ * since the bytes are decoded as modified UTF-8 in big endian and as UTF-8 in little endian. This class is not
+ * thread-safe.
+ *
+ * @see NBTUtil.Reader#internStrings(NBTStringCache)
+ */
+public final class NBTStringCache {
+
+	/**
+	 * The default number of slots.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The default maximum length, in bytes, of the strings cached.
+	 */
+	public static final int DEFAULT_MAX_LENGTH = 64;
+
+	/**
+	 * The number of slots probed for each string.
+	 */
+	private static final int PROBES = 4;
+
+	private final byte[][] keys;
+	private final String[] values;
+	private final int mask;
+	private final int maxLength;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Create a cache with the default capacity and maximum string length.
+	 */
+	public NBTStringCache() {
+		this(DEFAULT_CAPACITY, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param capacity  The number of slots, rounded up to a power of two
+	 * @param maxLength The maximum length, in bytes, of the strings cached
+	 */
+	public NBTStringCache(int capacity, int maxLength) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("invalid capacity " + capacity);
+		}
+		int size = Integer.highestOneBit(capacity);
+		if (size < capacity) {
+			size <<= 1;
+		}
+		this.keys = new byte[size][];
+		this.values = new String[size];
+		this.mask = size - 1;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Get the maximum length, in bytes, of the strings cached.
+	 *
+	 * @return The maximum length
+	 */
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Get the number of lookups that found a cached string.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Get the number of lookups that had to decode the string.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Look up a string by its encoded bytes.
+	 *
+	 * @param bytes  The array holding the encoded bytes
+	 * @param offset The offset of the encoded bytes
+	 * @param length The number of encoded bytes
+	 * @return The cached string, or {@code null} if it is not cached
+	 */
+	String get(byte[] bytes, int offset, int length) {
+		int hash = hash(bytes, offset, length);
+		for (int i = 0; i < PROBES; i++) {
+			int slot = (hash + i) & mask;
+			byte[] key = keys[slot];
+			if (key == null) {
+				break;
+			}
+			if (matches(key, bytes, offset, length)) {
+				hits++;
+				return values[slot];
+			}
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * Cache a decoded string.
+	 *
+	 * @param bytes  The array holding the encoded bytes
+	 * @param offset The offset of the encoded bytes
+	 * @param length The number of encoded bytes
+	 * @param value  The decoded string
+	 */
+	void put(byte[] bytes, int offset, int length, String value) {
+		int hash = hash(bytes, offset, length);
+		int slot = hash & mask;
+		for (int i = 0; i < PROBES; i++) {
+			int candidate = (hash + i) & mask;
+			if (keys[candidate] == null) {
+				slot = candidate;
+				break;
+			}
+		}
+		byte[] key = new byte[length];
+		System.arraycopy(bytes, offset, key, 0, length);
+		keys[slot] = key;
+		values[slot] = value;
+	}
+
+	private static int hash(byte[] bytes, int offset, int length) {
+		int hash = length;
+		for (int i = offset, end = offset + length; i < end; i++) {
+			hash = 31 * hash + bytes[i];
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(byte[] key, byte[] bytes, int offset, int length) {
+		if (key.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (key[i] != bytes[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
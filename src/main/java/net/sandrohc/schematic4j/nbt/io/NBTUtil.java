@@ -1,19 +1,33 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.io;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.zip.GZIPInputStream;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.LongConsumer;
+import java.util.zip.Deflater;
 
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
 
 public final class NBTUtil {
@@ -35,6 +49,10 @@ public final class NBTUtil {
 		public final NamedTag tag;
 		private boolean compressed = true;
 		private boolean littleEndian = false;
+		private NBTResourcePool pool;
+		private int level = Deflater.DEFAULT_COMPRESSION;
+		private ForkJoinPool compressionPool;
+		private int compressionThreads;
 
 		private Writer(NamedTag tag) {
 			this.tag = tag;
@@ -79,6 +97,74 @@ public final class NBTUtil {
 			return this;
 		}
 
+		/**
+		 * Acquire the deflater and buffers from a pool, instead of the {@link NBTResourcePool#getDefault() default}
+		 * one.
+		 *
+		 * @param pool The pool to acquire resources from
+		 * @return the writer builder
+		 * @see NBTResourcePool
+		 */
+		public Writer pool(NBTResourcePool pool) {
+			this.pool = pool;
+			return this;
+		}
+
+		/**
+		 * Set the compression level, when {@link #compressed(boolean) compressed}.
+		 *
+		 * @param level The compression level, from 0 (none) to 9 (best), or {@link Deflater#DEFAULT_COMPRESSION}
+		 * @return the writer builder
+		 */
+		public Writer level(int level) {
+			if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+				throw new IllegalArgumentException("invalid compression level " + level);
+			}
+			this.level = level;
+			return this;
+		}
+
+		/**
+		 * Compress in parallel on the common fork/join pool.
+		 *
+		 * @return the writer builder
+		 * @see #parallel(ForkJoinPool)
+		 */
+		public Writer parallel() {
+			return parallel(ForkJoinPool.commonPool());
+		}
+
+		/**
+		 * Compress in parallel on a pool of threads created for each write, and shut down once it completes.
+		 *
+		 * @param threads The number of threads to compress on
+		 * @return the writer builder
+		 * @see #parallel(ForkJoinPool)
+		 */
+		public Writer parallel(int threads) {
+			if (threads <= 0) {
+				throw new IllegalArgumentException("invalid thread count " + threads);
+			}
+			this.compressionPool = null;
+			this.compressionThreads = threads;
+			return this;
+		}
+
+		/**
+		 * Compress blocks of the output on a fork/join pool, and concatenate them into a single GZIP stream, like pigz
+		 * does. This lets writing a large schematic use all the cores, at the cost of a slightly larger output. Only
+		 * applies when {@link #compressed(boolean) compressed}.
+		 *
+		 * @param pool The pool to compress on
+		 * @return the writer builder
+		 * @see ParallelCompressingOutputStream
+		 */
+		public Writer parallel(ForkJoinPool pool) {
+			this.compressionPool = pool;
+			this.compressionThreads = 0;
+			return this;
+		}
+
 		/**
 		 * Writes the NBT tag to an output stream. Terminal operator.
 		 *
@@ -91,7 +177,46 @@ public final class NBTUtil {
 			if (os == null)
 				throw new IllegalStateException("output must be set");
 
-			new NBTSerializer(compressed, littleEndian).toStream(tag, os);
+			if (compressed && compressionThreads > 0) {
+				ForkJoinPool compressionPool = new ForkJoinPool(compressionThreads);
+				try {
+					new NBTSerializer(compressed, littleEndian, pool, level, compressionPool).toStream(tag, os);
+				} finally {
+					compressionPool.shutdown();
+				}
+				return;
+			}
+			new NBTSerializer(compressed, littleEndian, pool, level, compressionPool).toStream(tag, os);
+		}
+
+		/**
+		 * Writes the NBT tag to a byte array. Terminal operator.
+		 * <p>
+		 * Uncompressed tags are encoded straight into an array of exactly their {@link NBTSizer size}, with no
+		 * regrowth nor copying.
+		 *
+		 * @return The bytes written
+		 * @throws IOException In case of error encoding the tag
+		 */
+		public byte[] toBytes() throws IOException {
+			if (tag == null)
+				throw new IllegalStateException("tag must be set");
+
+			if (compressed) {
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				to(os);
+				return os.toByteArray();
+			}
+
+			ByteOrder order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			long size = NBTSizer.sizeOf(tag, order);
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("NBT payload of " + size + " bytes is too large for an array");
+			}
+			NBTEncoder encoder = new NBTEncoder(order, (int) Math.max(size, Long.BYTES));
+			encoder.writeTag(tag, Tag.DEFAULT_MAX_DEPTH);
+			ByteBuffer payload = encoder.toByteBuffer();
+			return payload.remaining() == payload.array().length ? payload.array() : Arrays.copyOf(payload.array(), payload.remaining());
 		}
 
 		/**
@@ -137,7 +262,25 @@ public final class NBTUtil {
 	 */
 	public static class Reader {
 
+		/**
+		 * The minimum payload size, in bytes, of the arrays exposed as views when {@link #mapped() memory-mapping}.
+		 */
+		public static final int MAPPED_VIEW_THRESHOLD = 4096;
+
+		/**
+		 * The maximum size of a payload decompressed into memory to be {@link #parallel(ForkJoinPool) decoded in parallel}.
+		 */
+		private static final int MAX_BUFFERED_BYTES = Integer.MAX_VALUE - 8;
+
 		private boolean littleEndian = false;
+		private boolean mapped = false;
+		private NBTPathFilter filter;
+		private NBTStringCache stringCache;
+		private int bufferSize = DecompressingInputStream.DEFAULT_BUFFER_SIZE;
+		private NBTResourcePool pool;
+		private ReadLimits limits = ReadLimits.unlimited();
+		private LongConsumer allocationListener;
+		private ForkJoinPool parallelPool;
 
 		public Reader() {
 		}
@@ -166,6 +309,147 @@ public final class NBTUtil {
 			return this;
 		}
 
+		/**
+		 * Memory-map uncompressed files instead of streaming them, when reading from a file. Large byte, int and long
+		 * arrays are then exposed as read-only views over the mapped file instead of being copied onto the heap.
+		 * <p>
+		 * Compressed files, and files too large to be mapped, are still streamed.
+		 *
+		 * @return the reader builder
+		 * @see ByteArrayTag#asBuffer()
+		 * @see IntArrayTag#asBuffer()
+		 * @see LongArrayTag#asBuffer()
+		 */
+		public Reader mapped() {
+			this.mapped = true;
+			return this;
+		}
+
+		/**
+		 * Only read the specified paths, skipping over everything else without creating tags for it. Useful when only
+		 * a few fields are needed, like the name or dimensions of a schematic.
+		 * <p>
+		 * Usage example:
+		 * <pre>{@code Reader.read()
+		 *     .only("Metadata", "Regions/*&#47;Size")
+		 *     .from("file.litematic")}</pre>
+		 *
+		 * @param paths The paths to read, relative to the root compound
+		 * @return the reader builder
+		 * @see NBTPathFilter
+		 */
+		public Reader only(String... paths) {
+			this.filter = NBTPathFilter.of(paths);
+			return this;
+		}
+
+		/**
+		 * Intern the compound keys and short string values read, so that repeated strings share the same instance
+		 * and are only decoded once. A new cache is used for each read.
+		 *
+		 * @return the reader builder
+		 * @see NBTStringCache
+		 */
+		public Reader internStrings() {
+			return internStrings(new NBTStringCache());
+		}
+
+		/**
+		 * Intern the compound keys and short string values read in a cache, which may be shared with other reads
+		 * using the same byte order.
+		 *
+		 * @param stringCache The cache to intern strings in
+		 * @return the reader builder
+		 * @see NBTStringCache
+		 */
+		public Reader internStrings(NBTStringCache stringCache) {
+			this.stringCache = stringCache;
+			return this;
+		}
+
+		/**
+		 * Set the size of the buffers used when reading from a stream or file: the one holding the compressed bytes,
+		 * and the window they are decompressed into. Larger buffers mean fewer, larger reads and inflate calls.
+		 *
+		 * @param bufferSize The buffer size in bytes, {@value DecompressingInputStream#DEFAULT_BUFFER_SIZE} by default
+		 * @return the reader builder
+		 */
+		public Reader bufferSize(int bufferSize) {
+			if (bufferSize < Long.BYTES) {
+				throw new IllegalArgumentException("buffer size must be at least " + Long.BYTES);
+			}
+			this.bufferSize = bufferSize;
+			return this;
+		}
+
+		/**
+		 * Acquire the inflater and buffers from a pool, instead of the {@link NBTResourcePool#getDefault() default}
+		 * one.
+		 *
+		 * @param pool The pool to acquire resources from
+		 * @return the reader builder
+		 * @see NBTResourcePool
+		 */
+		public Reader pool(NBTResourcePool pool) {
+			this.pool = pool;
+			return this;
+		}
+
+		/**
+		 * Limit the memory a read may allocate. A read exceeding a limit fails with a
+		 * {@link ReadLimitExceededException} before allocating anything for the offending tag.
+		 *
+		 * @param limits The limits, {@link ReadLimits#unlimited()} by default
+		 * @return the reader builder
+		 * @see ReadLimits
+		 */
+		public Reader limits(ReadLimits limits) {
+			this.limits = limits;
+			return this;
+		}
+
+		/**
+		 * Report the estimated number of bytes allocated by each read once it completes, or fails. Useful for
+		 * capacity planning, and for choosing the {@link #limits(ReadLimits) limits}. The payload buffered to decode
+		 * in {@link #parallel(ForkJoinPool) parallel} is included.
+		 *
+		 * @param allocationListener The listener receiving the bytes allocated by each read
+		 * @return the reader builder
+		 * @see ReadLimits
+		 */
+		public Reader allocationListener(LongConsumer allocationListener) {
+			this.allocationListener = allocationListener;
+			return this;
+		}
+
+		/**
+		 * Decode in parallel on the common fork/join pool.
+		 *
+		 * @return the reader builder
+		 * @see #parallel(ForkJoinPool)
+		 */
+		public Reader parallel() {
+			return parallel(ForkJoinPool.commonPool());
+		}
+
+		/**
+		 * Decode in two passes: a fast single-threaded scan indexing where every compound, list and array is, and then
+		 * the creation of the tags on a fork/join pool, with large arrays and lists split between its threads. This
+		 * lets a single large schematic use all the cores.
+		 * <p>
+		 * The whole payload must be in memory: memory-mapped and uncompressed byte arrays are decoded in place, while
+		 * streams and compressed payloads are first decompressed into memory, which counts towards the byte budget of
+		 * the {@link #limits(ReadLimits) limits}. Strings are not {@link #internStrings() interned}, and this mode does
+		 * not apply when reading {@link #only(String...) only} some paths.
+		 *
+		 * @param pool The pool to create the tags on
+		 * @return the reader builder
+		 */
+		public Reader parallel(ForkJoinPool pool) {
+			this.parallelPool = pool;
+			return this;
+		}
+
 		/**
 		 * Reads the NBT tag from an input stream. Terminal operator.
 		 *
@@ -174,8 +458,7 @@ public final class NBTUtil {
 		 * @throws IOException In case of error reading from the input stream
 		 */
 		public NamedTag from(InputStream is) throws IOException {
-			return new NBTDeserializer(false/* ignored, will autodetect compression */, littleEndian)
-					.fromStream(detectDecompression(is));
+			return from(is, null);
 		}
 
 		/**
@@ -186,6 +469,9 @@ public final class NBTUtil {
 		 * @throws IOException In case of error reading from the input stream
 		 */
 		public NamedTag from(byte[] bytes) throws IOException {
+			if (isParallel() && DecompressingInputStream.detect(bytes, bytes.length) == DecompressingInputStream.Compression.NONE) {
+				return readParallel(ByteBuffer.wrap(bytes).order(order()), -1, 0);
+			}
 			return from(new ByteArrayInputStream(bytes));
 		}
 
@@ -197,11 +483,104 @@ public final class NBTUtil {
 		 * @throws IOException In case of error reading from the file
 		 */
 		public NamedTag from(Path path) throws IOException {
-			try (InputStream is = new BufferedInputStream(Files.newInputStream(path))) {
+			if (mapped) {
+				try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+					if (isMappable(channel)) {
+						ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+						if (isParallel()) {
+							return readParallel(buffer.order(order()), MAPPED_VIEW_THRESHOLD, 0);
+						}
+						NBTDecoder decoder = new NBTDecoder(buffer.order(order()));
+						decoder.setViewThreshold(MAPPED_VIEW_THRESHOLD);
+						return read(decoder);
+					}
+				}
+			}
+
+			try (InputStream is = Files.newInputStream(path)) {
 				return from(is);
 			}
 		}
 
+		/**
+		 * Reads the NBT tag from a file asynchronously. Terminal operator.
+		 * <p>
+		 * The file is read through an {@link AsynchronousFileChannel}, so no thread blocks on the disk, and then
+		 * decompressed and decoded on the executor. Cancelling the returned future stops reading the file, or decoding
+		 * it at the next buffer refill. The file is always streamed, even when {@link #mapped() memory-mapping}.
+		 * <p>
+		 * The reader must not be modified until the returned future completes.
+		 *
+		 * @param path     The file path to read from
+		 * @param executor The executor to decompress and decode on
+		 * @return The future parsed NBT tag
+		 */
+		public CompletableFuture<NamedTag> fromAsync(Path path, Executor executor) {
+			CompletableFuture<NamedTag> result = new CompletableFuture<>();
+			CompletableFuture<byte[]> contents = AsyncFileReader.read(path);
+			result.whenComplete((tag, e) -> contents.cancel(false));
+
+			contents.whenComplete((bytes, e) -> {
+				if (e != null) {
+					result.completeExceptionally(e);
+					return;
+				}
+				try {
+					executor.execute(() -> {
+						if (result.isDone()) {
+							return;
+						}
+						try {
+							result.complete(from(new ByteArrayInputStream(bytes), result));
+						} catch (Throwable t) {
+							result.completeExceptionally(t);
+						}
+					});
+				} catch (RejectedExecutionException rejected) {
+					result.completeExceptionally(rejected);
+				}
+			});
+			return result;
+		}
+
+		/**
+		 * Decodes the NBT tag from an input stream as a sequence of events, without building it. Terminal operator.
+		 * <p>
+		 * Paths selected with {@link #only(String...)} are ignored, since the visitor can skip entries itself.
+		 *
+		 * @param is      The input stream to read from
+		 * @param visitor The visitor receiving the events
+		 * @throws IOException In case of error reading from the input stream
+		 */
+		public void visit(InputStream is, NBTVisitor visitor) throws IOException {
+			NBTResourcePool pool = pool();
+			DecompressingInputStream input = new DecompressingInputStream(is, bufferSize, pool);
+			byte[] window = pool.acquireBuffer(bufferSize);
+			try {
+				NBTDecoder decoder = new NBTDecoder(input, order(), window);
+				decoder.setStringCache(stringCache);
+				decoder.setLimits(limits);
+				decoder.accept(visitor, Tag.DEFAULT_MAX_DEPTH);
+			} finally {
+				pool.releaseBuffer(window);
+				input.end();
+			}
+		}
+
+		/**
+		 * Decodes the NBT tag from a file as a sequence of events, without building it. Terminal operator.
+		 *
+		 * @param path    The file path to read from
+		 * @param visitor The visitor receiving the events
+		 * @throws IOException In case of error reading from the file
+		 * @see #visit(InputStream, NBTVisitor)
+		 */
+		public void visit(Path path, NBTVisitor visitor) throws IOException {
+			try (InputStream is = Files.newInputStream(path)) {
+				visit(is, visitor);
+			}
+		}
+
 		/**
 		 * Reads the NBT tag from a file. Terminal operator.
 		 *
@@ -224,12 +603,110 @@ public final class NBTUtil {
 			return from(Paths.get(file));
 		}
 
-		private static InputStream detectDecompression(InputStream is) throws IOException {
-			PushbackInputStream pbis = new PushbackInputStream(is, 2);
-			int signature = (pbis.read() & 0xFF) + (pbis.read() << 8);
-			pbis.unread(signature >> 8);
-			pbis.unread(signature & 0xFF);
-			return signature == GZIPInputStream.GZIP_MAGIC ? new GZIPInputStream(pbis) : pbis;
+		private NamedTag from(InputStream is, Future<?> cancellation) throws IOException {
+			NBTResourcePool pool = pool();
+			DecompressingInputStream input = new DecompressingInputStream(is, bufferSize, pool);
+			try {
+				InputStream source = cancellation != null ? new CancellableInputStream(input, cancellation) : input;
+				if (isParallel()) {
+					ByteBuffer payload;
+					try {
+						payload = readFully(source);
+					} catch (ReadLimitExceededException e) {
+						if (allocationListener != null) {
+							allocationListener.accept(e.getBytesAllocated());
+						}
+						throw e;
+					}
+					return readParallel(payload, -1, payload.remaining());
+				}
+				byte[] window = pool.acquireBuffer(bufferSize);
+				try {
+					return read(new NBTDecoder(source, order(), window));
+				} finally {
+					pool.releaseBuffer(window);
+				}
+			} finally {
+				input.end();
+			}
+		}
+
+		private boolean isParallel() {
+			return parallelPool != null && filter == null;
+		}
+
+		/**
+		 * Decode a payload in parallel. The bytes buffered to hold it count towards the byte budget, and are reported
+		 * to the allocation listener with those of the tags.
+		 */
+		private NamedTag readParallel(ByteBuffer buffer, long viewThreshold, long bytesBuffered) throws IOException {
+			ParallelNBTDecoder decoder = new ParallelNBTDecoder(buffer, parallelPool);
+			decoder.setLimits(limits);
+			decoder.setViewThreshold(viewThreshold);
+			decoder.setBytesBuffered(bytesBuffered);
+			try {
+				return decoder.readTag(Tag.DEFAULT_MAX_DEPTH);
+			} finally {
+				if (allocationListener != null) {
+					allocationListener.accept(decoder.getBytesAllocated());
+				}
+			}
+		}
+
+		/**
+		 * Read a whole stream into memory. The buffered payload counts towards the byte budget of the
+		 * {@link #limits(ReadLimits) limits}, so a stream inflating past it fails before the buffer grows any further.
+		 */
+		private ByteBuffer readFully(InputStream source) throws IOException {
+			long maxBytes = limits.getMaxBytes();
+			// one byte past the budget is enough to tell it was exceeded
+			long capacity = maxBytes < MAX_BUFFERED_BYTES ? maxBytes + 1 : MAX_BUFFERED_BYTES;
+			byte[] bytes = new byte[(int) Math.min(bufferSize, capacity)];
+			int length = 0;
+			for (int read; (read = source.read(bytes, length, bytes.length - length)) >= 0; ) {
+				length += read;
+				if (length > maxBytes) {
+					throw new ReadLimitExceededException("payload exceeds the byte budget of " + maxBytes, length);
+				}
+				if (length == bytes.length) {
+					if (length == capacity) {
+						throw new IOException("payload is too large to be decoded in parallel: over " + length + " bytes");
+					}
+					bytes = Arrays.copyOf(bytes, (int) Math.min(length * 2L, capacity));
+				}
+			}
+			return ByteBuffer.wrap(bytes, 0, length).order(order());
+		}
+
+		private ByteOrder order() {
+			return littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+		}
+
+		private NBTResourcePool pool() {
+			return pool != null ? pool : NBTResourcePool.getDefault();
+		}
+
+		private NamedTag read(NBTDecoder decoder) throws IOException {
+			decoder.setStringCache(stringCache);
+			decoder.setLimits(limits);
+			try {
+				return filter != null ? decoder.readTag(Tag.DEFAULT_MAX_DEPTH, filter) : decoder.readTag(Tag.DEFAULT_MAX_DEPTH);
+			} finally {
+				if (allocationListener != null) {
+					allocationListener.accept(decoder.getBytesAllocated());
+				}
+			}
+		}
+
+		private static boolean isMappable(FileChannel channel) throws IOException {
+			if (channel.size() > Integer.MAX_VALUE) {
+				return false;
+			}
+			ByteBuffer signature = ByteBuffer.allocate(2);
+			while (signature.hasRemaining() && channel.read(signature, signature.position()) > 0) {
+				// read the whole signature
+			}
+			return DecompressingInputStream.detect(signature.array(), signature.position()) == DecompressingInputStream.Compression.NONE;
 		}
 	}
 }
@@ -0,0 +1,171 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+
+/**
+ * Receives the events of an NBT payload as it is decoded, without building any tags. This allows processing
+ * arbitrarily large payloads in constant memory.
+ * <p>
+ * Events are emitted in document order:
+ * <ul>
+ *     <li>the root tag is announced by {@link #key(String, byte)} with its name, followed by its value;</li>
+ *     <li>a compound emits {@link #startCompound()}, then {@link #key(String, byte)} followed by the value of each entry,
+ *     then {@link #endCompound()};</li>
+ *     <li>a list emits {@link #startList(byte, int)}, then the value of each element, then {@link #endList()};</li>
+ *     <li>scalars emit a single {@code *Value} event, and arrays a single {@code *Array} event.</li>
+ * </ul>
+ * All events do nothing by default, so implementations only need to override the ones they are interested in.
+ *
+ * @see NBTDecoder#accept(NBTVisitor, int)
+ * @see NBTUtil.Reader#visit(java.io.InputStream, NBTVisitor)
+ */
+public interface NBTVisitor {
+
+	/**
+	 * The name of the root tag, or the key of a compound entry, whose value follows.
+	 *
+	 * @param name The name or key
+	 * @return {@code true} to visit the value, {@code false} to skip over it
+	 * @throws IOException To abort decoding
+	 */
+	default boolean key(String name) throws IOException {
+		return true;
+	}
+
+	/**
+	 * The name of the root tag, or the key of a compound entry, along with the type of the value that follows. This is
+	 * the event emitted by the decoder, which calls {@link #key(String)} by default.
+	 *
+	 * @param name The name or key
+	 * @param type The tag ID of the value
+	 * @return {@code true} to visit the value, {@code false} to skip over it
+	 * @throws IOException To abort decoding
+	 */
+	default boolean key(String name, byte type) throws IOException {
+		return key(name);
+	}
+
+	/**
+	 * The start of a compound.
+	 *
+	 * @throws IOException To abort decoding
+	 */
+	default void startCompound() throws IOException {
+	}
+
+	/**
+	 * The end of a compound.
+	 *
+	 * @throws IOException To abort decoding
+	 */
+	default void endCompound() throws IOException {
+	}
+
+	/**
+	 * The start of a list.
+	 *
+	 * @param elementType The tag ID of the elements
+	 * @param length      The number of elements
+	 * @throws IOException To abort decoding
+	 */
+	default void startList(byte elementType, int length) throws IOException {
+	}
+
+	/**
+	 * The end of a list.
+	 *
+	 * @throws IOException To abort decoding
+	 */
+	default void endList() throws IOException {
+	}
+
+	/**
+	 * A byte value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void byteValue(byte value) throws IOException {
+	}
+
+	/**
+	 * A short value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void shortValue(short value) throws IOException {
+	}
+
+	/**
+	 * An int value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void intValue(int value) throws IOException {
+	}
+
+	/**
+	 * A long value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void longValue(long value) throws IOException {
+	}
+
+	/**
+	 * A float value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void floatValue(float value) throws IOException {
+	}
+
+	/**
+	 * A double value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void doubleValue(double value) throws IOException {
+	}
+
+	/**
+	 * A string value.
+	 *
+	 * @param value The value
+	 * @throws IOException To abort decoding
+	 */
+	default void stringValue(String value) throws IOException {
+	}
+
+	/**
+	 * A byte array. The elements not read by the visitor are skipped over once it returns.
+	 *
+	 * @param reader The reader over the array elements, only valid until the visitor returns
+	 * @throws IOException To abort decoding
+	 */
+	default void byteArray(NBTArrayReader reader) throws IOException {
+	}
+
+	/**
+	 * An int array. The elements not read by the visitor are skipped over once it returns.
+	 *
+	 * @param reader The reader over the array elements, only valid until the visitor returns
+	 * @throws IOException To abort decoding
+	 */
+	default void intArray(NBTArrayReader reader) throws IOException {
+	}
+
+	/**
+	 * A long array. The elements not read by the visitor are skipped over once it returns.
+	 *
+	 * @param reader The reader over the array elements, only valid until the visitor returns
+	 * @throws IOException To abort decoding
+	 */
+	default void longArray(NBTArrayReader reader) throws IOException {
+	}
+}
@@ -0,0 +1,300 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Output stream that compresses to the GZIP format on a fork/join pool, like pigz does.
+ * <p>
+ * The uncompressed bytes are split into blocks, which are deflated independently and written in order as a single
+ * GZIP member. Each block is primed with the last 32 KiB of the previous one as its dictionary, so it compresses
+ * nearly as well as a single deflater would, and ends with a sync flush so that the blocks can be concatenated. The
+ * CRC is computed by the writing thread, which is much faster than deflating.
+ * <p>
+ * At most twice as many blocks as the pool's parallelism are in flight, which bounds the memory used. The deflaters
+ * and the input buffers are acquired from a {@link NBTResourcePool}. Like {@link CompressingOutputStream},
+ * {@link #finish()} writes the GZIP trailer and {@link #end()} gives the resources back without closing the
+ * underlying stream.
+ */
+public final class ParallelCompressingOutputStream extends OutputStream {
+
+	/**
+	 * The default size of the blocks deflated in parallel, the same as pigz.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 131072;
+
+	/**
+	 * The size of the deflate window, and so of the dictionary primed from the previous block.
+	 */
+	private static final int DICTIONARY_SIZE = 32768;
+
+	private final OutputStream out;
+	private final int level;
+	private final int blockSize;
+	private final ForkJoinPool executor;
+	private final NBTResourcePool pool;
+	private final int maxPending;
+	private final ArrayDeque<Block> pending = new ArrayDeque<>();
+	private final CRC32 crc = new CRC32();
+	private long size;
+	private byte[] input;
+	private int count;
+	private Block previous;
+	private boolean finished;
+	private boolean ended;
+
+	/**
+	 * Compress to a stream, with the default block size and pool.
+	 *
+	 * @param out      The stream to write the compressed bytes to
+	 * @param level    The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param executor The pool to deflate the blocks on
+	 * @throws IOException In case of error writing the GZIP header
+	 */
+	public ParallelCompressingOutputStream(OutputStream out, int level, ForkJoinPool executor) throws IOException {
+		this(out, level, DEFAULT_BLOCK_SIZE, executor, NBTResourcePool.getDefault());
+	}
+
+	/**
+	 * Compress to a stream.
+	 *
+	 * @param out       The stream to write the compressed bytes to
+	 * @param level     The compression level, from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param blockSize The size of the blocks deflated in parallel
+	 * @param executor  The pool to deflate the blocks on
+	 * @param pool      The pool to acquire the deflaters and the buffers from
+	 * @throws IOException In case of error writing the GZIP header
+	 */
+	public ParallelCompressingOutputStream(OutputStream out, int level, int blockSize, ForkJoinPool executor, NBTResourcePool pool) throws IOException {
+		if (blockSize <= 0) {
+			throw new IllegalArgumentException("block size must be positive");
+		}
+		if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("invalid compression level " + level);
+		}
+		this.out = out;
+		this.level = level;
+		this.blockSize = blockSize;
+		this.executor = executor;
+		this.pool = pool;
+		this.maxPending = Math.max(executor.getParallelism() * 2, 2);
+		this.input = pool.acquireBuffer(blockSize);
+		try {
+			out.write(CompressingOutputStream.HEADER);
+		} catch (IOException e) {
+			end();
+			throw e;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureWritable();
+		if (count == blockSize) {
+			submit(false);
+		}
+		input[count++] = (byte) b;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureWritable();
+		while (len > 0) {
+			if (count == blockSize) {
+				submit(false);
+			}
+			int n = Math.min(len, blockSize - count);
+			System.arraycopy(b, off, input, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Deflate and write all the buffered data, so that it can be decompressed, and flush the underlying stream.
+	 *
+	 * @throws IOException In case of error writing to the underlying stream
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		if (!finished) {
+			if (count > 0) {
+				submit(false);
+			}
+			while (!pending.isEmpty()) {
+				writeBlock(pending.poll());
+			}
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write the remaining compressed data and the GZIP trailer, without closing the underlying stream. Nothing can be
+	 * written afterwards.
+	 *
+	 * @throws IOException In case of error writing to the underlying stream
+	 */
+	public void finish() throws IOException {
+		ensureOpen();
+		if (finished) {
+			return;
+		}
+		submit(true);
+		while (!pending.isEmpty()) {
+			writeBlock(pending.poll());
+		}
+
+		byte[] trailer = new byte[8];
+		CompressingOutputStream.writeIntLE(trailer, 0, (int) crc.getValue());
+		CompressingOutputStream.writeIntLE(trailer, 4, (int) size);
+		out.write(trailer);
+		finished = true;
+	}
+
+	/**
+	 * Give the deflaters and the buffers back to the pool, without finishing nor closing the underlying stream. Blocks
+	 * still being deflated are waited for. The stream cannot be written to anymore.
+	 */
+	public void end() {
+		if (ended) {
+			return;
+		}
+		ended = true;
+		// the input of each block is released along with the block after it, which uses it as a dictionary
+		for (Block block : pending) {
+			block.quietlyJoin();
+			if (block.dictionary != null) {
+				pool.releaseBuffer(block.dictionary.input);
+			}
+		}
+		pending.clear();
+		if (previous != null) {
+			pool.releaseBuffer(previous.input);
+		}
+		if (input != null) {
+			pool.releaseBuffer(input);
+		}
+		previous = null;
+		input = null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (ended) {
+			return;
+		}
+		try {
+			finish();
+		} finally {
+			end();
+			out.close();
+		}
+	}
+
+	private void ensureOpen() throws IOException {
+		if (ended) {
+			throw new IOException("Stream closed");
+		}
+	}
+
+	private void ensureWritable() throws IOException {
+		ensureOpen();
+		if (finished) {
+			throw new IOException("write beyond end of stream");
+		}
+	}
+
+	/**
+	 * Start deflating the buffered input as a block, writing out the oldest blocks if too many are in flight.
+	 */
+	private void submit(boolean last) throws IOException {
+		crc.update(input, 0, count);
+		size += count;
+		Block block = new Block(input, count, previous, last);
+		executor.execute(block);
+		pending.add(block);
+		previous = block;
+		input = last ? null : pool.acquireBuffer(blockSize);
+		count = 0;
+
+		while (pending.size() > maxPending) {
+			writeBlock(pending.poll());
+		}
+	}
+
+	/**
+	 * Wait for a block to be deflated and write it. Once written, the input of the block before it is no longer needed
+	 * as a dictionary.
+	 */
+	private void writeBlock(Block block) throws IOException {
+		block.join();
+		out.write(block.output, 0, block.outputLength);
+		block.output = null;
+		if (block.dictionary != null) {
+			pool.releaseBuffer(block.dictionary.input);
+			block.dictionary = null;
+		}
+		if (block.last) {
+			pool.releaseBuffer(block.input);
+			previous = null;
+		}
+	}
+
+	/**
+	 * A block of input, deflated on its own.
+	 */
+	private final class Block extends RecursiveAction {
+
+		private final byte[] input;
+		private final int length;
+		private final boolean last;
+		private Block dictionary;
+		private byte[] output;
+		private int outputLength;
+
+		Block(byte[] input, int length, Block dictionary, boolean last) {
+			this.input = input;
+			this.length = length;
+			this.dictionary = dictionary;
+			this.last = last;
+		}
+
+		@Override
+		protected void compute() {
+			Deflater deflater = pool.acquireDeflater(level, true);
+			try {
+				if (dictionary != null) {
+					int dictionaryLength = Math.min(dictionary.length, DICTIONARY_SIZE);
+					deflater.setDictionary(dictionary.input, dictionary.length - dictionaryLength, dictionaryLength);
+				}
+				deflater.setInput(input, 0, length);
+				if (last) {
+					deflater.finish();
+				}
+
+				// deflate rarely expands data by more than a few bytes per stored block
+				output = new byte[length + (length >> 4) + 64];
+				while (true) {
+					int n = deflater.deflate(output, outputLength, output.length - outputLength, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+					outputLength += n;
+					if (last ? deflater.finished() : outputLength < output.length) {
+						break;
+					}
+					if (outputLength == output.length) {
+						output = Arrays.copyOf(output, output.length * 2);
+					}
+				}
+			} finally {
+				pool.releaseDeflater(deflater, true);
+			}
+		}
+	}
+}
@@ -0,0 +1,344 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import net.sandrohc.schematic4j.nbt.MaxDepthIO;
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+/**
+ * Decodes an NBT payload held in a buffer in two passes: a single-threaded {@link NBTIndex structural scan}, and then
+ * the materialization of the tags on a fork/join pool.
+ * <p>
+ * Subtrees smaller than {@link #PARALLEL_THRESHOLD} bytes are decoded sequentially. Larger compounds decode their
+ * large entries in parallel, larger lists split their elements into chunks of about that size, and larger arrays are
+ * copied in chunks.
+ */
+final class ParallelNBTDecoder implements MaxDepthIO {
+
+	/**
+	 * The minimum payload size, in bytes, of the subtrees decoded in parallel.
+	 */
+	static final int PARALLEL_THRESHOLD = 65536;
+
+	private final ByteBuffer buffer;
+	private final ForkJoinPool pool;
+	private ReadLimits limits = ReadLimits.unlimited();
+	private long viewThreshold = -1;
+	private long bytesBuffered;
+	private NBTIndex index;
+
+	/**
+	 * Decode the remaining bytes of a buffer, using the buffer's byte order.
+	 *
+	 * @param buffer The buffer holding the whole payload, which is left untouched
+	 * @param pool   The pool to decode on
+	 */
+	ParallelNBTDecoder(ByteBuffer buffer, ForkJoinPool pool) {
+		this.buffer = buffer;
+		this.pool = pool;
+	}
+
+	/**
+	 * @see NBTDecoder#setLimits(ReadLimits)
+	 */
+	void setLimits(ReadLimits limits) {
+		this.limits = limits;
+	}
+
+	/**
+	 * @see NBTDecoder#setViewThreshold(long)
+	 */
+	void setViewThreshold(long minBytes) {
+		this.viewThreshold = minBytes;
+	}
+
+	/**
+	 * Set the number of bytes allocated to buffer the payload, such as when decompressing it into memory, which
+	 * count towards the byte budget of the limits.
+	 *
+	 * @param bytes The bytes buffered
+	 */
+	void setBytesBuffered(long bytes) {
+		this.bytesBuffered = bytes;
+	}
+
+	/**
+	 * Get the number of bytes buffered, plus the estimated number of bytes allocated by the tags read, which is known
+	 * once the payload is indexed.
+	 *
+	 * @return The bytes allocated
+	 */
+	long getBytesAllocated() {
+		return index != null ? index.getBytesAllocated() : bytesBuffered;
+	}
+
+	/**
+	 * Decode a named tag.
+	 *
+	 * @param maxDepth Maximum depth before failing deserialization
+	 * @return The named tag
+	 * @throws IOException In case of error decoding the payload, or if it exceeds the limits
+	 */
+	NamedTag readTag(int maxDepth) throws IOException {
+		ByteBuffer header = buffer.duplicate().order(buffer.order());
+		NBTDecoder decoder = new NBTDecoder(header);
+		byte id = decoder.readByte();
+		String name = decoder.readString();
+
+		index = NBTIndex.scan(header, id, maxDepth, limits, bytesBuffered);
+
+		Tag<?> tag;
+		if (NBTIndex.isIndexed(id)) {
+			try {
+				tag = pool.invoke(new Materialize(id, 0, maxDepth));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		} else {
+			tag = decoder.readTag(id, maxDepth);
+		}
+		return new NamedTag(name, tag);
+	}
+
+	/**
+	 * Create a decoder positioned at an offset of the buffer.
+	 */
+	private NBTDecoder decoderAt(int position) {
+		ByteBuffer duplicate = buffer.duplicate().order(buffer.order());
+		duplicate.position(position);
+		NBTDecoder decoder = new NBTDecoder(duplicate);
+		decoder.setViewThreshold(viewThreshold);
+		return decoder;
+	}
+
+	private int payloadSize(int entry) {
+		return index.end(entry) - index.start(entry);
+	}
+
+	/**
+	 * Materialize an indexed tag, forking its large children.
+	 */
+	private final class Materialize extends RecursiveTask<Tag<?>> {
+
+		private final byte id;
+		private final int entry;
+		private final int maxDepth;
+
+		Materialize(byte id, int entry, int maxDepth) {
+			this.id = id;
+			this.entry = entry;
+			this.maxDepth = maxDepth;
+		}
+
+		@Override
+		protected Tag<?> compute() {
+			try {
+				if (payloadSize(entry) < PARALLEL_THRESHOLD) {
+					return decoderAt(index.start(entry)).readTag(id, maxDepth);
+				}
+				switch (id) {
+					case CompoundTag.ID:
+						return compound();
+					case ListTag.ID:
+						return list();
+					default:
+						return array();
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private CompoundTag compound() throws IOException {
+			ByteBuffer position = buffer.duplicate().order(buffer.order());
+			position.position(index.start(entry));
+			NBTDecoder decoder = new NBTDecoder(position);
+			decoder.setViewThreshold(viewThreshold);
+
+			List<String> keys = new ArrayList<>();
+			List<Object> values = new ArrayList<>();
+			int child = entry + 1;
+			for (byte childId = decoder.readByte(); childId != 0; childId = decoder.readByte()) {
+				keys.add(decoder.readString());
+				if (NBTIndex.isIndexed(childId)) {
+					int childEntry = child;
+					child = index.next(childEntry);
+					if (payloadSize(childEntry) >= PARALLEL_THRESHOLD) {
+						values.add(new Materialize(childId, childEntry, decrementMaxDepth(maxDepth)).fork());
+						// the decoder reads straight from the buffer, so it can be moved past the forked entry
+						position.position(index.end(childEntry));
+						continue;
+					}
+				}
+				values.add(decoder.readTag(childId, decrementMaxDepth(maxDepth)));
+			}
+
+			CompoundTag comp = new CompoundTag();
+			for (int i = 0; i < keys.size(); i++) {
+				comp.put(keys.get(i), (Tag<?>) joinValue(values.get(i)));
+			}
+			return comp;
+		}
+
+		private Tag<?> list() throws IOException {
+			byte listType = buffer.get(index.start(entry));
+			if (!NBTIndex.isIndexed(listType)) {
+				return decoderAt(index.start(entry)).readTag(id, maxDepth);
+			}
+			int length = Math.max(buffer.getInt(index.start(entry) + Byte.BYTES), 0);
+
+			// split the elements in chunks of about the threshold size, with large elements in chunks of their own
+			List<ForkJoinTask<?>> chunks = new ArrayList<>();
+			int child = entry + 1;
+			int first = 0;
+			int firstEntry = child;
+			int chunkSize = 0;
+			for (int i = 0; i < length; i++) {
+				int size = payloadSize(child);
+				if (size >= PARALLEL_THRESHOLD) {
+					if (i > first) {
+						chunks.add(new Chunk(listType, firstEntry, i - first, decrementMaxDepth(maxDepth)).fork());
+					}
+					chunks.add(new Materialize(listType, child, decrementMaxDepth(maxDepth)).fork());
+					first = i + 1;
+					firstEntry = index.next(child);
+					chunkSize = 0;
+				} else if ((chunkSize += size) >= PARALLEL_THRESHOLD) {
+					chunks.add(new Chunk(listType, firstEntry, i + 1 - first, decrementMaxDepth(maxDepth)).fork());
+					first = i + 1;
+					firstEntry = index.next(child);
+					chunkSize = 0;
+				}
+				child = index.next(child);
+			}
+			if (length > first) {
+				chunks.add(new Chunk(listType, firstEntry, length - first, decrementMaxDepth(maxDepth)).fork());
+			}
+
+			ListTag<?> list = ListTag.createUnchecked(NBTDecoder.classFromId(listType));
+			for (ForkJoinTask<?> chunk : chunks) {
+				Object result = chunk.join();
+				if (result instanceof Tag) {
+					list.addUnchecked((Tag<?>) result);
+				} else {
+					for (Tag<?> element : (Tag<?>[]) result) {
+						list.addUnchecked(element);
+					}
+				}
+			}
+			return list;
+		}
+
+		private Tag<?> array() throws IOException {
+			int start = index.start(entry);
+			int length = buffer.getInt(start);
+			int elementSize = id == ByteArrayTag.ID ? Byte.BYTES : id == IntArrayTag.ID ? Integer.BYTES : Long.BYTES;
+			if (viewThreshold >= 0 && (long) length * elementSize >= viewThreshold) {
+				// views are not copied, so there is nothing to parallelize
+				return decoderAt(start).readTag(id, maxDepth);
+			}
+
+			Object array = id == ByteArrayTag.ID ? new byte[length] : id == IntArrayTag.ID ? new int[length] : new long[length];
+			int chunkLength = Math.max(PARALLEL_THRESHOLD / elementSize, 1);
+			List<ForkJoinTask<?>> copies = new ArrayList<>();
+			for (int offset = 0; offset < length; offset += chunkLength) {
+				copies.add(new Copy(array, start + Integer.BYTES, offset, Math.min(chunkLength, length - offset)).fork());
+			}
+			for (ForkJoinTask<?> copy : copies) {
+				copy.join();
+			}
+
+			if (array instanceof byte[]) {
+				return ByteArrayTag.wrap((byte[]) array);
+			} else if (array instanceof int[]) {
+				return IntArrayTag.wrap((int[]) array);
+			}
+			return LongArrayTag.wrap((long[]) array);
+		}
+	}
+
+	/**
+	 * Decode consecutive small elements of a list sequentially.
+	 */
+	private final class Chunk extends RecursiveTask<Tag<?>[]> {
+
+		private final byte id;
+		private final int firstEntry;
+		private final int count;
+		private final int maxDepth;
+
+		Chunk(byte id, int firstEntry, int count, int maxDepth) {
+			this.id = id;
+			this.firstEntry = firstEntry;
+			this.count = count;
+			this.maxDepth = maxDepth;
+		}
+
+		@Override
+		protected Tag<?>[] compute() {
+			NBTDecoder decoder = decoderAt(index.start(firstEntry));
+			Tag<?>[] elements = new Tag<?>[count];
+			try {
+				for (int i = 0; i < count; i++) {
+					elements[i] = decoder.readTag(id, maxDepth);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return elements;
+		}
+	}
+
+	/**
+	 * Copy a range of an array payload.
+	 */
+	private final class Copy extends RecursiveAction {
+
+		private final Object array;
+		private final int payloadStart;
+		private final int offset;
+		private final int length;
+
+		Copy(Object array, int payloadStart, int offset, int length) {
+			this.array = array;
+			this.payloadStart = payloadStart;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		protected void compute() {
+			ByteBuffer source = buffer.duplicate().order(buffer.order());
+			if (array instanceof byte[]) {
+				source.position(payloadStart + offset);
+				source.get((byte[]) array, offset, length);
+			} else if (array instanceof int[]) {
+				source.position(payloadStart + offset * Integer.BYTES);
+				source.asIntBuffer().get((int[]) array, offset, length);
+			} else {
+				source.position(payloadStart + offset * Long.BYTES);
+				source.asLongBuffer().get((long[]) array, offset, length);
+			}
+		}
+	}
+
+	/**
+	 * Get the result of a forked task, or a value decoded inline.
+	 */
+	private static Object joinValue(Object value) {
+		return value instanceof ForkJoinTask ? ((ForkJoinTask<?>) value).join() : value;
+	}
+}
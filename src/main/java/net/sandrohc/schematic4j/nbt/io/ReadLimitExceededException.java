@@ -0,0 +1,25 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+
+/**
+ * Exception indicating that a read would exceed its {@link ReadLimits}.
+ */
+public class ReadLimitExceededException extends IOException {
+
+	private final long bytesAllocated;
+
+	public ReadLimitExceededException(String msg, long bytesAllocated) {
+		super(msg + " (" + bytesAllocated + " bytes allocated)");
+		this.bytesAllocated = bytesAllocated;
+	}
+
+	/**
+	 * Get the estimated number of bytes allocated by the read before it failed.
+	 *
+	 * @return The bytes allocated
+	 */
+	public long getBytesAllocated() {
+		return bytesAllocated;
+	}
+}
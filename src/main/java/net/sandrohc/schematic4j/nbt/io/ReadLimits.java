@@ -0,0 +1,109 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+/**
+ * Limits on the memory a single NBT read may allocate, to protect against malformed or malicious input declaring huge
+ * arrays or lists. They complement the maximum depth of the {@link net.sandrohc.schematic4j.nbt.MaxDepthIO} readers.
+ * <p>
+ * Declared lengths are checked before anything is allocated for them, so a read exceeding a limit fails fast with a
+ * {@link ReadLimitExceededException}. The bytes allocated are an estimate of the heap used by the tags read: the size
+ * of their payload, plus {@value #TAG_OVERHEAD} bytes for each tag. The elements of lists of numbers are read into
+ * primitive arrays, so they only count their payload.
+ * <p>
+ * Instances are immutable, and can be shared between reads.
+ *
+ * @see NBTUtil.Reader#limits(ReadLimits)
+ */
+public final class ReadLimits {
+
+	/**
+	 * The estimated number of bytes allocated for each tag, besides its payload.
+	 */
+	public static final int TAG_OVERHEAD = 16;
+
+	private static final ReadLimits UNLIMITED = new ReadLimits(Long.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE);
+
+	private final long maxBytes;
+	private final int maxArrayLength;
+	private final long maxElements;
+
+	private ReadLimits(long maxBytes, int maxArrayLength, long maxElements) {
+		this.maxBytes = maxBytes;
+		this.maxArrayLength = maxArrayLength;
+		this.maxElements = maxElements;
+	}
+
+	/**
+	 * Get the limits that allow anything.
+	 *
+	 * @return The limits
+	 */
+	public static ReadLimits unlimited() {
+		return UNLIMITED;
+	}
+
+	/**
+	 * Copy these limits with a different byte budget.
+	 *
+	 * @param maxBytes The maximum number of bytes allocated by a read
+	 * @return The new limits
+	 */
+	public ReadLimits withMaxBytes(long maxBytes) {
+		if (maxBytes < 0) {
+			throw new IllegalArgumentException("invalid max bytes " + maxBytes);
+		}
+		return new ReadLimits(maxBytes, maxArrayLength, maxElements);
+	}
+
+	/**
+	 * Copy these limits with a different maximum array length.
+	 *
+	 * @param maxArrayLength The maximum number of elements in a byte, int or long array
+	 * @return The new limits
+	 */
+	public ReadLimits withMaxArrayLength(int maxArrayLength) {
+		if (maxArrayLength < 0) {
+			throw new IllegalArgumentException("invalid max array length " + maxArrayLength);
+		}
+		return new ReadLimits(maxBytes, maxArrayLength, maxElements);
+	}
+
+	/**
+	 * Copy these limits with a different maximum element count.
+	 *
+	 * @param maxElements The maximum number of tags read, including list elements and compound entries
+	 * @return The new limits
+	 */
+	public ReadLimits withMaxElements(long maxElements) {
+		if (maxElements < 0) {
+			throw new IllegalArgumentException("invalid max elements " + maxElements);
+		}
+		return new ReadLimits(maxBytes, maxArrayLength, maxElements);
+	}
+
+	/**
+	 * Get the maximum number of bytes allocated by a read.
+	 *
+	 * @return The byte budget
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Get the maximum number of elements in a byte, int or long array.
+	 *
+	 * @return The maximum array length
+	 */
+	public int getMaxArrayLength() {
+		return maxArrayLength;
+	}
+
+	/**
+	 * Get the maximum number of tags read, including list elements and compound entries.
+	 *
+	 * @return The maximum element count
+	 */
+	public long getMaxElements() {
+		return maxElements;
+	}
+}
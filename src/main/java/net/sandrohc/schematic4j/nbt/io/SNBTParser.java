@@ -1,9 +1,7 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.io;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Arrays;
 
 import net.sandrohc.schematic4j.nbt.MaxDepthIO;
 import net.sandrohc.schematic4j.nbt.tag.ArrayTag;
@@ -24,15 +22,16 @@ import net.sandrohc.schematic4j.nbt.tag.Tag;
 
 public final class SNBTParser implements MaxDepthIO {
 
-	private static final Pattern
-			FLOAT_LITERAL_PATTERN = Pattern.compile("^[-+]?(?:\\d+\\.?|\\d*\\.\\d+)(?:e[-+]?\\d+)?f$", Pattern.CASE_INSENSITIVE),
-			DOUBLE_LITERAL_PATTERN = Pattern.compile("^[-+]?(?:\\d+\\.?|\\d*\\.\\d+)(?:e[-+]?\\d+)?d$", Pattern.CASE_INSENSITIVE),
-			DOUBLE_LITERAL_NO_SUFFIX_PATTERN = Pattern.compile("^[-+]?(?:\\d+\\.|\\d*\\.\\d+)(?:e[-+]?\\d+)?$", Pattern.CASE_INSENSITIVE),
-			BYTE_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+b$", Pattern.CASE_INSENSITIVE),
-			SHORT_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+s$", Pattern.CASE_INSENSITIVE),
-			INT_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+$", Pattern.CASE_INSENSITIVE),
-			LONG_LITERAL_PATTERN = Pattern.compile("^[-+]?\\d+l$", Pattern.CASE_INSENSITIVE),
-			NUMBER_PATTERN = Pattern.compile("^[-+]?\\d+$");
+	/**
+	 * The powers of ten that are exact as doubles, and as floats up to 10^10.
+	 */
+	private static final double[] DOUBLE_POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22,
+	};
+	private static final float[] FLOAT_POWERS_OF_TEN = {
+			1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f,
+	};
 
 	private StringPointer ptr;
 
@@ -73,46 +72,184 @@ public final class SNBTParser implements MaxDepthIO {
 		if (ptr.currentChar() == '"') {
 			return new StringTag(ptr.parseQuotedString());
 		}
-		String s = ptr.parseSimpleString();
-		if (s.isEmpty()) {
+		int start = ptr.index();
+		int end = ptr.skipSimpleString();
+		if (start == end) {
 			throw new ParseException("expected non empty value");
 		}
-		if (FLOAT_LITERAL_PATTERN.matcher(s).matches()) {
-			return new FloatTag(Float.parseFloat(s.substring(0, s.length() - 1)));
-		} else if (BYTE_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new ByteTag(Byte.parseByte(s.substring(0, s.length() - 1)));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("byte not in range: \"" + s.substring(0, s.length() - 1) + "\"");
+		Tag<?> number = parseNumber(start, end);
+		if (number != null) {
+			return number;
+		} else if (ptr.regionEquals(start, end, "true")) {
+			return new ByteTag(true);
+		} else if (ptr.regionEquals(start, end, "false")) {
+			return new ByteTag(false);
+		}
+		return new StringTag(ptr.substring(start, end));
+	}
+
+	/**
+	 * Classify and parse an unquoted string as a number literal in a single pass, the same way as the patterns
+	 * {@code [-+]?(\d+\.?|\d*\.\d+)(e[-+]?\d+)?[fd]} for floating point numbers, {@code [-+]?(\d+\.|\d*\.\d+)(e[-+]?\d+)?}
+	 * for doubles without a suffix, and {@code [-+]?\d+[bsl]?} for integers, ignoring case.
+	 *
+	 * @return The number, or {@code null} if the string is not a number literal
+	 */
+	private Tag<?> parseNumber(int start, int end) throws ParseException {
+		int i = start;
+		char c = ptr.charAt(i);
+		boolean negative = c == '-';
+		if (c == '-' || c == '+') {
+			i++;
+		}
+		int integerStart = i;
+		i = skipDigits(i, end);
+		int integerEnd = i;
+		boolean dot = i < end && ptr.charAt(i) == '.';
+		int fractionStart = dot ? ++i : i;
+		i = skipDigits(i, end);
+		int fractionEnd = i;
+		if (integerStart == integerEnd && fractionStart == fractionEnd) {
+			return null;
+		}
+
+		int exponentStart = i;
+		int exponentEnd = i;
+		if (i < end && (ptr.charAt(i) == 'e' || ptr.charAt(i) == 'E')) {
+			int j = i + 1;
+			if (j < end && (ptr.charAt(j) == '-' || ptr.charAt(j) == '+')) {
+				j++;
 			}
-		} else if (SHORT_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new ShortTag(Short.parseShort(s.substring(0, s.length() - 1)));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("short not in range: \"" + s.substring(0, s.length() - 1) + "\"");
+			exponentEnd = skipDigits(j, end);
+			if (exponentEnd == j) {
+				return null;
 			}
-		} else if (LONG_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new LongTag(Long.parseLong(s.substring(0, s.length() - 1)));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("long not in range: \"" + s.substring(0, s.length() - 1) + "\"");
+			exponentStart = i + 1;
+			i = exponentEnd;
+		}
+		boolean exponent = exponentEnd > exponentStart;
+
+		if (i == end) {
+			if (!dot && !exponent) {
+				return new IntTag((int) parseInteger(start, integerStart, integerEnd, negative, Integer.MIN_VALUE, Integer.MAX_VALUE, "int"));
 			}
-		} else if (INT_LITERAL_PATTERN.matcher(s).matches()) {
-			try {
-				return new IntTag(Integer.parseInt(s));
-			} catch (NumberFormatException ex) {
-				throw ptr.parseException("int not in range: \"" + s.substring(0, s.length() - 1) + "\"");
-			}
-		} else if (DOUBLE_LITERAL_PATTERN.matcher(s).matches()) {
-			return new DoubleTag(Double.parseDouble(s.substring(0, s.length() - 1)));
-		} else if (DOUBLE_LITERAL_NO_SUFFIX_PATTERN.matcher(s).matches()) {
-			return new DoubleTag(Double.parseDouble(s));
-		} else if ("true".equalsIgnoreCase(s)) {
-			return new ByteTag(true);
-		} else if ("false".equalsIgnoreCase(s)) {
-			return new ByteTag(false);
+			return dot ? new DoubleTag(parseDecimal(start, i, integerStart, integerEnd, fractionStart, fractionEnd, exponentStart, exponentEnd, negative, false)) : null;
+		} else if (i != end - 1) {
+			return null;
+		}
+
+		switch (ptr.charAt(i)) {
+			case 'f':
+			case 'F':
+				return new FloatTag((float) parseDecimal(start, i, integerStart, integerEnd, fractionStart, fractionEnd, exponentStart, exponentEnd, negative, true));
+			case 'd':
+			case 'D':
+				return new DoubleTag(parseDecimal(start, i, integerStart, integerEnd, fractionStart, fractionEnd, exponentStart, exponentEnd, negative, false));
+		}
+		if (dot || exponent) {
+			return null;
+		}
+		switch (ptr.charAt(i)) {
+			case 'b':
+			case 'B':
+				return new ByteTag((byte) parseInteger(start, integerStart, integerEnd, negative, Byte.MIN_VALUE, Byte.MAX_VALUE, "byte"));
+			case 's':
+			case 'S':
+				return new ShortTag((short) parseInteger(start, integerStart, integerEnd, negative, Short.MIN_VALUE, Short.MAX_VALUE, "short"));
+			case 'l':
+			case 'L':
+				return new LongTag(parseInteger(start, integerStart, integerEnd, negative, Long.MIN_VALUE, Long.MAX_VALUE, "long"));
+			default:
+				return null;
+		}
+	}
+
+	private int skipDigits(int i, int end) {
+		while (i < end && ptr.charAt(i) >= '0' && ptr.charAt(i) <= '9') {
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Parse decimal digits, accumulating negatively like {@link Long#parseLong(String)} so that the minimum value does
+	 * not overflow.
+	 *
+	 * @param start The start of the literal, including its sign
+	 * @param type  The name of the type, for the error message
+	 */
+	private long parseInteger(int start, int digitsStart, int digitsEnd, boolean negative, long min, long max, String type) throws ParseException {
+		long limit = negative ? min : -max;
+		long multiplyLimit = limit / 10;
+		long result = 0;
+		for (int i = digitsStart; i < digitsEnd; i++) {
+			int digit = ptr.charAt(i) - '0';
+			if (result < multiplyLimit || (result *= 10) < limit + digit) {
+				throw ptr.parseException(type + " not in range: \"" + ptr.substring(start, digitsEnd) + "\"");
+			}
+			result -= digit;
+		}
+		return negative ? result : -result;
+	}
+
+	/**
+	 * Parse a floating point number. Numbers with few significant digits and a small exponent are computed with a
+	 * single, correctly rounded, multiplication or division by an exact power of ten; others fall back to the JDK.
+	 *
+	 * @param start The start of the literal, including its sign
+	 * @param end   The end of the literal, excluding its suffix
+	 */
+	private double parseDecimal(int start, int end, int integerStart, int integerEnd, int fractionStart, int fractionEnd,
+								int exponentStart, int exponentEnd, boolean negative, boolean isFloat) {
+		long mantissa = 0;
+		int significantDigits = 0;
+		for (int i = integerStart; i < fractionEnd; i++) {
+			if (i == integerEnd) {
+				i = fractionStart - 1;
+				continue;
+			}
+			int digit = ptr.charAt(i) - '0';
+			if (mantissa != 0 || digit != 0) {
+				significantDigits++;
+			}
+			if (significantDigits > 18) {
+				break;
+			}
+			mantissa = mantissa * 10 + digit;
 		}
-		return new StringTag(s);
+
+		int exponent = 0;
+		boolean exponentOverflow = false;
+		if (exponentEnd > exponentStart) {
+			int i = exponentStart;
+			boolean exponentNegative = ptr.charAt(i) == '-';
+			if (ptr.charAt(i) == '-' || ptr.charAt(i) == '+') {
+				i++;
+			}
+			for (; i < exponentEnd; i++) {
+				if (exponent >= 1000) {
+					// the digits left over would be lost, so the scale is only known to the JDK
+					exponentOverflow = true;
+					break;
+				}
+				exponent = exponent * 10 + ptr.charAt(i) - '0';
+			}
+			exponent = exponentNegative ? -exponent : exponent;
+		}
+		int scale = exponent - (fractionEnd - fractionStart);
+
+		if (isFloat) {
+			if (!exponentOverflow && mantissa <= 1 << 24 && Math.abs(scale) < FLOAT_POWERS_OF_TEN.length) {
+				float value = scale >= 0 ? (float) mantissa * FLOAT_POWERS_OF_TEN[scale] : (float) mantissa / FLOAT_POWERS_OF_TEN[-scale];
+				return negative ? -value : value;
+			}
+			return Float.parseFloat(ptr.substring(start, end));
+		}
+		if (!exponentOverflow && mantissa <= 1L << 53 && Math.abs(scale) < DOUBLE_POWERS_OF_TEN.length) {
+			double value = scale >= 0 ? (double) mantissa * DOUBLE_POWERS_OF_TEN[scale] : (double) mantissa / DOUBLE_POWERS_OF_TEN[-scale];
+			return negative ? -value : value;
+		}
+		return Double.parseDouble(ptr.substring(start, end));
 	}
 
 	private CompoundTag parseCompoundTag(int maxDepth) throws ParseException {
@@ -175,72 +312,51 @@ public final class SNBTParser implements MaxDepthIO {
 	}
 
 	private ByteArrayTag parseByteArrayTag() throws ParseException {
-		List<Byte> byteList = new ArrayList<>();
-		while (ptr.currentChar() != ']') {
-			String s = ptr.parseSimpleString();
-			ptr.skipWhitespace();
-			if (NUMBER_PATTERN.matcher(s).matches()) {
-				try {
-					byteList.add(Byte.parseByte(s));
-				} catch (NumberFormatException ex) {
-					throw ptr.parseException("byte not in range: \"" + s + "\"");
-				}
-			} else {
-				throw ptr.parseException("invalid byte in ByteArrayTag: \"" + s + "\"");
-			}
-			if (!ptr.nextArrayElement()) {
-				break;
-			}
-		}
-		ptr.expectChar(']');
-		byte[] bytes = new byte[byteList.size()];
-		for (int i = 0; i < byteList.size(); i++) {
-			bytes[i] = byteList.get(i);
+		long[] values = parseNumbers(Byte.MIN_VALUE, Byte.MAX_VALUE, "byte", "ByteArrayTag");
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
 		}
-		return new ByteArrayTag(bytes);
+		return ByteArrayTag.wrap(bytes);
 	}
 
 	private IntArrayTag parseIntArrayTag() throws ParseException {
-		List<Integer> intList = new ArrayList<>();
-		while (ptr.currentChar() != ']') {
-			String s = ptr.parseSimpleString();
-			ptr.skipWhitespace();
-			if (NUMBER_PATTERN.matcher(s).matches()) {
-				try {
-					intList.add(Integer.parseInt(s));
-				} catch (NumberFormatException ex) {
-					throw ptr.parseException("int not in range: \"" + s + "\"");
-				}
-			} else {
-				throw ptr.parseException("invalid int in IntArrayTag: \"" + s + "\"");
-			}
-			if (!ptr.nextArrayElement()) {
-				break;
-			}
+		long[] values = parseNumbers(Integer.MIN_VALUE, Integer.MAX_VALUE, "int", "IntArrayTag");
+		int[] ints = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			ints[i] = (int) values[i];
 		}
-		ptr.expectChar(']');
-		return new IntArrayTag(intList.stream().mapToInt(i -> i).toArray());
+		return IntArrayTag.wrap(ints);
 	}
 
 	private LongArrayTag parseLongArrayTag() throws ParseException {
-		List<Long> longList = new ArrayList<>();
+		return LongArrayTag.wrap(parseNumbers(Long.MIN_VALUE, Long.MAX_VALUE, "long", "LongArrayTag"));
+	}
+
+	/**
+	 * Parse the integers of an array, up to its closing bracket.
+	 */
+	private long[] parseNumbers(long min, long max, String type, String arrayType) throws ParseException {
+		long[] values = new long[16];
+		int count = 0;
 		while (ptr.currentChar() != ']') {
-			String s = ptr.parseSimpleString();
+			int start = ptr.index();
+			int end = ptr.skipSimpleString();
 			ptr.skipWhitespace();
-			if (NUMBER_PATTERN.matcher(s).matches()) {
-				try {
-					longList.add(Long.parseLong(s));
-				} catch (NumberFormatException ex) {
-					throw ptr.parseException("long not in range: \"" + s + "\"");
-				}
-			} else {
-				throw ptr.parseException("invalid long in LongArrayTag: \"" + s + "\"");
+			boolean negative = start < end && ptr.charAt(start) == '-';
+			int digitsStart = start < end && (negative || ptr.charAt(start) == '+') ? start + 1 : start;
+			if (digitsStart == end || skipDigits(digitsStart, end) != end) {
+				throw ptr.parseException("invalid " + type + " in " + arrayType + ": \"" + ptr.substring(start, end) + "\"");
+			}
+			if (count == values.length) {
+				values = Arrays.copyOf(values, count * 2);
 			}
+			values[count++] = parseInteger(start, digitsStart, end, negative, min, max, type);
 			if (!ptr.nextArrayElement()) {
 				break;
 			}
 		}
 		ptr.expectChar(']');
-		return new LongArrayTag(longList.stream().mapToLong(l -> l).toArray());
+		return Arrays.copyOf(values, count);
 	}
 }
@@ -17,4 +17,11 @@ public class SNBTSerializer implements StringSerializer<Tag<?>> {
 	public void toWriter(Tag<?> tag, Writer writer, int maxDepth) throws IOException {
 		SNBTWriter.write(tag, writer, maxDepth);
 	}
+
+	@Override
+	public String toString(Tag<?> tag) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		SNBTWriter.write(tag, sb);
+		return sb.toString();
+	}
 }
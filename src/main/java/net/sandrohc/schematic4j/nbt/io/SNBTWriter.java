@@ -3,9 +3,11 @@ package net.sandrohc.schematic4j.nbt.io;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.lang.reflect.Array;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
 import java.util.Map;
-import java.util.regex.Pattern;
 
 import net.sandrohc.schematic4j.nbt.MaxDepthIO;
 import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
@@ -25,24 +27,57 @@ import net.sandrohc.schematic4j.nbt.tag.Tag;
 
 /**
  * SNBTWriter creates an SNBT String.
- *
+ * <p>
+ * The SNBT is streamed into any {@link Appendable}, such as a {@link Writer} or a {@link StringBuilder}, without
+ * building intermediate strings for nested tags, numbers nor escaped strings. Whether a string must be quoted, and
+ * which of its characters are escaped, is looked up in tables.
  * */
 public final class SNBTWriter implements MaxDepthIO {
 
-	private static final Pattern NON_QUOTE_PATTERN = Pattern.compile("[a-zA-Z_.+\\-]+");
+	/**
+	 * Whether each ASCII character may appear in a string that is not quoted.
+	 */
+	private static final boolean[] NON_QUOTE_CHARACTERS = new boolean[128];
 
-	private Writer writer;
+	/**
+	 * Whether each ASCII character is escaped with a backslash in a quoted string.
+	 */
+	private static final boolean[] ESCAPE_CHARACTERS = new boolean[128];
 
-	private SNBTWriter(Writer writer) {
-		this.writer = writer;
+	static {
+		for (char c = 0; c < NON_QUOTE_CHARACTERS.length; c++) {
+			NON_QUOTE_CHARACTERS[c] = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_' || c == '.' || c == '+' || c == '-';
+		}
+		ESCAPE_CHARACTERS['\\'] = true;
+		ESCAPE_CHARACTERS['"'] = true;
+	}
+
+	private final Appendable out;
+	private final Writer writer;
+	private final StringBuilder builder;
+	private final char[] digits = new char[20];
+
+	private SNBTWriter(Appendable out) {
+		this.out = out;
+		this.writer = out instanceof Writer ? (Writer) out : null;
+		this.builder = out instanceof StringBuilder ? (StringBuilder) out : null;
+	}
+
+	public static void write(Tag<?> tag, Appendable out, int maxDepth) throws IOException {
+		new SNBTWriter(out).writeAnything(tag, maxDepth);
 	}
 
+	public static void write(Tag<?> tag, Appendable out) throws IOException {
+		write(tag, out, Tag.DEFAULT_MAX_DEPTH);
+	}
+
+	// kept for the callers compiled against the writer-only versions
 	public static void write(Tag<?> tag, Writer writer, int maxDepth) throws IOException {
-		new SNBTWriter(writer).writeAnything(tag, maxDepth);
+		write(tag, (Appendable) writer, maxDepth);
 	}
 
 	public static void write(Tag<?> tag, Writer writer) throws IOException {
-		write(tag, writer, Tag.DEFAULT_MAX_DEPTH);
+		write(tag, (Appendable) writer, Tag.DEFAULT_MAX_DEPTH);
 	}
 
 	private void writeAnything(Tag<?> tag, int maxDepth) throws IOException {
@@ -51,81 +86,225 @@ public final class SNBTWriter implements MaxDepthIO {
 			//do nothing
 			break;
 		case ByteTag.ID:
-			writer.append(Byte.toString(((ByteTag) tag).asByte())).write('b');
+			writeLong(((ByteTag) tag).asByte());
+			out.append('b');
 			break;
 		case ShortTag.ID:
-			writer.append(Short.toString(((ShortTag) tag).asShort())).write('s');
+			writeLong(((ShortTag) tag).asShort());
+			out.append('s');
 			break;
 		case IntTag.ID:
-			writer.write(Integer.toString(((IntTag) tag).asInt()));
+			writeLong(((IntTag) tag).asInt());
 			break;
 		case LongTag.ID:
-			writer.append(Long.toString(((LongTag) tag).asLong())).write('l');
+			writeLong(((LongTag) tag).asLong());
+			out.append('l');
 			break;
 		case FloatTag.ID:
-			writer.append(Float.toString(((FloatTag) tag).asFloat())).write('f');
+			writeFloat(((FloatTag) tag).asFloat());
+			out.append('f');
 			break;
 		case DoubleTag.ID:
-			writer.append(Double.toString(((DoubleTag) tag).asDouble())).write('d');
+			writeDouble(((DoubleTag) tag).asDouble());
+			out.append('d');
 			break;
 		case ByteArrayTag.ID:
-			writeArray(((ByteArrayTag) tag).getValue(), ((ByteArrayTag) tag).length(), "B");
+			writeArray(((ByteArrayTag) tag).asBuffer(), 'B');
 			break;
 		case StringTag.ID:
-			writer.write(escapeString(((StringTag) tag).getValue()));
+			escapeString(((StringTag) tag).getValue(), out);
 			break;
 		case ListTag.ID:
-			writer.write('[');
-			for (int i = 0; i < ((ListTag<?>) tag).size(); i++) {
-				writer.write(i == 0 ? "" : ",");
-				writeAnything(((ListTag<?>) tag).get(i), decrementMaxDepth(maxDepth));
-			}
-			writer.write(']');
+			writeList((ListTag<?>) tag, maxDepth);
 			break;
 		case CompoundTag.ID:
-			writer.write('{');
+			out.append('{');
 			boolean first = true;
 			for (Map.Entry<String, Tag<?>> entry : (CompoundTag) tag) {
-				writer.write(first ? "" : ",");
-				writer.append(escapeString(entry.getKey())).write(':');
+				if (!first) {
+					out.append(',');
+				}
+				escapeString(entry.getKey(), out);
+				out.append(':');
 				writeAnything(entry.getValue(), decrementMaxDepth(maxDepth));
 				first = false;
 			}
-			writer.write('}');
+			out.append('}');
 			break;
 		case IntArrayTag.ID:
-			writeArray(((IntArrayTag) tag).getValue(), ((IntArrayTag) tag).length(), "I");
+			writeArray(((IntArrayTag) tag).asBuffer(), 'I');
 			break;
 		case LongArrayTag.ID:
-			writeArray(((LongArrayTag) tag).getValue(), ((LongArrayTag) tag).length(), "L");
+			writeArray(((LongArrayTag) tag).asBuffer(), 'L');
 			break;
 		default:
 			throw new IOException("unknown tag with id \"" + tag.getID() + "\"");
 		}
 	}
 
-	private void writeArray(Object array, int length, String prefix) throws IOException {
-		writer.append('[').append(prefix).write(';');
-		for (int i = 0; i < length; i++) {
-			writer.append(i == 0 ? "" : ",").write(Array.get(array, i).toString());
+	private void writeList(ListTag<?> list, int maxDepth) throws IOException {
+		byte listType = NBTEncoder.idFromClass(list.getTypeClass());
+		int size = list.size();
+		out.append('[');
+		if (listType < ByteTag.ID || listType > DoubleTag.ID) {
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				writeAnything(list.get(i), decrementMaxDepth(maxDepth));
+			}
+			out.append(']');
+			return;
+		}
+
+		if (size > 0) {
+			decrementMaxDepth(maxDepth);
+		}
+		// the typed getters do not box the elements of lists backed by primitive arrays
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			switch (listType) {
+			case ByteTag.ID:
+				writeLong(list.getByte(i));
+				out.append('b');
+				break;
+			case ShortTag.ID:
+				writeLong(list.getShort(i));
+				out.append('s');
+				break;
+			case IntTag.ID:
+				writeLong(list.getInt(i));
+				break;
+			case LongTag.ID:
+				writeLong(list.getLong(i));
+				out.append('l');
+				break;
+			case FloatTag.ID:
+				writeFloat(list.getFloat(i));
+				out.append('f');
+				break;
+			default:
+				writeDouble(list.getDouble(i));
+				out.append('d');
+			}
+		}
+		out.append(']');
+	}
+
+	private void writeArray(Buffer array, char prefix) throws IOException {
+		out.append('[').append(prefix).append(';');
+		for (int i = 0; array.hasRemaining(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			if (array instanceof ByteBuffer) {
+				writeLong(((ByteBuffer) array).get());
+			} else if (array instanceof IntBuffer) {
+				writeLong(((IntBuffer) array).get());
+			} else {
+				writeLong(((LongBuffer) array).get());
+			}
+		}
+		out.append(']');
+	}
+
+	/**
+	 * Write the decimal digits of a number, from the end of a reusable array.
+	 */
+	private void writeLong(long v) throws IOException {
+		if (builder != null) {
+			builder.append(v);
+			return;
+		}
+		int i = digits.length;
+		// accumulate negatively, so that the minimum value does not overflow
+		long n = v < 0 ? v : -v;
+		do {
+			digits[--i] = (char) ('0' - n % 10);
+			n /= 10;
+		} while (n != 0);
+		if (v < 0) {
+			digits[--i] = '-';
+		}
+		if (writer != null) {
+			writer.write(digits, i, digits.length - i);
+		} else {
+			for (; i < digits.length; i++) {
+				out.append(digits[i]);
+			}
+		}
+	}
+
+	private void writeFloat(float v) throws IOException {
+		if (builder != null) {
+			builder.append(v);
+		} else {
+			out.append(Float.toString(v));
+		}
+	}
+
+	private void writeDouble(double v) throws IOException {
+		if (builder != null) {
+			builder.append(v);
+		} else {
+			out.append(Double.toString(v));
 		}
-		writer.write(']');
 	}
 
 	public static String escapeString(String s) {
-		if (!NON_QUOTE_PATTERN.matcher(s).matches()) {
-			StringBuilder sb = new StringBuilder();
-			sb.append('"');
-			for (int i = 0; i < s.length(); i++) {
-				char c = s.charAt(i);
-				if (c == '\\' || c == '"') {
-					sb.append('\\');
-				}
-				sb.append(c);
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		try {
+			escapeString(s, sb);
+		} catch (IOException ex) {
+			throw new IllegalStateException(ex);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Append a string, quoted and escaped unless it only holds characters that may appear in a string that is not
+	 * quoted. Runs of characters that need no escaping are appended at once.
+	 *
+	 * @param s   The string
+	 * @param out The output to append to
+	 * @throws IOException In case of error appending to the output
+	 */
+	public static void escapeString(String s, Appendable out) throws IOException {
+		int length = s.length();
+		boolean quote = length == 0;
+		for (int i = 0; i < length && !quote; i++) {
+			char c = s.charAt(i);
+			quote = c >= NON_QUOTE_CHARACTERS.length || !NON_QUOTE_CHARACTERS[c];
+		}
+		if (!quote) {
+			out.append(s);
+			return;
+		}
+
+		out.append('"');
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < ESCAPE_CHARACTERS.length && ESCAPE_CHARACTERS[c]) {
+				appendRange(s, start, i, out);
+				out.append('\\');
+				start = i;
 			}
-			sb.append('"');
-			return sb.toString();
 		}
-		return s;
+		appendRange(s, start, length, out);
+		out.append('"');
+	}
+
+	/**
+	 * Append part of a string. Writers would copy it into a new string first.
+	 */
+	private static void appendRange(String s, int start, int end, Appendable out) throws IOException {
+		if (out instanceof Writer) {
+			((Writer) out).write(s, start, end - start);
+		} else {
+			out.append(s, start, end);
+		}
 	}
 }
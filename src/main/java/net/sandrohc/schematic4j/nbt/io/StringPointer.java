@@ -12,10 +12,40 @@ public class StringPointer {
 
 	public String parseSimpleString() {
 		int oldIndex = index;
-		while (hasNext() && isSimpleChar(currentChar())) {
+		skipSimpleString();
+		return value.substring(oldIndex, index);
+	}
+
+	/**
+	 * Move past an unquoted string, without extracting it.
+	 *
+	 * @return The end of the string, which is the new index
+	 */
+	int skipSimpleString() {
+		int length = value.length();
+		while (index < length && isSimpleChar(value.charAt(index))) {
 			index++;
 		}
-		return value.substring(oldIndex, index);
+		return index;
+	}
+
+	int index() {
+		return index;
+	}
+
+	char charAt(int index) {
+		return value.charAt(index);
+	}
+
+	String substring(int start, int end) {
+		return value.substring(start, end);
+	}
+
+	/**
+	 * Check if a range of the string is a word, ignoring case.
+	 */
+	boolean regionEquals(int start, int end, String word) {
+		return end - start == word.length() && value.regionMatches(true, start, word, 0, word.length());
 	}
 
 	public String parseQuotedString() throws ParseException {
@@ -2,22 +2,57 @@
 package net.sandrohc.schematic4j.nbt.tag;
 
 import java.lang.reflect.Array;
+import java.nio.Buffer;
 
 /**
  * ArrayTag is an abstract representation of any NBT array tag.
  * For implementations see {@link ByteArrayTag}, {@link IntArrayTag}, {@link LongArrayTag}.
+ * <p>
+ * An array tag may also be backed by a read-only buffer view, for example over a memory-mapped file. The view is only
+ * copied into an array when {@link #getValue()} is called, unless the tag is frozen.
+ * <p>
+ * Clones share the array with the original tag, and each one only copies it when {@link #getValue()} hands it out,
+ * since it may then be written to. Once handed out, the array is not shared anymore: the next clones get their own
+ * copy. An array passed to the constructor or to {@link #setValue(Object)} counts as handed out, since the caller
+ * still holds it. Frozen tags hand out a new copy every time. Reading the tag through {@link #length()}, its buffer, or
+ * by comparing or writing it, never copies the array.
  * @param <T> The array type.
  * */
 public abstract class ArrayTag<T> extends Tag<T> {
+
+	private Buffer view;
+	private boolean shared;
+	private boolean handedOut;
+
 	/**
 	 * An array tag.
 	 * @param value The inner array
 	 */
 	public ArrayTag(T value) {
+		this(value, true);
+	}
+
+	/**
+	 * An array tag.
+	 * @param value The inner array
+	 * @param handedOut Whether anyone else holds the array, and so may still write to it
+	 */
+	ArrayTag(T value, boolean handedOut) {
 		super(value);
 		if (!value.getClass().isArray()) {
 			throw new UnsupportedOperationException("type of array tag must be an array");
 		}
+		this.handedOut = handedOut;
+	}
+
+	/**
+	 * An array tag backed by a buffer view.
+	 * @param empty The empty array, used until the view is copied
+	 * @param view The read-only buffer view, whose remaining elements are the array
+	 */
+	protected ArrayTag(T empty, Buffer view) {
+		this(empty, false);
+		this.view = view;
 	}
 
 	/**
@@ -25,17 +60,99 @@ public abstract class ArrayTag<T> extends Tag<T> {
 	 * @return The array length
 	 */
 	public int length() {
-		return Array.getLength(getValue());
+		return view != null ? view.remaining() : Array.getLength(peekValue());
 	}
 
+	/**
+	 * Get the buffer view backing this tag.
+	 * @return The read-only buffer view, or {@code null} if this tag is backed by an array
+	 */
+	protected Buffer getView() {
+		return view;
+	}
+
+	/**
+	 * Get the array backing this tag without copying it, which must only be read.
+	 * @return The array, or an empty array if this tag is backed by a view
+	 */
+	protected T peekValue() {
+		return super.getValue();
+	}
+
+	/**
+	 * Shares the array of this tag with a clone, so that both copy it before handing it out. If the array was already
+	 * handed out, and so may still be written to, the clone gets its own copy instead.
+	 * @param clone The clone holding the same array
+	 * @param <A> The type of the clone
+	 * @return The clone
+	 */
+	protected <A extends ArrayTag<T>> A shareWith(A clone) {
+		if (handedOut) {
+			((ArrayTag<T>) clone).own(copyOf(peekValue()));
+			return clone;
+		}
+		shared = true;
+		((ArrayTag<T>) clone).shared = true;
+		return clone;
+	}
+
+	/**
+	 * Copies the elements of a buffer view into a new array.
+	 * @param view The buffer view
+	 * @return The array holding the remaining elements of the view
+	 */
+	protected abstract T toArray(Buffer view);
+
+	/**
+	 * Get the array, copying it first if it is shared with a clone. Frozen tags return a new copy every time, so that
+	 * they stay immutable.
+	 * @return The array
+	 */
 	@Override
 	public T getValue() {
+		if (isFrozen()) {
+			return view != null ? toArray(view) : copyOf(super.getValue());
+		}
+		if (view != null) {
+			super.setValue(toArray(view));
+			view = null;
+		} else if (shared) {
+			super.setValue(copyOf(super.getValue()));
+			shared = false;
+		}
+		handedOut = true;
 		return super.getValue();
 	}
 
+	/**
+	 * Set the array, which counts as handed out since the caller still holds it.
+	 * @param value The array
+	 */
 	@Override
 	public void setValue(T value) {
+		own(value);
+		handedOut = true;
+	}
+
+	/**
+	 * Copies the array if it was handed out, since it may still be written to.
+	 */
+	@Override
+	protected void freezeValue(int maxDepth) {
+		if (handedOut) {
+			own(copyOf(super.getValue()));
+		}
+	}
+
+	/**
+	 * Replace the array with one that nobody else holds.
+	 * @param value The array
+	 */
+	private void own(T value) {
 		super.setValue(value);
+		view = null;
+		shared = false;
+		handedOut = false;
 	}
 
 	@Override
@@ -43,17 +160,53 @@ public abstract class ArrayTag<T> extends Tag<T> {
 		return arrayToString("", "");
 	}
 
+	@Override
+	protected void valueToString(StringBuilder sb, int maxDepth) {
+		arrayToString(sb, "", "");
+	}
+
 	/**
 	 * @param prefix The item prefix
 	 * @param suffix The item suffix
 	 * @return The generated string
 	 */
 	protected String arrayToString(String prefix, String suffix) {
-		StringBuilder sb = new StringBuilder("[").append(prefix).append("".equals(prefix) ? "" : ";");
-		for (int i = 0; i < length(); i++) {
-			sb.append(i == 0 ? "" : ",").append(Array.get(getValue(), i)).append(suffix);
-		}
-		sb.append("]");
+		StringBuilder sb = new StringBuilder();
+		arrayToString(sb, prefix, suffix);
 		return sb.toString();
 	}
+
+	/**
+	 * Appends the elements to a builder, without boxing those of primitive arrays.
+	 * @param sb The builder to append to
+	 * @param prefix The item prefix
+	 * @param suffix The item suffix
+	 */
+	protected void arrayToString(StringBuilder sb, String prefix, String suffix) {
+		sb.append('[').append(prefix).append("".equals(prefix) ? "" : ";");
+		T value = view != null ? toArray(view) : peekValue();
+		int length = Array.getLength(value);
+		for (int i = 0; i < length; i++) {
+			sb.append(i == 0 ? "" : ",");
+			if (value instanceof byte[]) {
+				sb.append(((byte[]) value)[i]);
+			} else if (value instanceof int[]) {
+				sb.append(((int[]) value)[i]);
+			} else if (value instanceof long[]) {
+				sb.append(((long[]) value)[i]);
+			} else {
+				sb.append(Array.get(value, i));
+			}
+			sb.append(suffix);
+		}
+		sb.append(']');
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T copyOf(T array) {
+		int length = Array.getLength(array);
+		T copy = (T) Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, 0, copy, 0, length);
+		return copy;
+	}
 }
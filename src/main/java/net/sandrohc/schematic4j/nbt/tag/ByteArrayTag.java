@@ -1,6 +1,8 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.tag;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 /**
@@ -22,7 +24,7 @@ public class ByteArrayTag extends ArrayTag<byte[]> implements Comparable<ByteArr
 	 * An empty byte array tag.
 	 */
 	public ByteArrayTag() {
-		super(ZERO_VALUE);
+		super(ZERO_VALUE, false);
 	}
 
 	/**
@@ -33,19 +35,76 @@ public class ByteArrayTag extends ArrayTag<byte[]> implements Comparable<ByteArr
 		super(value);
 	}
 
+	/**
+	 * A byte array tag backed by a buffer view, without copying it.
+	 * @param view The buffer whose remaining bytes are the array
+	 */
+	public ByteArrayTag(ByteBuffer view) {
+		super(ZERO_VALUE, view.slice().asReadOnlyBuffer());
+	}
+
+	private ByteArrayTag(byte[] value, boolean handedOut) {
+		super(value, handedOut);
+	}
+
+	/**
+	 * Creates a byte array tag that takes over an array nobody else holds, such as one allocated by a reader. Unlike
+	 * {@link #ByteArrayTag(byte[])}, the array is shared with clones and kept when frozen, without being copied, so it
+	 * must not be written to anymore.
+	 * @param value The inner array
+	 * @return The tag
+	 */
+	public static ByteArrayTag wrap(byte[] value) {
+		return new ByteArrayTag(value, false);
+	}
+
 	@Override
 	public byte getID() {
 		return ID;
 	}
 
+	/**
+	 * Get a read-only buffer over the array, without copying it.
+	 * @return The buffer over the bytes of this tag
+	 */
+	public ByteBuffer asBuffer() {
+		ByteBuffer view = (ByteBuffer) getView();
+		return view != null ? view.duplicate() : ByteBuffer.wrap(peekValue()).asReadOnlyBuffer();
+	}
+
+	@Override
+	protected byte[] toArray(Buffer view) {
+		byte[] value = new byte[view.remaining()];
+		((ByteBuffer) view).duplicate().get(value);
+		return value;
+	}
+
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && Arrays.equals(getValue(), ((ByteArrayTag) other).getValue());
+		if (this == other) {
+			return true;
+		}
+		if (!super.equals(other) || hashesDiffer((Tag<?>) other)) {
+			return false;
+		}
+		if (getView() == null && ((ByteArrayTag) other).getView() == null) {
+			return Arrays.equals(peekValue(), ((ByteArrayTag) other).peekValue());
+		}
+		return asBuffer().equals(((ByteArrayTag) other).asBuffer());
 	}
 
 	@Override
-	public int hashCode() {
-		return Arrays.hashCode(getValue());
+	protected int valueHashCode() {
+		if (getView() == null) {
+			return Arrays.hashCode(peekValue());
+		}
+		// same as Arrays.hashCode, without copying the view
+		ByteBuffer buffer = asBuffer();
+		int hash = 1;
+		while (buffer.hasRemaining()) {
+			hash = 31 * hash + buffer.get();
+		}
+		return hash;
 	}
 
 	@Override
@@ -55,6 +114,14 @@ public class ByteArrayTag extends ArrayTag<byte[]> implements Comparable<ByteArr
 
 	@Override
 	public ByteArrayTag clone() {
-		return new ByteArrayTag(Arrays.copyOf(getValue(), length()));
+		if (isFrozen()) {
+			return this;
+		}
+		if (getView() != null) {
+			// the view is read-only, so it can be shared
+			return new ByteArrayTag((ByteBuffer) getView());
+		}
+		// the array is only copied once it is handed out, by either tag
+		return shareWith(new ByteArrayTag(peekValue(), false));
 	}
 }
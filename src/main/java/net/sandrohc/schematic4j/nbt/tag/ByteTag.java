@@ -74,6 +74,9 @@ public class ByteTag extends NumberTag<Byte> implements Comparable<ByteTag> {
 
 	@Override
 	public ByteTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new ByteTag(getValue());
 	}
 }
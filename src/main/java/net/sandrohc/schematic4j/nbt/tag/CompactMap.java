@@ -0,0 +1,348 @@
+package net.sandrohc.schematic4j.nbt.tag;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+/**
+ * A map backed by parallel key and value arrays while it is small, and by a {@link HashMap} once it grows past
+ * {@link #MAX_COMPACT_SIZE} entries.
+ * <p>
+ * Most compounds hold just a few entries, for which a hash map, with its table and a node per entry, takes several
+ * times the memory of two small arrays. Looking up a key scans the keys in order, which for so few entries is about as
+ * fast as hashing. The entries are kept in insertion order until the map is promoted.
+ *
+ * @param <K> The type of the keys
+ * @param <V> The type of the values
+ */
+final class CompactMap<K, V> extends AbstractMap<K, V> {
+
+	/**
+	 * The maximum number of entries held in the arrays, before the map is promoted to a hash map.
+	 */
+	static final int MAX_COMPACT_SIZE = 8;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	private static final Object[] EMPTY = {};
+
+	private Object[] keys = EMPTY;
+	private Object[] values = EMPTY;
+	private int size;
+	private HashMap<K, V> map;
+	private int modCount;
+	private Set<Entry<K, V>> entrySet;
+
+	@Override
+	public int size() {
+		return map != null ? map.size() : size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return map != null ? map.containsKey(key) : indexOf(key) >= 0;
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (map != null) {
+			return map.containsValue(value);
+		}
+		for (int i = 0; i < size; i++) {
+			if (Objects.equals(values[i], value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V get(Object key) {
+		if (map != null) {
+			return map.get(key);
+		}
+		int index = indexOf(key);
+		return index >= 0 ? (V) values[index] : null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V put(K key, V value) {
+		if (map != null) {
+			return map.put(key, value);
+		}
+		int index = indexOf(key);
+		if (index >= 0) {
+			V old = (V) values[index];
+			values[index] = value;
+			return old;
+		}
+		if (size == MAX_COMPACT_SIZE) {
+			promote().put(key, value);
+			return null;
+		}
+		if (size == keys.length) {
+			int capacity = Math.min(Math.max(size * 2, INITIAL_CAPACITY), MAX_COMPACT_SIZE);
+			keys = Arrays.copyOf(keys, capacity);
+			values = Arrays.copyOf(values, capacity);
+		}
+		keys[size] = key;
+		values[size] = value;
+		size++;
+		modCount++;
+		return null;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public V remove(Object key) {
+		if (map != null) {
+			return map.remove(key);
+		}
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+		V old = (V) values[index];
+		removeAt(index);
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		if (map != null) {
+			map.clear();
+			return;
+		}
+		Arrays.fill(keys, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		size = 0;
+		modCount++;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public void forEach(BiConsumer<? super K, ? super V> action) {
+		if (map != null) {
+			map.forEach(action);
+			return;
+		}
+		int expectedModCount = modCount;
+		for (int i = 0; i < size; i++) {
+			action.accept((K) keys[i], (V) values[i]);
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	@Override
+	public @NonNull Set<Entry<K, V>> entrySet() {
+		Set<Entry<K, V>> entrySet = this.entrySet;
+		if (entrySet == null) {
+			this.entrySet = entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	private int indexOf(Object key) {
+		Object[] keys = this.keys;
+		for (int i = 0; i < size; i++) {
+			Object k = keys[i];
+			if (k == key || key != null && key.equals(k)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void removeAt(int index) {
+		int moved = size - index - 1;
+		System.arraycopy(keys, index + 1, keys, index, moved);
+		System.arraycopy(values, index + 1, values, index, moved);
+		size--;
+		keys[size] = null;
+		values[size] = null;
+		modCount++;
+	}
+
+	/**
+	 * Move the entries to a hash map, which backs the map from then on.
+	 */
+	@SuppressWarnings("unchecked")
+	private HashMap<K, V> promote() {
+		HashMap<K, V> map = new HashMap<>(MAX_COMPACT_SIZE * 4);
+		for (int i = 0; i < size; i++) {
+			map.put((K) keys[i], (V) values[i]);
+		}
+		this.map = map;
+		keys = null;
+		values = null;
+		size = 0;
+		modCount++;
+		return map;
+	}
+
+	/**
+	 * A view of the entries that follows the map when it is promoted.
+	 */
+	private final class EntrySet extends AbstractSet<Entry<K, V>> {
+
+		@Override
+		public int size() {
+			return CompactMap.this.size();
+		}
+
+		@Override
+		public void clear() {
+			CompactMap.this.clear();
+		}
+
+		@Override
+		public @NonNull Iterator<Entry<K, V>> iterator() {
+			return map != null ? map.entrySet().iterator() : new EntryIterator();
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> entry = (Entry<?, ?>) o;
+			if (map != null) {
+				return map.entrySet().contains(entry);
+			}
+			int index = indexOf(entry.getKey());
+			return index >= 0 && Objects.equals(values[index], entry.getValue());
+		}
+
+		@Override
+		public boolean remove(Object o) {
+			if (!contains(o)) {
+				return false;
+			}
+			CompactMap.this.remove(((Entry<?, ?>) o).getKey());
+			return true;
+		}
+	}
+
+	private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+		private int next;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		@Override
+		public boolean hasNext() {
+			// once promoted, the arrays are gone, so the iteration cannot go on
+			checkModCount();
+			return next < size;
+		}
+
+		@Override
+		public Entry<K, V> next() {
+			checkModCount();
+			if (next >= size) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			return new CompactEntry(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			checkModCount();
+			removeAt(last);
+			next = last;
+			last = -1;
+			expectedModCount = modCount;
+		}
+
+		private void checkModCount() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+		}
+	}
+
+	/**
+	 * An entry writing its value through to the arrays, or to the hash map once promoted. Like the nodes of a hash map,
+	 * it keeps its key and value after being removed.
+	 */
+	private final class CompactEntry implements Entry<K, V> {
+
+		private final int index;
+		private final K key;
+		private V value;
+
+		@SuppressWarnings("unchecked")
+		CompactEntry(int index) {
+			this.index = index;
+			this.key = (K) keys[index];
+			this.value = (V) values[index];
+		}
+
+		@Override
+		public K getKey() {
+			return key;
+		}
+
+		@Override
+		public V getValue() {
+			return value;
+		}
+
+		@Override
+		public V setValue(V value) {
+			V old = this.value;
+			this.value = value;
+			if (map != null) {
+				map.replace(key, value);
+			} else {
+				// the entry may have moved if others were removed since
+				int i = index < size && keys[index] == key ? index : indexOf(key);
+				if (i >= 0) {
+					values[i] = value;
+				}
+			}
+			return old;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Entry)) {
+				return false;
+			}
+			Entry<?, ?> entry = (Entry<?, ?>) o;
+			return Objects.equals(getKey(), entry.getKey()) && Objects.equals(getValue(), entry.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(getKey()) ^ Objects.hashCode(getValue());
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+}
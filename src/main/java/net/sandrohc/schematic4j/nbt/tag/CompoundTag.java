@@ -2,7 +2,7 @@
 package net.sandrohc.schematic4j.nbt.tag;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
@@ -35,8 +35,12 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 		return ID;
 	}
 
+	/**
+	 * Most compounds hold just a few entries, so they start with a compact map, which is promoted to a hash map as it
+	 * grows.
+	 */
 	private static Map<String, Tag<?>> createEmptyValue() {
-		return new HashMap<>(8);
+		return new CompactMap<>();
 	}
 
 	/**
@@ -539,16 +543,23 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 
 	@Override
 	public String valueToString(int maxDepth) {
-		StringBuilder sb = new StringBuilder("{");
+		StringBuilder sb = new StringBuilder();
+		valueToString(sb, maxDepth);
+		return sb.toString();
+	}
+
+	@Override
+	protected void valueToString(StringBuilder sb, int maxDepth) {
+		sb.append('{');
 		boolean first = true;
 		for (Map.Entry<String, Tag<?>> e : getValue().entrySet()) {
-			sb.append(first ? "" : ",")
-					.append(escapeString(e.getKey(), false)).append(":")
-					.append(e.getValue().toString(decrementMaxDepth(maxDepth)));
+			sb.append(first ? "" : ",");
+			escapeString(e.getKey(), false, sb);
+			sb.append(':');
+			e.getValue().toString(sb, decrementMaxDepth(maxDepth));
 			first = false;
 		}
-		sb.append("}");
-		return sb.toString();
+		sb.append('}');
 	}
 
 	@Override
@@ -556,7 +567,7 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 		if (this == other) {
 			return true;
 		}
-		if (!super.equals(other) || size() != ((CompoundTag) other).size()) {
+		if (!super.equals(other) || size() != ((CompoundTag) other).size() || hashesDiffer((CompoundTag) other)) {
 			return false;
 		}
 		for (Map.Entry<String, Tag<?>> e : getValue().entrySet()) {
@@ -573,8 +584,24 @@ public class CompoundTag extends Tag<Map<String, Tag<?>>> implements Iterable<Ma
 		return Integer.compare(size(), o.getValue().size());
 	}
 
+	@Override
+	public CompoundTag freeze() {
+		return (CompoundTag) super.freeze();
+	}
+
+	@Override
+	protected void freezeValue(int maxDepth) {
+		for (Tag<?> tag : getValue().values()) {
+			tag.freeze(decrementMaxDepth(maxDepth));
+		}
+		setValue(Collections.unmodifiableMap(getValue()));
+	}
+
 	@Override
 	public CompoundTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		CompoundTag copy = new CompoundTag();
 		for (Map.Entry<String, Tag<?>> e : getValue().entrySet()) {
 			copy.put(e.getKey(), e.getValue().clone());
@@ -58,6 +58,9 @@ public class DoubleTag extends NumberTag<Double> implements Comparable<DoubleTag
 
 	@Override
 	public DoubleTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new DoubleTag(getValue());
 	}
 }
@@ -57,6 +57,9 @@ public class FloatTag extends NumberTag<Float> implements Comparable<FloatTag> {
 
 	@Override
 	public FloatTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new FloatTag(getValue());
 	}
 }
@@ -1,6 +1,8 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.tag;
 
+import java.nio.Buffer;
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 /**
@@ -22,7 +24,7 @@ public class IntArrayTag extends ArrayTag<int[]> implements Comparable<IntArrayT
 	 * An empty int array tag.
 	 */
 	public IntArrayTag() {
-		super(ZERO_VALUE);
+		super(ZERO_VALUE, false);
 	}
 
 	/**
@@ -33,19 +35,76 @@ public class IntArrayTag extends ArrayTag<int[]> implements Comparable<IntArrayT
 		super(value);
 	}
 
+	/**
+	 * A int array tag backed by a buffer view, without copying it.
+	 * @param view The buffer whose remaining ints are the array
+	 */
+	public IntArrayTag(IntBuffer view) {
+		super(ZERO_VALUE, view.slice().asReadOnlyBuffer());
+	}
+
+	private IntArrayTag(int[] value, boolean handedOut) {
+		super(value, handedOut);
+	}
+
+	/**
+	 * Creates an int array tag that takes over an array nobody else holds, such as one allocated by a reader. Unlike
+	 * {@link #IntArrayTag(int[])}, the array is shared with clones and kept when frozen, without being copied, so it
+	 * must not be written to anymore.
+	 * @param value The inner array
+	 * @return The tag
+	 */
+	public static IntArrayTag wrap(int[] value) {
+		return new IntArrayTag(value, false);
+	}
+
 	@Override
 	public byte getID() {
 		return ID;
 	}
 
+	/**
+	 * Get a read-only buffer over the array, without copying it.
+	 * @return The buffer over the ints of this tag
+	 */
+	public IntBuffer asBuffer() {
+		IntBuffer view = (IntBuffer) getView();
+		return view != null ? view.duplicate() : IntBuffer.wrap(peekValue()).asReadOnlyBuffer();
+	}
+
+	@Override
+	protected int[] toArray(Buffer view) {
+		int[] value = new int[view.remaining()];
+		((IntBuffer) view).duplicate().get(value);
+		return value;
+	}
+
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && Arrays.equals(getValue(), ((IntArrayTag) other).getValue());
+		if (this == other) {
+			return true;
+		}
+		if (!super.equals(other) || hashesDiffer((Tag<?>) other)) {
+			return false;
+		}
+		if (getView() == null && ((IntArrayTag) other).getView() == null) {
+			return Arrays.equals(peekValue(), ((IntArrayTag) other).peekValue());
+		}
+		return asBuffer().equals(((IntArrayTag) other).asBuffer());
 	}
 
 	@Override
-	public int hashCode() {
-		return Arrays.hashCode(getValue());
+	protected int valueHashCode() {
+		if (getView() == null) {
+			return Arrays.hashCode(peekValue());
+		}
+		// same as Arrays.hashCode, without copying the view
+		IntBuffer buffer = asBuffer();
+		int hash = 1;
+		while (buffer.hasRemaining()) {
+			hash = 31 * hash + buffer.get();
+		}
+		return hash;
 	}
 
 	@Override
@@ -55,6 +114,14 @@ public class IntArrayTag extends ArrayTag<int[]> implements Comparable<IntArrayT
 
 	@Override
 	public IntArrayTag clone() {
-		return new IntArrayTag(Arrays.copyOf(getValue(), length()));
+		if (isFrozen()) {
+			return this;
+		}
+		if (getView() != null) {
+			// the view is read-only, so it can be shared
+			return new IntArrayTag((IntBuffer) getView());
+		}
+		// the array is only copied once it is handed out, by either tag
+		return shareWith(new IntArrayTag(peekValue(), false));
 	}
 }
@@ -57,6 +57,9 @@ public class IntTag extends NumberTag<Integer> implements Comparable<IntTag> {
 
 	@Override
 	public IntTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new IntTag(getValue());
 	}
 }
@@ -1,12 +1,16 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.tag;
 
+import java.lang.reflect.Array;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.RandomAccess;
 import java.util.function.Consumer;
 
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -18,6 +22,14 @@ import net.sandrohc.schematic4j.nbt.MaxDepthIO;
  * An empty {@link ListTag} will be of type {@link EndTag} (unknown type).
  * The type of empty untyped {@link ListTag} can be set by using any of the {@code add()}
  * methods or any of the {@code as...List()} methods.
+ * <p>
+ * Lists of numbers can be backed by a primitive array instead, as created by {@link #ofDoubles(double...)} and the
+ * other {@code of...} factories, and by the NBT readers. Their elements are read with the typed getters, such as
+ * {@link #getDouble(int)}, without creating a tag per element. Reading an element as a tag, with {@link #get(int)} or
+ * by iterating over the list, only boxes that element, and the list keeps reading it from the tag from then on; the
+ * whole list is only boxed into tags once it is modified. Clones share the primitive array, which is never written to.
+ * An array passed to the {@code of...} factories is still held by the caller, so it is copied when the list is frozen
+ * or cloned.
  *
  * @param <T> The type of the list entries
  */
@@ -33,6 +45,22 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 	 */
 	private Class<?> typeClass = null;
 
+	/**
+	 * The primitive array holding the elements of a list of numbers, until they are boxed into tags.
+	 */
+	private Object primitives;
+
+	/**
+	 * Whether the primitive array was passed in by the caller, who may still write to it.
+	 */
+	private boolean borrowed;
+
+	/**
+	 * The elements of a list of numbers handed out as tags, which are read instead of the primitive array since they
+	 * may have been modified. Lazily created, and only used while the list is not frozen.
+	 */
+	private Tag<?>[] boxed;
+
 	/**
 	 * A list tag.
 	 */
@@ -40,6 +68,16 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 		super(createEmptyValue(3));
 	}
 
+	/**
+	 * A list tag backed by a primitive array.
+	 */
+	private ListTag(Class<?> typeClass, Object primitives, boolean borrowed) {
+		super(createEmptyValue(0));
+		this.typeClass = typeClass;
+		this.primitives = primitives;
+		this.borrowed = borrowed;
+	}
+
 	@Override
 	public byte getID() {
 		return ID;
@@ -61,6 +99,93 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 		return list;
 	}
 
+	/**
+	 * Creates a list of bytes backed by an array, which is not copied until the list is frozen or cloned.
+	 *
+	 * @param values The elements
+	 * @return A new ListTag
+	 */
+	public static ListTag<ByteTag> ofBytes(byte... values) {
+		return new ListTag<>(ByteTag.class, Objects.requireNonNull(values), true);
+	}
+
+	/**
+	 * Creates a list of shorts backed by an array, which is not copied until the list is frozen or cloned.
+	 *
+	 * @param values The elements
+	 * @return A new ListTag
+	 */
+	public static ListTag<ShortTag> ofShorts(short... values) {
+		return new ListTag<>(ShortTag.class, Objects.requireNonNull(values), true);
+	}
+
+	/**
+	 * Creates a list of ints backed by an array, which is not copied until the list is frozen or cloned.
+	 *
+	 * @param values The elements
+	 * @return A new ListTag
+	 */
+	public static ListTag<IntTag> ofInts(int... values) {
+		return new ListTag<>(IntTag.class, Objects.requireNonNull(values), true);
+	}
+
+	/**
+	 * Creates a list of longs backed by an array, which is not copied until the list is frozen or cloned.
+	 *
+	 * @param values The elements
+	 * @return A new ListTag
+	 */
+	public static ListTag<LongTag> ofLongs(long... values) {
+		return new ListTag<>(LongTag.class, Objects.requireNonNull(values), true);
+	}
+
+	/**
+	 * Creates a list of floats backed by an array, which is not copied until the list is frozen or cloned.
+	 *
+	 * @param values The elements
+	 * @return A new ListTag
+	 */
+	public static ListTag<FloatTag> ofFloats(float... values) {
+		return new ListTag<>(FloatTag.class, Objects.requireNonNull(values), true);
+	}
+
+	/**
+	 * Creates a list of doubles backed by an array, which is not copied until the list is frozen or cloned.
+	 *
+	 * @param values The elements
+	 * @return A new ListTag
+	 */
+	public static ListTag<DoubleTag> ofDoubles(double... values) {
+		return new ListTag<>(DoubleTag.class, Objects.requireNonNull(values), true);
+	}
+
+	/**
+	 * <p>Creates a list of numbers backed by an array nobody else holds, such as one allocated by a reader. Unlike the
+	 * {@code of...} factories, the array is kept when the list is frozen or cloned, without being copied, so it must
+	 * not be written to anymore.</p>
+	 *
+	 * <p>This is an internal helper method for the NBT readers, which know the element type from the array.</p>
+	 *
+	 * @param values The elements, in an array of {@code byte}, {@code short}, {@code int}, {@code long}, {@code float}
+	 *               or {@code double}
+	 * @return A new ListTag
+	 * @throws IllegalArgumentException When {@code values} is not one of these arrays
+	 */
+	public static ListTag<?> wrapUnchecked(Object values) {
+		Class<?> type = values.getClass();
+		Class<?> typeClass = type == byte[].class ? ByteTag.class
+				: type == short[].class ? ShortTag.class
+				: type == int[].class ? IntTag.class
+				: type == long[].class ? LongTag.class
+				: type == float[].class ? FloatTag.class
+				: type == double[].class ? DoubleTag.class
+				: null;
+		if (typeClass == null) {
+			throw new IllegalArgumentException("cannot create ListTag from " + type.getSimpleName());
+		}
+		return new ListTag<>(typeClass, values, false);
+	}
+
 	/**
 	 * <p>Creates an empty mutable list to be used as empty value of ListTags.</p>
 	 *
@@ -101,7 +226,7 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 	 * @return the number of elements in this list
 	 */
 	public int size() {
-		return getValue().size();
+		return primitives != null ? Array.getLength(primitives) : getValue().size();
 	}
 
 	/**
@@ -162,12 +287,12 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 
 	@Override
 	public @NonNull Iterator<T> iterator() {
-		return getValue().iterator();
+		return elements().iterator();
 	}
 
 	@Override
 	public void forEach(Consumer<? super T> action) {
-		getValue().forEach(action);
+		elements().forEach(action);
 	}
 
 	/**
@@ -199,6 +324,7 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 	 */
 	public void add(int index, T t) {
 		Objects.requireNonNull(t);
+		checkMutable();
 		if (getTypeClass() == EndTag.class) {
 			typeClass = t.getClass();
 		} else if (typeClass != t.getClass()) {
@@ -341,8 +467,147 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 	 * @return the element at the specified position in this list
 	 * @throws IndexOutOfBoundsException if the index is out of range (<code>index &lt; 0 || index &gt;= size()</code>)
 	 */
+	@SuppressWarnings("unchecked")
 	public T get(int index) {
-		return getValue().get(index);
+		if (primitives == null) {
+			return getValue().get(index);
+		}
+		if (isFrozen()) {
+			T tag = boxAt(index);
+			tag.freeze();
+			return tag;
+		}
+		if (boxed == null) {
+			boxed = new Tag<?>[size()];
+		}
+		if (boxed[index] == null) {
+			boxed[index] = boxAt(index);
+		}
+		return (T) boxed[index];
+	}
+
+	/**
+	 * Returns the element at the specified position in this list of numbers, as a byte.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws ClassCastException        if the elements are not numbers
+	 * @see NumberTag#asByte()
+	 */
+	public byte getByte(int index) {
+		if (boxed != null && boxed[index] != null) {
+			return ((NumberTag<?>) boxed[index]).asByte();
+		} else if (primitives instanceof byte[]) {
+			return ((byte[]) primitives)[index];
+		}
+		return (byte) getInt(index);
+	}
+
+	/**
+	 * Returns the element at the specified position in this list of numbers, as a short.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws ClassCastException        if the elements are not numbers
+	 * @see NumberTag#asShort()
+	 */
+	public short getShort(int index) {
+		if (boxed != null && boxed[index] != null) {
+			return ((NumberTag<?>) boxed[index]).asShort();
+		} else if (primitives instanceof short[]) {
+			return ((short[]) primitives)[index];
+		}
+		return (short) getInt(index);
+	}
+
+	/**
+	 * Returns the element at the specified position in this list of numbers, as an int.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws ClassCastException        if the elements are not numbers
+	 * @see NumberTag#asInt()
+	 */
+	public int getInt(int index) {
+		Object values = primitives;
+		if (boxed != null && boxed[index] != null) {
+			return ((NumberTag<?>) boxed[index]).asInt();
+		} else if (values instanceof int[]) {
+			return ((int[]) values)[index];
+		} else if (values instanceof float[] || values instanceof double[]) {
+			return (int) floatingAt(values, index);
+		} else if (values != null) {
+			return (int) integralAt(values, index);
+		}
+		return ((NumberTag<?>) get(index)).asInt();
+	}
+
+	/**
+	 * Returns the element at the specified position in this list of numbers, as a long.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws ClassCastException        if the elements are not numbers
+	 * @see NumberTag#asLong()
+	 */
+	public long getLong(int index) {
+		Object values = primitives;
+		if (boxed != null && boxed[index] != null) {
+			return ((NumberTag<?>) boxed[index]).asLong();
+		} else if (values instanceof float[] || values instanceof double[]) {
+			return (long) floatingAt(values, index);
+		} else if (values != null) {
+			return integralAt(values, index);
+		}
+		return ((NumberTag<?>) get(index)).asLong();
+	}
+
+	/**
+	 * Returns the element at the specified position in this list of numbers, as a float.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws ClassCastException        if the elements are not numbers
+	 * @see NumberTag#asFloat()
+	 */
+	public float getFloat(int index) {
+		Object values = primitives;
+		if (boxed != null && boxed[index] != null) {
+			return ((NumberTag<?>) boxed[index]).asFloat();
+		} else if (values instanceof float[] || values instanceof double[]) {
+			return (float) floatingAt(values, index);
+		} else if (values != null) {
+			return integralAt(values, index);
+		}
+		return ((NumberTag<?>) get(index)).asFloat();
+	}
+
+	/**
+	 * Returns the element at the specified position in this list of numbers, as a double.
+	 *
+	 * @param index index of the element to return
+	 * @return the element at the specified position in this list
+	 * @throws IndexOutOfBoundsException if the index is out of range
+	 * @throws ClassCastException        if the elements are not numbers
+	 * @see NumberTag#asDouble()
+	 */
+	public double getDouble(int index) {
+		Object values = primitives;
+		if (boxed != null && boxed[index] != null) {
+			return ((NumberTag<?>) boxed[index]).asDouble();
+		} else if (values instanceof double[]) {
+			return ((double[]) values)[index];
+		} else if (values instanceof float[]) {
+			return ((float[]) values)[index];
+		} else if (values != null) {
+			return integralAt(values, index);
+		}
+		return ((NumberTag<?>) get(index)).asDouble();
 	}
 
 	/**
@@ -470,7 +735,9 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 	@SuppressWarnings("unchecked")
 	public ListTag<ListTag<?>> asListTagList() {
 		checkTypeClass(ListTag.class);
-		typeClass = ListTag.class;
+		if (!isFrozen()) {
+			typeClass = ListTag.class;
+		}
 		return (ListTag<ListTag<?>>) this;
 	}
 
@@ -485,12 +752,39 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 
 	@Override
 	public String valueToString(int maxDepth) {
-		StringBuilder sb = new StringBuilder("{\"type\":\"").append(getTypeClass().getSimpleName()).append("\",\"list\":[");
-		for (int i = 0; i < size(); i++) {
-			sb.append(i > 0 ? "," : "").append(get(i).valueToString(decrementMaxDepth(maxDepth)));
+		StringBuilder sb = new StringBuilder();
+		valueToString(sb, maxDepth);
+		return sb.toString();
+	}
+
+	@Override
+	protected void valueToString(StringBuilder sb, int maxDepth) {
+		sb.append("{\"type\":\"").append(getTypeClass().getSimpleName()).append("\",\"list\":[");
+		if (primitives == null) {
+			for (int i = 0; i < size(); i++) {
+				sb.append(i > 0 ? "," : "");
+				get(i).valueToString(sb, decrementMaxDepth(maxDepth));
+			}
+			sb.append("]}");
+			return;
+		}
+
+		int size = size();
+		if (size > 0) {
+			decrementMaxDepth(maxDepth);
+		}
+		// the typed getters do not box the elements, and append them as their tags would
+		for (int i = 0; i < size; i++) {
+			sb.append(i > 0 ? "," : "");
+			if (typeClass == DoubleTag.class) {
+				sb.append(getDouble(i));
+			} else if (typeClass == FloatTag.class) {
+				sb.append(getFloat(i));
+			} else {
+				sb.append(getLong(i));
+			}
 		}
 		sb.append("]}");
-		return sb.toString();
 	}
 
 	@Override
@@ -498,9 +792,13 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 		if (this == other) {
 			return true;
 		}
-		if (!super.equals(other) || size() != ((ListTag<?>) other).size() || getTypeClass() != ((ListTag<?>) other).getTypeClass()) {
+		if (!super.equals(other) || size() != ((ListTag<?>) other).size() || getTypeClass() != ((ListTag<?>) other).getTypeClass()
+				|| hashesDiffer((ListTag<?>) other)) {
 			return false;
 		}
+		if (primitives != null || ((ListTag<?>) other).primitives != null) {
+			return numbersEqual((ListTag<?>) other);
+		}
 		for (int i = 0; i < size(); i++) {
 			if (!get(i).equals(((ListTag<?>) other).get(i))) {
 				return false;
@@ -510,18 +808,53 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 	}
 
 	@Override
-	public int hashCode() {
+	protected int valueHashCode() {
+		if (primitives != null) {
+			return Objects.hash(getTypeClass().hashCode(), numbersHashCode());
+		}
 		return Objects.hash(getTypeClass().hashCode(), getValue().hashCode());
 	}
 
 	@Override
 	public int compareTo(ListTag<T> o) {
-		return Integer.compare(size(), o.getValue().size());
+		return Integer.compare(size(), o.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public ListTag<T> freeze() {
+		return (ListTag<T>) super.freeze();
+	}
+
+	/**
+	 * Freezes the elements. Lists backed by a primitive array keep it, unless the caller still holds it, and box the
+	 * elements into new frozen tags whenever they are read as tags.
+	 */
+	@Override
+	protected void freezeValue(int maxDepth) {
+		if (primitives != null) {
+			primitives = ownedPrimitives();
+			borrowed = false;
+			boxed = null;
+			super.setValue(new PrimitiveView());
+			return;
+		}
+		for (T t : getValue()) {
+			t.freeze(decrementMaxDepth(maxDepth));
+		}
+		super.setValue(Collections.unmodifiableList(getValue()));
 	}
 
 	@SuppressWarnings("unchecked")
 	@Override
 	public ListTag<T> clone() {
+		if (isFrozen()) {
+			return this;
+		}
+		if (primitives != null) {
+			// primitive arrays are never written to, modifying the list boxes it first, so they can be shared
+			return new ListTag<>(typeClass, ownedPrimitives(), false);
+		}
 		ListTag<T> copy = new ListTag<>();
 		// assure type safety for clone
 		copy.typeClass = typeClass;
@@ -546,6 +879,168 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 		add(size(), (T) tag);
 	}
 
+	/**
+	 * Returns the elements, boxing them into tags first if the list is backed by a primitive array.
+	 *
+	 * @return The elements
+	 */
+	@Override
+	protected List<T> getValue() {
+		if (primitives != null && !isFrozen()) {
+			box();
+		}
+		return super.getValue();
+	}
+
+	@Override
+	protected void setValue(List<T> value) {
+		super.setValue(value);
+		primitives = null;
+		borrowed = false;
+		boxed = null;
+	}
+
+	/**
+	 * Get the elements to iterate over, without boxing the whole list if it is backed by a primitive array.
+	 */
+	private List<T> elements() {
+		return primitives != null ? new PrimitiveView() : getValue();
+	}
+
+	/**
+	 * Replace the primitive array with a list of tags, keeping the tags already handed out.
+	 */
+	@SuppressWarnings("unchecked")
+	private void box() {
+		int size = Array.getLength(primitives);
+		List<T> list = createEmptyValue(size);
+		for (int i = 0; i < size; i++) {
+			list.add(boxed != null && boxed[i] != null ? (T) boxed[i] : boxAt(i));
+		}
+		setValue(list);
+	}
+
+	/**
+	 * Get the primitive array with the current values of the elements handed out as tags, copying it if any was.
+	 */
+	private Object currentPrimitives() {
+		if (boxed == null) {
+			return primitives;
+		}
+		Object values = copyOf(primitives);
+		for (int i = 0; i < boxed.length; i++) {
+			if (boxed[i] != null) {
+				Array.set(values, i, boxed[i].getValue());
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Get the primitive array with the current values of the elements, copying it if the caller may still write to it.
+	 */
+	private Object ownedPrimitives() {
+		Object values = currentPrimitives();
+		return borrowed && values == primitives ? copyOf(values) : values;
+	}
+
+	private static Object copyOf(Object primitives) {
+		int size = Array.getLength(primitives);
+		Object values = Array.newInstance(primitives.getClass().getComponentType(), size);
+		System.arraycopy(primitives, 0, values, 0, size);
+		return values;
+	}
+
+	/**
+	 * Create a tag holding an element of the primitive array.
+	 */
+	@SuppressWarnings("unchecked")
+	private T boxAt(int index) {
+		Tag<?> tag;
+		if (typeClass == ByteTag.class) {
+			tag = new ByteTag(getByte(index));
+		} else if (typeClass == ShortTag.class) {
+			tag = new ShortTag(getShort(index));
+		} else if (typeClass == IntTag.class) {
+			tag = new IntTag(getInt(index));
+		} else if (typeClass == LongTag.class) {
+			tag = new LongTag(getLong(index));
+		} else if (typeClass == FloatTag.class) {
+			tag = new FloatTag(getFloat(index));
+		} else {
+			tag = new DoubleTag(getDouble(index));
+		}
+		return (T) tag;
+	}
+
+	/**
+	 * Compare the elements of two lists of numbers of the same type and size, without boxing them. Floating point
+	 * elements are compared by their bits, like {@link Double#equals(Object)} does.
+	 */
+	private boolean numbersEqual(ListTag<?> other) {
+		int size = size();
+		if (typeClass == DoubleTag.class) {
+			for (int i = 0; i < size; i++) {
+				if (Double.doubleToLongBits(getDouble(i)) != Double.doubleToLongBits(other.getDouble(i))) {
+					return false;
+				}
+			}
+		} else if (typeClass == FloatTag.class) {
+			for (int i = 0; i < size; i++) {
+				if (Float.floatToIntBits(getFloat(i)) != Float.floatToIntBits(other.getFloat(i))) {
+					return false;
+				}
+			}
+		} else {
+			for (int i = 0; i < size; i++) {
+				if (getLong(i) != other.getLong(i)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Calculate the same hash code as the boxed list of tags would have, without boxing the elements.
+	 */
+	private int numbersHashCode() {
+		int size = size();
+		int hash = 1;
+		for (int i = 0; i < size; i++) {
+			int elementHash;
+			if (typeClass == DoubleTag.class) {
+				elementHash = Double.hashCode(getDouble(i));
+			} else if (typeClass == FloatTag.class) {
+				elementHash = Float.hashCode(getFloat(i));
+			} else if (typeClass == LongTag.class) {
+				elementHash = Long.hashCode(getLong(i));
+			} else {
+				elementHash = getInt(i);
+			}
+			hash = 31 * hash + elementHash;
+		}
+		return hash;
+	}
+
+	private static long integralAt(Object values, int index) {
+		if (values instanceof long[]) {
+			return ((long[]) values)[index];
+		} else if (values instanceof int[]) {
+			return ((int[]) values)[index];
+		} else if (values instanceof short[]) {
+			return ((short[]) values)[index];
+		}
+		return ((byte[]) values)[index];
+	}
+
+	private static double floatingAt(Object values, int index) {
+		if (values instanceof double[]) {
+			return ((double[]) values)[index];
+		}
+		return ((float[]) values)[index];
+	}
+
 	/**
 	 * Check the type of the entries on this list tag.
 	 * @param clazz The expected type
@@ -557,4 +1052,37 @@ public class ListTag<T extends Tag<?>> extends Tag<List<T>> implements Iterable<
 					typeClass.getSimpleName(), clazz.getSimpleName()));
 		}
 	}
+
+	/**
+	 * A view of the primitive array of a list, which boxes the elements as they are read. Modifying the view boxes the
+	 * whole list, unless it is frozen.
+	 */
+	private final class PrimitiveView extends AbstractList<T> implements RandomAccess {
+
+		@Override
+		public T get(int index) {
+			return ListTag.this.get(index);
+		}
+
+		@Override
+		public T set(int index, T t) {
+			if (isFrozen()) {
+				throw new UnsupportedOperationException();
+			}
+			return ListTag.this.set(index, t);
+		}
+
+		@Override
+		public T remove(int index) {
+			if (isFrozen()) {
+				throw new UnsupportedOperationException();
+			}
+			return ListTag.this.remove(index);
+		}
+
+		@Override
+		public int size() {
+			return ListTag.this.size();
+		}
+	}
 }
@@ -1,6 +1,8 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.tag;
 
+import java.nio.Buffer;
+import java.nio.LongBuffer;
 import java.util.Arrays;
 
 /**
@@ -22,7 +24,7 @@ public class LongArrayTag extends ArrayTag<long[]> implements Comparable<LongArr
 	 * An empty long array tag.
 	 */
 	public LongArrayTag() {
-		super(ZERO_VALUE);
+		super(ZERO_VALUE, false);
 	}
 
 	/**
@@ -33,19 +35,76 @@ public class LongArrayTag extends ArrayTag<long[]> implements Comparable<LongArr
 		super(value);
 	}
 
+	/**
+	 * A long array tag backed by a buffer view, without copying it.
+	 * @param view The buffer whose remaining longs are the array
+	 */
+	public LongArrayTag(LongBuffer view) {
+		super(ZERO_VALUE, view.slice().asReadOnlyBuffer());
+	}
+
+	private LongArrayTag(long[] value, boolean handedOut) {
+		super(value, handedOut);
+	}
+
+	/**
+	 * Creates a long array tag that takes over an array nobody else holds, such as one allocated by a reader. Unlike
+	 * {@link #LongArrayTag(long[])}, the array is shared with clones and kept when frozen, without being copied, so it
+	 * must not be written to anymore.
+	 * @param value The inner array
+	 * @return The tag
+	 */
+	public static LongArrayTag wrap(long[] value) {
+		return new LongArrayTag(value, false);
+	}
+
 	@Override
 	public byte getID() {
 		return ID;
 	}
 
+	/**
+	 * Get a read-only buffer over the array, without copying it.
+	 * @return The buffer over the longs of this tag
+	 */
+	public LongBuffer asBuffer() {
+		LongBuffer view = (LongBuffer) getView();
+		return view != null ? view.duplicate() : LongBuffer.wrap(peekValue()).asReadOnlyBuffer();
+	}
+
+	@Override
+	protected long[] toArray(Buffer view) {
+		long[] value = new long[view.remaining()];
+		((LongBuffer) view).duplicate().get(value);
+		return value;
+	}
+
 	@Override
 	public boolean equals(Object other) {
-		return super.equals(other) && Arrays.equals(getValue(), ((LongArrayTag) other).getValue());
+		if (this == other) {
+			return true;
+		}
+		if (!super.equals(other) || hashesDiffer((Tag<?>) other)) {
+			return false;
+		}
+		if (getView() == null && ((LongArrayTag) other).getView() == null) {
+			return Arrays.equals(peekValue(), ((LongArrayTag) other).peekValue());
+		}
+		return asBuffer().equals(((LongArrayTag) other).asBuffer());
 	}
 
 	@Override
-	public int hashCode() {
-		return Arrays.hashCode(getValue());
+	protected int valueHashCode() {
+		if (getView() == null) {
+			return Arrays.hashCode(peekValue());
+		}
+		// same as Arrays.hashCode, without copying the view
+		LongBuffer buffer = asBuffer();
+		int hash = 1;
+		while (buffer.hasRemaining()) {
+			hash = 31 * hash + Long.hashCode(buffer.get());
+		}
+		return hash;
 	}
 
 	@Override
@@ -55,6 +114,14 @@ public class LongArrayTag extends ArrayTag<long[]> implements Comparable<LongArr
 
 	@Override
 	public LongArrayTag clone() {
-		return new LongArrayTag(Arrays.copyOf(getValue(), length()));
+		if (isFrozen()) {
+			return this;
+		}
+		if (getView() != null) {
+			// the view is read-only, so it can be shared
+			return new LongArrayTag((LongBuffer) getView());
+		}
+		// the array is only copied once it is handed out, by either tag
+		return shareWith(new LongArrayTag(peekValue(), false));
 	}
 }
@@ -57,6 +57,9 @@ public class LongTag extends NumberTag<Long> implements Comparable<LongTag> {
 
 	@Override
 	public LongTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new LongTag(getValue());
 	}
 }
@@ -50,4 +50,18 @@ public abstract class NumberTag<T extends Number & Comparable<T>> extends Tag<T>
 	public String valueToString(int maxDepth) {
 		return getValue().toString();
 	}
+
+	@Override
+	protected void valueToString(StringBuilder sb, int maxDepth) {
+		T value = getValue();
+		if (value instanceof Byte || value instanceof Short || value instanceof Integer || value instanceof Long) {
+			sb.append(value.longValue());
+		} else if (value instanceof Float) {
+			sb.append(value.floatValue());
+		} else if (value instanceof Double) {
+			sb.append(value.doubleValue());
+		} else {
+			sb.append(value);
+		}
+	}
 }
@@ -57,6 +57,9 @@ public class ShortTag extends NumberTag<Short> implements Comparable<ShortTag> {
 
 	@Override
 	public ShortTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new ShortTag(getValue());
 	}
 }
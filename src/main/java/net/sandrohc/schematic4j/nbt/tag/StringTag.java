@@ -51,6 +51,11 @@ public class StringTag extends Tag<String> implements Comparable<StringTag> {
 		return escapeString(getValue(), false);
 	}
 
+	@Override
+	protected void valueToString(StringBuilder sb, int maxDepth) {
+		escapeString(getValue(), false, sb);
+	}
+
 	@Override
 	public boolean equals(Object other) {
 		return super.equals(other) && getValue().equals(((StringTag) other).getValue());
@@ -63,6 +68,9 @@ public class StringTag extends Tag<String> implements Comparable<StringTag> {
 
 	@Override
 	public StringTag clone() {
+		if (isFrozen()) {
+			return this;
+		}
 		return new StringTag(getValue());
 	}
 }
@@ -1,12 +1,7 @@
 /* Vendored version of Quertz NBT 6.1 - https://github.com/Querz/NBT */
 package net.sandrohc.schematic4j.nbt.tag;
 
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import net.sandrohc.schematic4j.nbt.MaxDepthReachedException;
 
@@ -32,6 +27,13 @@ import net.sandrohc.schematic4j.nbt.MaxDepthReachedException;
  * is no guarantee that {@code MaxDepthReachedException}s are thrown for them. The respective class 
  * will document this behavior accordingly.</p>
  * 
+ * <h2>Freezing</h2>
+ * <p>{@link #freeze()} makes a tag and all the tags nested in it immutable: any attempt to modify them
+ * throws an {@code UnsupportedOperationException}. Frozen tags cache their hash code, and {@link #clone()}
+ * returns them as they are, so a frozen tree can be shared across threads without locking or copying, once
+ * it has been safely published, for example through a concurrent map. Frozen array tags return a copy of
+ * their array.</p>
+ * 
  * @param <T> The type of the contained value
  * */
 public abstract class Tag<T> implements Cloneable {
@@ -42,23 +44,29 @@ public abstract class Tag<T> implements Cloneable {
 	public static final int DEFAULT_MAX_DEPTH = 512;
 
 	/**
-	 * Map of characters and their escaped counterparts.
+	 * The character escaping each ASCII character, or {@code 0} if it is not escaped.
 	 */
-	private static final Map<String, String> ESCAPE_CHARACTERS;
+	private static final char[] ESCAPE_CHARACTERS = new char[128];
+
+	/**
+	 * Whether each ASCII character may appear in a string that is not quoted.
+	 */
+	private static final boolean[] NON_QUOTE_CHARACTERS = new boolean[128];
+
 	static {
-		final Map<String, String> temp = new HashMap<>();
-		temp.put("\\", "\\\\\\\\");
-		temp.put("\n", "\\\\n");
-		temp.put("\t", "\\\\t");
-		temp.put("\r", "\\\\r");
-		temp.put("\"", "\\\\\"");
-		ESCAPE_CHARACTERS = Collections.unmodifiableMap(temp);
+		ESCAPE_CHARACTERS['\\'] = '\\';
+		ESCAPE_CHARACTERS['\n'] = 'n';
+		ESCAPE_CHARACTERS['\t'] = 't';
+		ESCAPE_CHARACTERS['\r'] = 'r';
+		ESCAPE_CHARACTERS['"'] = '"';
+		for (char c = 0; c < NON_QUOTE_CHARACTERS.length; c++) {
+			NON_QUOTE_CHARACTERS[c] = c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_' || c == '-' || c == '+';
+		}
 	}
 
-	private static final Pattern ESCAPE_PATTERN = Pattern.compile("[\\\\\n\t\r\"]");
-	private static final Pattern NON_QUOTE_PATTERN = Pattern.compile("[a-zA-Z0-9_\\-+]+");
-
 	private T value;
+	private boolean frozen;
+	private int hash;
 
 	/**
 	 * Initializes this Tag with some value. If the value is {@code null}, it will
@@ -87,9 +95,61 @@ public abstract class Tag<T> implements Cloneable {
 	 * @throws NullPointerException If the value is null
 	 * */
 	protected void setValue(T value) {
+		checkMutable();
 		this.value = checkValue(value);
 	}
 
+	/**
+	 * Makes this Tag and all the tags nested in it immutable, with a nesting depth of at most
+	 * {@link Tag#DEFAULT_MAX_DEPTH}.
+	 * @return This Tag.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	public Tag<T> freeze() {
+		return freeze(DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Makes this Tag and all the tags nested in it immutable.
+	 * @param maxDepth The maximum nesting depth.
+	 * @return This Tag.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	public Tag<T> freeze(int maxDepth) {
+		if (!frozen) {
+			freezeValue(maxDepth);
+			frozen = true;
+		}
+		return this;
+	}
+
+	/**
+	 * @return Whether this Tag is immutable.
+	 * @see Tag#freeze()
+	 * */
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * Makes the value of this Tag immutable, right before the Tag is marked as frozen. Tags holding other
+	 * tags freeze them here.
+	 * @param maxDepth The maximum nesting depth.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	protected void freezeValue(int maxDepth) {
+	}
+
+	/**
+	 * Checks that this Tag can be modified.
+	 * @throws UnsupportedOperationException If this Tag is frozen.
+	 * */
+	protected void checkMutable() {
+		if (frozen) {
+			throw new UnsupportedOperationException("cannot modify a frozen " + getClass().getSimpleName());
+		}
+	}
+
 	/**
 	 * Checks if the value {@code value} is {@code null}.
 	 * @param value The value to check
@@ -117,8 +177,21 @@ public abstract class Tag<T> implements Cloneable {
 	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
 	 * */
 	public String toString(int maxDepth) {
-		return "{\"type\":\""+ getClass().getSimpleName() + "\"," +
-				"\"value\":" + valueToString(maxDepth) + "}";
+		StringBuilder sb = new StringBuilder();
+		toString(sb, maxDepth);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends the string representation of this Tag, as returned by {@link Tag#toString(int)}, to a builder.
+	 * @param sb The builder to append to.
+	 * @param maxDepth The maximum nesting depth.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	protected void toString(StringBuilder sb, int maxDepth) {
+		sb.append("{\"type\":\"").append(getClass().getSimpleName()).append("\",\"value\":");
+		valueToString(sb, maxDepth);
+		sb.append('}');
 	}
 
 	/**
@@ -138,6 +211,17 @@ public abstract class Tag<T> implements Cloneable {
 	 * */
 	public abstract String valueToString(int maxDepth);
 
+	/**
+	 * Appends the JSON representation of the value of this Tag, as returned by {@link Tag#valueToString(int)}, to a
+	 * builder. Tags holding other tags override this to append them to the same builder.
+	 * @param sb The builder to append to.
+	 * @param maxDepth The maximum nesting depth.
+	 * @throws MaxDepthReachedException If the maximum nesting depth is exceeded.
+	 * */
+	protected void valueToString(StringBuilder sb, int maxDepth) {
+		sb.append(valueToString(maxDepth));
+	}
+
 	/**
 	 * Returns whether this Tag and some other Tag are equal.
 	 * They are equal if {@code other} is not {@code null} and they are of the same class.
@@ -152,17 +236,44 @@ public abstract class Tag<T> implements Cloneable {
 	}
 
 	/**
-	 * Calculates the hash code of this Tag. Tags which are equal according to {@link Tag#equals(Object)}
-	 * must return an equal hash code.
+	 * Calculates the hash code of this Tag, which frozen tags only calculate once. Tags which are equal
+	 * according to {@link Tag#equals(Object)} must return an equal hash code.
 	 * @return The hash code of this Tag.
+	 * @see Tag#valueHashCode()
 	 * */
 	@Override
 	public int hashCode() {
+		if (!frozen) {
+			return valueHashCode();
+		}
+		int h = hash;
+		if (h == 0) {
+			// racy like String#hashCode, since every thread calculates the same value
+			hash = h = valueHashCode();
+		}
+		return h;
+	}
+
+	/**
+	 * Calculates the hash code of the value of this Tag.
+	 * @return The hash code of the value.
+	 * */
+	protected int valueHashCode() {
 		return value.hashCode();
 	}
 
 	/**
-	 * Creates a clone of this Tag.
+	 * Checks whether this Tag and another Tag are known to be different without comparing their values,
+	 * which is the case when both are frozen and their cached hash codes differ.
+	 * @param other The Tag to compare to.
+	 * @return {@code true} if they are different.
+	 * */
+	protected boolean hashesDiffer(Tag<?> other) {
+		return frozen && other.frozen && hashCode() != other.hashCode();
+	}
+
+	/**
+	 * Creates a clone of this Tag. Frozen tags are returned as they are.
 	 * @return A clone of this Tag.
 	 * */
 	public abstract Tag<T> clone();
@@ -176,16 +287,39 @@ public abstract class Tag<T> implements Cloneable {
 	 * @return The escaped string.
 	 * */
 	protected static String escapeString(String s, boolean lenient) {
-		StringBuffer sb = new StringBuffer();
-		Matcher m = ESCAPE_PATTERN.matcher(s);
-		while (m.find()) {
-			m.appendReplacement(sb, ESCAPE_CHARACTERS.get(m.group()));
+		StringBuilder sb = new StringBuilder(s.length() + 2);
+		escapeString(s, lenient, sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Appends an escaped string to a builder, as returned by {@link Tag#escapeString(String, boolean)}. Characters are
+	 * looked up in tables, and runs of characters that need no escaping are appended at once.
+	 * @param s The string to be escaped.
+	 * @param lenient {@code true} if the double quotes may be left out when the string does not need them.
+	 * @param sb The builder to append to.
+	 * */
+	protected static void escapeString(String s, boolean lenient, StringBuilder sb) {
+		int length = s.length();
+		boolean quote = !lenient || length == 0;
+		for (int i = 0; i < length && !quote; i++) {
+			char c = s.charAt(i);
+			quote = c >= NON_QUOTE_CHARACTERS.length || !NON_QUOTE_CHARACTERS[c];
 		}
-		m.appendTail(sb);
-		m = NON_QUOTE_PATTERN.matcher(s);
-		if (!lenient || !m.matches()) {
-			sb.insert(0, "\"").append("\"");
+		if (quote) {
+			sb.append('"');
+		}
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < ESCAPE_CHARACTERS.length && ESCAPE_CHARACTERS[c] != 0) {
+				sb.append(s, start, i).append('\\').append(ESCAPE_CHARACTERS[c]);
+				start = i + 1;
+			}
+		}
+		sb.append(s, start, length);
+		if (quote) {
+			sb.append('"');
 		}
-		return sb.toString();
 	}
 }
@@ -28,7 +28,7 @@ import net.sandrohc.schematic4j.schematic.types.SchematicEntity;
 
 import static java.util.stream.Collectors.toMap;
 import static net.sandrohc.schematic4j.utils.DateUtils.epochToDate;
-import static net.sandrohc.schematic4j.utils.TagUtils.getByteArray;
+import static net.sandrohc.schematic4j.utils.TagUtils.getByteBuffer;
 import static net.sandrohc.schematic4j.utils.TagUtils.getCompound;
 import static net.sandrohc.schematic4j.utils.TagUtils.getCompoundList;
 import static net.sandrohc.schematic4j.utils.TagUtils.getInt;
@@ -192,22 +192,22 @@ public class SpongeParser implements Parser {
 		});
 
 		// Load the block data
-		getByteArray(blocksTag, schematic.version >= 3 ? NBT_V3_DATA : NBT_BLOCK_DATA).ifPresent(blockDataRaw -> {
+		getByteBuffer(blocksTag, schematic.version >= 3 ? NBT_V3_DATA : NBT_BLOCK_DATA).ifPresent(blockDataRaw -> {
 			int[] blockData = new int[schematic.width * schematic.height * schematic.length];
 
 			// --- Uses code from https://github.com/SpongePowered/Sponge/blob/aa2c8c53b4f9f40297e6a4ee281bee4f4ce7707b/src/main/java/org/spongepowered/common/data/persistence/SchematicTranslator.java#L147-L175
 			int index = 0;
 			int i = 0;
-			while (i < blockDataRaw.length) {
+			while (i < blockDataRaw.limit()) {
 				int value = 0;
 				int varintLength = 0;
 				while (true) {
-					value |= (blockDataRaw[i] & 127) << (varintLength++ * 7);
+					value |= (blockDataRaw.get(i) & 127) << (varintLength++ * 7);
 					if (varintLength > 5) {
 						log.warn("VarInt for block index is too big; probably corrupted data");
 						continue;
 					}
-					if ((blockDataRaw[i] & 128) != 128) {
+					if ((blockDataRaw.get(i) & 128) != 128) {
 						i++;
 						break;
 					}
@@ -333,7 +333,7 @@ public class SpongeParser implements Parser {
 		});
 
 		// Load the biome data
-		getByteArray(biomesTag, version >= 3 ? NBT_V3_DATA : NBT_BIOME_DATA).ifPresent(biomeDataRaw -> {
+		getByteBuffer(biomesTag, version >= 3 ? NBT_V3_DATA : NBT_BIOME_DATA).ifPresent(biomeDataRaw -> {
 			final int biomeWidth = schematic.width;
 			final int biomeHeight = version >= 3 ? schematic.height : 1;
 			final int biomeLength = schematic.length;
@@ -342,16 +342,16 @@ public class SpongeParser implements Parser {
 
 			int index = 0;
 			int i = 0;
-			while (i < biomeDataRaw.length) {
+			while (i < biomeDataRaw.limit()) {
 				int value = 0;
 				int varintLength = 0;
 				while (true) {
-					value |= (biomeDataRaw[i] & 127) << (varintLength++ * 7);
+					value |= (biomeDataRaw.get(i) & 127) << (varintLength++ * 7);
 					if (varintLength > 5) {
 						log.warn("VarInt for biome index is too big; probably corrupted data");
 						continue;
 					}
-					if ((biomeDataRaw[i] & 128) != 128) {
+					if ((biomeDataRaw.get(i) & 128) != 128) {
 						i++;
 						break;
 					}
@@ -5,7 +5,6 @@ import java.util.Comparator;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
-import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
 import net.sandrohc.schematic4j.nbt.tag.ListTag;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
 
@@ -51,15 +50,14 @@ public class SchematicEntityPos implements Comparable<SchematicEntityPos> {
 		return from(pos[0], pos[1], pos[2]);
 	}
 
-	@SuppressWarnings("unchecked")
 	public static @Nullable SchematicEntityPos from(Tag<?> nbtTag) {
 		if (!(nbtTag instanceof ListTag<?>)) {
 			return null;
 		}
-		final ListTag<DoubleTag> nbt = ((ListTag<DoubleTag>) nbtTag);
-		final double x = nbt.get(0).asDouble();
-		final double y = nbt.get(1).asDouble();
-		final double z = nbt.get(2).asDouble();
+		final ListTag<?> nbt = (ListTag<?>) nbtTag;
+		final double x = nbt.getDouble(0);
+		final double y = nbt.getDouble(1);
+		final double z = nbt.getDouble(2);
 		return new SchematicEntityPos(x, y, z);
 	}
 
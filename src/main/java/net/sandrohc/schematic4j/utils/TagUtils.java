@@ -1,5 +1,6 @@
 package net.sandrohc.schematic4j.utils;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -111,6 +112,10 @@ public class TagUtils {
 		return Optional.ofNullable(tag.getByteArrayTag(key)).map(ByteArrayTag::getValue);
 	}
 
+	public static Optional<ByteBuffer> getByteBuffer(CompoundTag tag, String key) {
+		return Optional.ofNullable(tag.getByteArrayTag(key)).map(ByteArrayTag::asBuffer);
+	}
+
 	public static Optional<long[]> getLongArray(CompoundTag tag, String key) {
 		return Optional.ofNullable(tag.getLongArrayTag(key)).map(LongArrayTag::getValue);
 	}
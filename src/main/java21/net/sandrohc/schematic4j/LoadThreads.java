@@ -0,0 +1,33 @@
+package net.sandrohc.schematic4j;
+
+import java.nio.file.Path;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+
+import net.sandrohc.schematic4j.schematic.Schematic;
+
+/**
+ * Runs the phases of loading a file, reading and decoding it, on the threads suited to each.
+ * <p>
+ * The file is read on a virtual thread, as {@link SchematicLoader#loadAsync(Path, Executor)} does on Java 21, so the
+ * pool is only busy decoding it. Reading many files at once then takes no platform threads.
+ *
+ * @see BatchLoader
+ */
+final class LoadThreads {
+
+	private LoadThreads() {}
+
+	/**
+	 * Load a schematic from a file, and hand over the outcome.
+	 *
+	 * @param path The file to load the schematic from
+	 * @param pool The pool to decode the schematic on
+	 * @param done Called once with either the schematic or the error, on the thread which finished the load
+	 */
+	static void load(@NonNull Path path, @NonNull Executor pool, @NonNull BiConsumer<Schematic, Throwable> done) {
+		SchematicLoader.loadAsync(path, pool).whenComplete(done);
+	}
+}
@@ -0,0 +1,53 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reads a whole file on a virtual thread, so that no platform thread blocks on the disk.
+ * <p>
+ * Cancelling the future interrupts the read.
+ */
+final class AsyncFileReader {
+
+	private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+	private AsyncFileReader() {}
+
+	/**
+	 * Read the contents of a file.
+	 *
+	 * @param path The file to read
+	 * @return The future contents of the file
+	 */
+	static CompletableFuture<byte[]> read(Path path) {
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+		try {
+			Future<?> task = VIRTUAL_THREADS.submit(() -> {
+				try {
+					long size = Files.size(path);
+					if (size > Integer.MAX_VALUE - 8) {
+						throw new IOException("file is too large to be read: " + size + " bytes");
+					}
+					future.complete(Files.readAllBytes(path));
+				} catch (Throwable e) {
+					future.completeExceptionally(e);
+				}
+			});
+			future.whenComplete((contents, e) -> {
+				if (future.isCancelled()) {
+					task.cancel(true);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+}
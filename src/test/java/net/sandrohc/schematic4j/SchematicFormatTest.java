@@ -1,14 +1,25 @@
 package net.sandrohc.schematic4j;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import net.sandrohc.schematic4j.exception.NoParserFoundException;
 import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.parser.Parser;
 
 import static net.sandrohc.schematic4j.parser.TestUtils.nbtFromResource;
+import static net.sandrohc.schematic4j.parser.TestUtils.readResource;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class SchematicFormatTest {
@@ -21,6 +32,17 @@ public class SchematicFormatTest {
 		assertThat(actual).isEqualTo(expected);
 	}
 
+	@ParameterizedTest
+	@MethodSource("guessFormatData")
+	void sniff(SchematicFormat expected, String file) throws IOException {
+		final SchematicFormat.Guess actual;
+		try (InputStream is = readResource(file)) {
+			actual = SchematicFormat.sniff(is);
+		}
+		assertThat(actual.format).isEqualTo(expected);
+		assertThat(actual.score).isGreaterThan(0);
+	}
+
 	private static Stream<Arguments> guessFormatData() {
 		return Stream.of(
 				Arguments.of(SchematicFormat.SPONGE_V1, "/schematics/sponge/v1/sponge-v1.schem"),
@@ -37,4 +59,52 @@ public class SchematicFormatTest {
 				Arguments.of(SchematicFormat.SCHEMATICA, "/schematics/schematica/12727.schematic")
 		);
 	}
+
+	@Test
+	void registry() {
+		final List<SchematicFormatProvider> providers = SchematicFormatRegistry.providers();
+		assertThat(providers.get(0)).isEqualTo(SchematicFormat.SPONGE_V1);
+		assertThat(providers.get(providers.size() - 1)).isInstanceOf(TestFormatProvider.class);
+
+		final CompoundTag nbt = new CompoundTag();
+		nbt.putInt(TestFormatProvider.KEY, 1);
+		nbt.putShort("Width", (short) 1);
+		final SchematicFormat.Guess guess = SchematicFormatRegistry.guess(nbt);
+		assertThat(guess.format).isInstanceOf(TestFormatProvider.class);
+		assertThat(guess.score).isEqualTo(20);
+		assertThat(SchematicFormat.guessFormat(nbt)).isEqualTo(SchematicFormat.UNKNOWN);
+
+		// the built-in formats still win without the required key
+		nbt.remove(TestFormatProvider.KEY);
+		nbt.putInt("Version", 2);
+		nbt.putInt("DataVersion", 3465);
+		assertThat(SchematicFormat.guessFormat(nbt)).isEqualTo(SchematicFormat.SPONGE_V2);
+	}
+
+	/**
+	 * Registered through {@code META-INF/services}.
+	 */
+	public static class TestFormatProvider implements SchematicFormatProvider {
+		static final String KEY = "TestFormat";
+
+		@Override
+		public @NonNull String name() {
+			return "TEST";
+		}
+
+		@Override
+		public @NonNull Parser createParser() throws NoParserFoundException {
+			throw new NoParserFoundException();
+		}
+
+		@Override
+		public @NonNull Map<String, Integer> keyWeights() {
+			return Collections.singletonMap(KEY, 20);
+		}
+
+		@Override
+		public @NonNull Set<String> requiredKeys() {
+			return Collections.singleton(KEY);
+		}
+	}
 }
@@ -0,0 +1,135 @@
+package net.sandrohc.schematic4j;
+
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class SchematicLoaderTest {
+
+	private static final String[] FILES = {
+			"/schematics/sponge/v1/sponge-v1.schem",
+			"/schematics/sponge/v2/issue-1.schem",
+			"/schematics/sponge/v3/sponge-v3.schem",
+			"/schematics/litematica/v5/simple.litematic",
+			"/schematics/schematica/9383.schematic",
+	};
+
+	@Test
+	void loadAll() throws URISyntaxException {
+		final List<Path> paths = resources();
+		final Path missing = Paths.get("missing.schem");
+		paths.add(missing);
+
+		final List<BatchResult> results;
+		try (Stream<BatchResult> stream = SchematicLoader.loadAll(paths, BatchOptions.defaults().withParallelism(2))) {
+			results = stream.collect(Collectors.toList());
+		}
+
+		assertThat(results).hasSize(paths.size());
+		for (BatchResult result : results) {
+			if (result.path.equals(missing)) {
+				assertThat(result.isSuccess()).isFalse();
+				assertThat(result.error).isNotNull();
+			} else {
+				assertThat(result.isSuccess()).isTrue();
+				assertThat(result.schematic).isNotNull();
+			}
+		}
+	}
+
+	@Test
+	void loadAll_budget() throws URISyntaxException {
+		// every file exceeds the budget, so they are loaded one at a time, on the pool of the caller
+		final List<Path> paths = resources();
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final BatchOptions options = BatchOptions.defaults().withPool(pool).withMaxInFlightBytes(1);
+			try (Stream<BatchResult> stream = SchematicLoader.loadAll(paths, options)) {
+				final List<Path> loaded = stream.filter(BatchResult::isSuccess).map(result -> result.path)
+						.collect(Collectors.toList());
+				assertThat(loaded).isEqualTo(paths);
+			}
+			assertThat(pool.isShutdown()).isFalse();
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void loadAll_slowConsumer() throws Exception {
+		// the results not taken yet count against the budget, so a slow consumer holds back the other files
+		final List<Path> paths = resources();
+		final AtomicInteger started = new AtomicInteger();
+		final CountDownLatch firstLoaded = new CountDownLatch(1);
+		final ForkJoinPool pool = new ForkJoinPool(4) {
+			@Override
+			public void execute(Runnable task) {
+				started.incrementAndGet();
+				super.execute(() -> {
+					try {
+						task.run();
+					} finally {
+						// the loader starts the files that fit on this thread, before the task ends
+						firstLoaded.countDown();
+					}
+				});
+			}
+		};
+		try {
+			final BatchOptions options = BatchOptions.defaults().withPool(pool).withMaxInFlightBytes(1);
+			try (Stream<BatchResult> stream = SchematicLoader.loadAll(paths, options)) {
+				final Iterator<BatchResult> results = stream.iterator();
+				assertThat(firstLoaded.await(30, TimeUnit.SECONDS)).isTrue();
+				assertThat(started.get()).isLessThanOrEqualTo(1);
+
+				int taken = 0;
+				while (results.hasNext()) {
+					assertThat(results.next().isSuccess()).isTrue();
+					taken++;
+				}
+				assertThat(taken).isEqualTo(paths.size());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void batchOptions_invalid() {
+		try {
+			BatchOptions.defaults().withMaxInFlightBytes(0);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage()).contains("max in-flight bytes");
+		}
+		try {
+			BatchOptions.defaults().withExpansion(Double.NaN);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			assertThat(e.getMessage()).contains("expansion");
+		}
+	}
+
+	private static List<Path> resources() throws URISyntaxException {
+		final List<Path> paths = new ArrayList<>();
+		for (String file : Arrays.asList(FILES)) {
+			paths.add(Paths.get(SchematicLoaderTest.class.getResource(file).toURI()));
+		}
+		return paths;
+	}
+}
@@ -3,12 +3,36 @@ package net.sandrohc.schematic4j.nbt.io;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import org.junit.jupiter.api.Test;
 
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
 import net.sandrohc.schematic4j.nbt.tag.StringTag;
 import net.sandrohc.schematic4j.nbt.tag.Tag;
 
@@ -19,6 +43,24 @@ public class NBTUtilTest {
 
 	public static final StringTag TAG = new StringTag("TEST");
 
+	/**
+	 * Create the tag holding large arrays, anew for each test since handing out its arrays changes how it is cloned and
+	 * frozen.
+	 */
+	protected static CompoundTag newArraysTag() {
+		// larger than the decoder window, so the arrays are decoded across several refills
+		int[] ints = new int[10_001];
+		long[] longs = new long[10_001];
+		for (int i = 0; i < ints.length; i++) {
+			ints[i] = i * 0x01020304;
+			longs[i] = i * 0x0102030405060708L;
+		}
+		CompoundTag arrays = new CompoundTag();
+		arrays.put("Ints", new IntArrayTag(ints));
+		arrays.put("Longs", new LongArrayTag(longs));
+		return arrays;
+	}
+
 	public static final boolean DEFAULT_COMPRESSED = true;
 	public static final boolean DEFAULT_LITTLE_ENDIAN = false;
 
@@ -128,4 +170,638 @@ public class NBTUtilTest {
 
 		assertThat(tag.getTag()).isEqualTo(TAG);
 	}
+
+	@Test
+	public void testReader_arraysLittleEndian() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final boolean littleEndian = true;
+		final InputStream is = new ByteArrayInputStream(serialize(arrays, DEFAULT_COMPRESSED, littleEndian));
+
+		final NamedTag tag = NBTUtil.Reader.read().littleEndian().from(is);
+
+		assertThat(tag.getTag()).isEqualTo(arrays);
+	}
+
+	@Test
+	public void testReader_arraysBigEndian() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final boolean littleEndian = false;
+		final InputStream is = new ByteArrayInputStream(serialize(arrays, DEFAULT_COMPRESSED, littleEndian));
+
+		final NamedTag tag = NBTUtil.Reader.read().bigEndian().from(is);
+
+		assertThat(tag.getTag()).isEqualTo(arrays);
+	}
+
+	@Test
+	public void testWriter_arraysBigEndian() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		try (DataOutputStream dos = new DataOutputStream(expected)) {
+			dos.writeInt(10_001);
+			for (long l : ((LongArrayTag) arrays.get("Longs")).getValue()) {
+				dos.writeLong(l);
+			}
+		}
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+		new NBTOutputStream(os).writeRawTag(arrays.get("Longs"), Tag.DEFAULT_MAX_DEPTH);
+
+		assertThat(os.toByteArray()).isEqualTo(expected.toByteArray());
+	}
+
+	@Test
+	public void testWriter_streamSize() throws IOException {
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		final NBTOutputStream nbtOut = new NBTOutputStream(os);
+
+		nbtOut.writeInt(42);
+		nbtOut.writeTag(new NamedTag("Schematic", newArraysTag()), Tag.DEFAULT_MAX_DEPTH);
+		nbtOut.writeRawTag(new IntTag(7), Tag.DEFAULT_MAX_DEPTH);
+
+		assertThat(nbtOut.size()).isEqualTo(os.toByteArray().length);
+	}
+
+	@Test
+	public void testReader_mapped() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final Path path = Files.createTempFile("schematic4j", ".nbt");
+		try {
+			NBTUtil.Writer.write(arrays).compressed(false).to(path);
+
+			final NamedTag tag = NBTUtil.Reader.read().mapped().from(path);
+
+			assertThat(tag.getTag()).isEqualTo(arrays);
+			assertThat(((CompoundTag) tag.getTag()).getLongArrayTag("Longs").asBuffer().isReadOnly()).isTrue();
+			assertThat(((CompoundTag) tag.getTag()).getLongArrayTag("Longs").asBuffer().isDirect()).isTrue();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void testReader_mappedCompressed() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final Path path = Files.createTempFile("schematic4j", ".nbt");
+		try {
+			NBTUtil.Writer.write(arrays).compressed(true).to(path);
+
+			final NamedTag tag = NBTUtil.Reader.read().mapped().from(path);
+
+			assertThat(tag.getTag()).isEqualTo(arrays);
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void testReader_zlib() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (OutputStream os = new DeflaterOutputStream(baos)) {
+			os.write(serialize(arrays, false, DEFAULT_LITTLE_ENDIAN));
+		}
+
+		final NamedTag tag = NBTUtil.Reader.read().from(new ByteArrayInputStream(baos.toByteArray()));
+
+		assertThat(tag.getTag()).isEqualTo(arrays);
+	}
+
+	@Test
+	public void testReader_gzipMembers() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final byte[] serialized = serialize(arrays, false, DEFAULT_LITTLE_ENDIAN);
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		// split the payload across two gzip members, like concatenated files are
+		for (int[] range : new int[][]{{0, 1000}, {1000, serialized.length}}) {
+			final GZIPOutputStream gzip = new GZIPOutputStream(baos);
+			gzip.write(serialized, range[0], range[1] - range[0]);
+			gzip.finish();
+		}
+
+		final NamedTag tag = NBTUtil.Reader.read().bufferSize(8).from(new ByteArrayInputStream(baos.toByteArray()));
+
+		assertThat(tag.getTag()).isEqualTo(arrays);
+	}
+
+	@Test
+	public void testReader_pool() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final NBTResourcePool pool = NBTResourcePool.threadLocal();
+		final byte[] compressed = serialize(arrays, true, DEFAULT_LITTLE_ENDIAN);
+
+		for (int i = 0; i < 3; i++) {
+			final NamedTag tag = NBTUtil.Reader.read().pool(pool).from(compressed);
+			assertThat(tag.getTag()).isEqualTo(arrays);
+		}
+
+		// the inflater and both buffers are allocated by the first read, and reused by the following ones
+		assertThat(pool.getMisses()).isEqualTo(3L);
+		assertThat(pool.getHits()).isEqualTo(6L);
+	}
+
+	@Test
+	public void testWriter_pool() throws IOException {
+		assertWriterReusesPool(NBTResourcePool.bounded(3));
+	}
+
+	@Test
+	public void testWriter_threadLocalPool() throws IOException {
+		// the most recently released buffer is reused first, which is the encoder buffer
+		assertWriterReusesPool(NBTResourcePool.threadLocal());
+	}
+
+	private static void assertWriterReusesPool(NBTResourcePool pool) throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		for (int i = 0; i < 3; i++) {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			NBTUtil.Writer.write(arrays).pool(pool).to(baos);
+
+			// the GZIP stream is complete, trailer included
+			final ByteArrayOutputStream uncompressed = new ByteArrayOutputStream();
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+				final byte[] buffer = new byte[8192];
+				for (int read; (read = is.read(buffer)) >= 0; ) {
+					uncompressed.write(buffer, 0, read);
+				}
+			}
+			assertThat(uncompressed.toByteArray()).isEqualTo(serialize(arrays, false, DEFAULT_LITTLE_ENDIAN));
+		}
+
+		// the deflater, both compression buffers and the encoder buffer are allocated by the first write
+		assertThat(pool.getMisses()).isEqualTo(4L);
+		assertThat(pool.getHits()).isEqualTo(8L);
+	}
+
+	@Test
+	public void testWriter_parallel() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final byte[] uncompressed = serialize(arrays, false, DEFAULT_LITTLE_ENDIAN);
+
+		// small blocks, so the payload is split across many of them
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (ParallelCompressingOutputStream os = new ParallelCompressingOutputStream(baos, 6, 1024, pool, NBTResourcePool.unpooled())) {
+				os.write(uncompressed, 0, 1000);
+				os.flush();
+				os.write(uncompressed, 1000, uncompressed.length - 1000);
+			}
+
+			final ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+				final byte[] buffer = new byte[8192];
+				for (int read; (read = is.read(buffer)) >= 0; ) {
+					decompressed.write(buffer, 0, read);
+				}
+			}
+			assertThat(decompressed.toByteArray()).isEqualTo(uncompressed);
+		} finally {
+			pool.shutdown();
+		}
+
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		NBTUtil.Writer.write(arrays).level(9).parallel(2).to(os);
+
+		final NamedTag tag = NBTUtil.Reader.read().from(new ByteArrayInputStream(os.toByteArray()));
+		assertThat(tag.getTag()).isEqualTo(arrays);
+
+		try {
+			NBTUtil.Writer.write(arrays).level(10);
+			fail("did not check the compression level");
+		} catch (IllegalArgumentException ignored) {
+		}
+	}
+
+	@Test
+	public void testReader_fromAsync() throws Exception {
+		final CompoundTag arrays = newArraysTag();
+		final Path path = Files.createTempFile("schematic4j", ".nbt");
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			NBTUtil.Writer.write(arrays).to(path);
+
+			final NamedTag tag = NBTUtil.Reader.read().fromAsync(path, executor).get(10, TimeUnit.SECONDS);
+
+			assertThat(tag.getTag()).isEqualTo(arrays);
+		} finally {
+			executor.shutdown();
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void testReader_fromAsyncCancelled() throws Exception {
+		final CompoundTag arrays = newArraysTag();
+		final Path path = Files.createTempFile("schematic4j", ".nbt");
+		final List<Runnable> tasks = new CopyOnWriteArrayList<>();
+		try {
+			NBTUtil.Writer.write(arrays).to(path);
+
+			final CompletableFuture<NamedTag> future = NBTUtil.Reader.read().fromAsync(path, tasks::add);
+			future.cancel(true);
+
+			assertThat(future.isCancelled()).isTrue();
+			// a decode already scheduled returns without completing the future
+			for (Runnable task : tasks) {
+				task.run();
+			}
+			assertThat(future.isCancelled()).isTrue();
+		} finally {
+			Files.deleteIfExists(path);
+		}
+	}
+
+	@Test
+	public void testReader_limits() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final byte[] serialized = serialize(arrays, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN);
+		final long[] allocated = new long[1];
+
+		final NamedTag tag = NBTUtil.Reader.read().allocationListener(bytes -> allocated[0] = bytes).from(serialized);
+		assertThat(tag.getTag()).isEqualTo(arrays);
+		assertThat(allocated[0]).isGreaterThan(10_001L * (Integer.BYTES + Long.BYTES));
+
+		try {
+			NBTUtil.Reader.read().limits(ReadLimits.unlimited().withMaxArrayLength(10_000)).from(serialized);
+			fail("did not check array length");
+		} catch (ReadLimitExceededException ignored) {
+		}
+
+		try {
+			NBTUtil.Reader.read().limits(ReadLimits.unlimited().withMaxBytes(50_000)).from(serialized);
+			fail("did not check byte budget");
+		} catch (ReadLimitExceededException e) {
+			assertThat(e.getBytesAllocated()).isLessThanOrEqualTo(50_000L);
+		}
+
+		// decoding in parallel decompresses the payload into memory first, which must not grow past the budget
+		final CompoundTag large = new CompoundTag();
+		large.putByteArray("Blocks", new byte[4 << 20]);
+		final ByteArrayInputStream stream = new ByteArrayInputStream(serialize(large, false, DEFAULT_LITTLE_ENDIAN));
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			NBTUtil.Reader.read().parallel(pool).limits(ReadLimits.unlimited().withMaxBytes(1 << 20)).from(stream);
+			fail("did not check byte budget in parallel");
+		} catch (ReadLimitExceededException e) {
+			assertThat(e.getBytesAllocated()).isLessThanOrEqualTo((1 << 20) + 1L);
+			assertThat(stream.available()).isGreaterThan(2 << 20);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testReader_limitsParallel() throws IOException {
+		// the payload and the array each fit in the budget, but not both
+		final CompoundTag root = new CompoundTag();
+		root.putByteArray("Blocks", new byte[1 << 20]);
+		final byte[] serialized = serialize(root, false, DEFAULT_LITTLE_ENDIAN);
+		final ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			final long[] allocated = new long[1];
+			NBTUtil.Reader.read().parallel(pool).allocationListener(bytes -> allocated[0] = bytes)
+					.from(new ByteArrayInputStream(serialized));
+			assertThat(allocated[0]).isGreaterThan(serialized.length + (1L << 20));
+
+			try {
+				NBTUtil.Reader.read().parallel(pool).limits(ReadLimits.unlimited().withMaxBytes(3 << 19))
+						.from(new ByteArrayInputStream(serialized));
+				fail("did not count the buffered payload towards the byte budget");
+			} catch (ReadLimitExceededException e) {
+				assertThat(e.getBytesAllocated()).isGreaterThanOrEqualTo(serialized.length);
+				assertThat(e.getBytesAllocated()).isLessThanOrEqualTo(3 << 19);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testReader_limitsListLength() throws IOException {
+		// a list declaring 2^31 - 1 end tags, which take no bytes to encode
+		final byte[] serialized = {ListTag.ID, 0, 0, 0, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+
+		try {
+			NBTUtil.Reader.read().limits(ReadLimits.unlimited().withMaxElements(1_000_000)).from(serialized);
+			fail("did not check list length");
+		} catch (ReadLimitExceededException ignored) {
+		}
+	}
+
+	@Test
+	public void testReader_numberListTruncated() throws IOException {
+		// a list declaring 2^31 - 1 ints, with none of them in the input
+		final byte[] serialized = {ListTag.ID, 0, 0, IntTag.ID, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+
+		try {
+			NBTUtil.Reader.read().from(serialized);
+			fail("did not stop at the end of the stream");
+		} catch (EOFException ignored) {
+		}
+		try {
+			new NBTDecoder(ByteBuffer.wrap(serialized)).readTag(Tag.DEFAULT_MAX_DEPTH);
+			fail("did not stop at the end of the buffer");
+		} catch (EOFException ignored) {
+		}
+
+		// lists longer than a chunk are still read whole from a stream
+		final int[] values = new int[20_000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i * 31;
+		}
+		final CompoundTag root = new CompoundTag();
+		root.put("Ints", ListTag.ofInts(values));
+		final CompoundTag read = (CompoundTag) NBTUtil.Reader.read()
+				.from(new ByteArrayInputStream(serialize(root, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN))).getTag();
+		assertThat(read).isEqualTo(root);
+	}
+
+	@Test
+	public void testReader_numberLists() throws IOException {
+		final ListTag<DoubleTag> boxed = new ListTag<>(DoubleTag.class);
+		boxed.addDouble(1.5);
+		boxed.addDouble(-0.0);
+		boxed.addDouble(Double.NaN);
+		final CompoundTag root = new CompoundTag();
+		root.put("Pos", boxed);
+		root.put("Rotation", ListTag.ofFloats(90f, -45f));
+		root.put("Ints", ListTag.ofInts(1, -2, Integer.MAX_VALUE));
+
+		for (boolean littleEndian : new boolean[]{false, true}) {
+			final byte[] serialized = serialize(root, DEFAULT_COMPRESSED, littleEndian);
+			final NBTUtil.Reader reader = NBTUtil.Reader.read();
+			if (littleEndian) {
+				reader.littleEndian();
+			}
+			final CompoundTag read = (CompoundTag) reader.from(serialized).getTag();
+			assertThat(read).isEqualTo(root);
+			assertThat(read.hashCode()).isEqualTo(root.hashCode());
+			assertThat(read.getListTag("Pos").getDouble(0)).isEqualTo(1.5);
+			assertThat(read.getListTag("Ints").getLong(2)).isEqualTo(Integer.MAX_VALUE);
+		}
+	}
+
+	@Test
+	public void testWriter_numberListElements() throws IOException {
+		// elements modified through their tags are written, without boxing the whole list
+		final ListTag<IntTag> ints = ListTag.ofInts(1, 2, 3);
+		ints.get(0).setValue(5);
+		final CompoundTag root = new CompoundTag();
+		root.put("Ints", ints);
+
+		final CompoundTag read = (CompoundTag) NBTUtil.Reader.read()
+				.from(serialize(root, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN)).getTag();
+
+		assertThat(read.getListTag("Ints").getInt(0)).isEqualTo(5);
+		assertThat(read).isEqualTo(root);
+	}
+
+	@Test
+	public void testReader_compounds() throws IOException {
+		// small compounds are read into arrays, and larger ones into a hash map
+		for (int size = 1; size <= 12; size++) {
+			final CompoundTag compound = new CompoundTag();
+			for (int i = 0; i < size; i++) {
+				compound.putInt("Key" + i, i);
+			}
+			final byte[] serialized = serialize(compound, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN);
+
+			final CompoundTag read = (CompoundTag) NBTUtil.Reader.read().from(serialized).getTag();
+
+			assertThat(read).isEqualTo(compound);
+			assertThat(read.hashCode()).isEqualTo(compound.hashCode());
+		}
+	}
+
+	@Test
+	public void testReader_freeze() throws IOException {
+		final CompoundTag root = new CompoundTag();
+		root.put("Arrays", newArraysTag());
+		root.put("Pos", ListTag.ofDoubles(1.5, 2.5, 3.5));
+		final byte[] serialized = serialize(root, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN);
+
+		// the arrays allocated by the reader are kept when frozen, and still copied when handed out
+		final CompoundTag frozen = ((CompoundTag) NBTUtil.Reader.read().from(serialized).getTag()).freeze();
+		assertThat(frozen).isEqualTo(root);
+		assertThat(frozen.hashCode()).isEqualTo(root.hashCode());
+		frozen.getCompoundTag("Arrays").getLongArray("Longs")[1] = 7;
+		assertThat(frozen.getCompoundTag("Arrays").getLongArray("Longs")[1]).isEqualTo(root.getCompoundTag("Arrays").getLongArray("Longs")[1]);
+		assertThat(frozen.getListTag("Pos").getDouble(1)).isEqualTo(2.5);
+	}
+
+	@Test
+	public void testReader_parallel() throws IOException {
+		// large enough for the arrays and the list to be split between threads
+		final ListTag<CompoundTag> entities = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 10_000; i++) {
+			final CompoundTag entity = new CompoundTag();
+			entity.putString("id", "minecraft:pig");
+			entity.putIntArray("Pos", new int[]{i, i + 1, i + 2});
+			entities.add(i % 5_000 == 0 ? newArraysTag() : entity);
+		}
+		final CompoundTag root = new CompoundTag();
+		root.put("Arrays", newArraysTag());
+		root.put("Entities", entities);
+		final ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (boolean littleEndian : new boolean[]{false, true}) {
+				for (boolean compressed : new boolean[]{false, true}) {
+					final byte[] serialized = serialize(root, compressed, littleEndian);
+					final NBTUtil.Reader reader = NBTUtil.Reader.read().parallel(pool);
+					if (littleEndian) {
+						reader.littleEndian();
+					}
+
+					final NamedTag tag = reader.from(serialized);
+
+					assertThat(tag.getTag()).isEqualTo(root);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testReader_only() throws IOException {
+		final CompoundTag region = new CompoundTag();
+		region.putInt("Size", 3);
+		region.put("BlockStates", newArraysTag().get("Longs"));
+		final CompoundTag regions = new CompoundTag();
+		regions.put("First", region);
+		regions.put("Second", region.clone());
+		final ListTag<CompoundTag> entities = new ListTag<>(CompoundTag.class);
+		entities.add(newArraysTag());
+		final CompoundTag root = new CompoundTag();
+		root.putString("Name", "test");
+		root.put("Regions", regions);
+		root.put("Entities", entities);
+		root.put("Arrays", newArraysTag());
+		final InputStream is = new ByteArrayInputStream(serialize(root, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN));
+
+		final NamedTag tag = NBTUtil.Reader.read().only("Name", "Regions/*/Size", "Regions/First/Missing", "Entities/*/Ints").from(is);
+
+		final CompoundTag expectedRegion = new CompoundTag();
+		expectedRegion.putInt("Size", 3);
+		final CompoundTag expectedRegions = new CompoundTag();
+		expectedRegions.put("First", expectedRegion);
+		expectedRegions.put("Second", expectedRegion.clone());
+		final CompoundTag expectedEntity = new CompoundTag();
+		expectedEntity.put("Ints", newArraysTag().get("Ints"));
+		final ListTag<CompoundTag> expectedEntities = new ListTag<>(CompoundTag.class);
+		expectedEntities.add(expectedEntity);
+		final CompoundTag expected = new CompoundTag();
+		expected.putString("Name", "test");
+		expected.put("Regions", expectedRegions);
+		expected.put("Entities", expectedEntities);
+		assertThat(tag.getTag()).isEqualTo(expected);
+	}
+
+	@Test
+	public void testReader_visit() throws IOException {
+		final CompoundTag arrays = newArraysTag();
+		final InputStream is = new ByteArrayInputStream(serialize(arrays, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN));
+		final List<String> events = new ArrayList<>();
+
+		NBTUtil.Reader.read().visit(is, new NBTVisitor() {
+			@Override
+			public boolean key(String name) {
+				events.add("key " + name);
+				return true;
+			}
+
+			@Override
+			public void startCompound() {
+				events.add("start");
+			}
+
+			@Override
+			public void endCompound() {
+				events.add("end");
+			}
+
+			@Override
+			public void longArray(NBTArrayReader reader) throws IOException {
+				// only read the first element, the rest is skipped over
+				events.add("longs " + reader.length() + " " + reader.nextLong());
+			}
+		});
+
+		final long[] longs = ((LongArrayTag) arrays.get("Longs")).getValue();
+		assertThat(events).hasSize(6);
+		assertThat(events).startsWith("key ", "start");
+		assertThat(events).contains("key Ints", "key Longs", "longs " + longs.length + " " + longs[0]);
+		assertThat(events.get(5)).isEqualTo("end");
+	}
+
+	@Test
+	public void testReader_internStrings() throws IOException {
+		final ListTag<CompoundTag> entities = new ListTag<>(CompoundTag.class);
+		for (int i = 0; i < 2; i++) {
+			final CompoundTag entity = new CompoundTag();
+			entity.putString("id", "minecraft:" + "pig");
+			entities.add(entity);
+		}
+		final NBTStringCache cache = new NBTStringCache();
+		final InputStream is = new ByteArrayInputStream(serialize(entities, DEFAULT_COMPRESSED, DEFAULT_LITTLE_ENDIAN));
+
+		final NamedTag tag = NBTUtil.Reader.read().internStrings(cache).from(is);
+
+		@SuppressWarnings("unchecked") final ListTag<CompoundTag> list = (ListTag<CompoundTag>) tag.getTag();
+		assertThat(list).isEqualTo(entities);
+		assertThat(list.get(1).getString("id")).isSameAs(list.get(0).getString("id"));
+		assertThat(list.get(1).keySet().iterator().next()).isSameAs(list.get(0).keySet().iterator().next());
+		assertThat(cache.getHits()).isEqualTo(2L);
+	}
+
+	@Test
+	public void testWriter_encoder() throws IOException {
+		final CompoundTag root = newArraysTag();
+		root.putString("ascii", "minecraft:oak_stairs[facing=north]");
+		root.putString("null\0", "a\0b");
+		root.putString("supplementary", "\uD83D\uDE00 Ol\u00e1");
+		root.put("Pos", ListTag.ofDoubles(new double[]{1.5, -2.5, 3.5}));
+
+		for (boolean littleEndian : new boolean[]{false, true}) {
+			final ByteOrder order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			final byte[] expected = serialize(root, false, littleEndian);
+
+			// a growable buffer, starting smaller than the payload
+			final NBTEncoder encoder = new NBTEncoder(order, 8);
+			encoder.writeTag(new NamedTag(null, root), Tag.DEFAULT_MAX_DEPTH);
+			final ByteBuffer encoded = encoder.toByteBuffer();
+			final byte[] bytes = new byte[encoded.remaining()];
+			encoded.get(bytes);
+			assertThat(bytes).isEqualTo(expected);
+
+			// a channel, through a buffer smaller than most strings and arrays
+			final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			final NBTEncoder channelEncoder = new NBTEncoder(Channels.newChannel(baos), order, 8);
+			channelEncoder.writeTag(new NamedTag(null, root), Tag.DEFAULT_MAX_DEPTH);
+			channelEncoder.flush();
+			assertThat(baos.toByteArray()).isEqualTo(expected);
+
+			final NBTUtil.Reader reader = NBTUtil.Reader.read();
+			final NamedTag tag = (littleEndian ? reader.littleEndian() : reader).from(new ByteArrayInputStream(expected));
+			assertThat(tag.getTag()).isEqualTo(root);
+		}
+
+		// strings are modified UTF-8 in big endian, and standard UTF-8 in little endian
+		final String s = "a\0\uD83D\uDE00";
+		final ByteArrayOutputStream modified = new ByteArrayOutputStream();
+		new DataOutputStream(modified).writeUTF(s);
+		final NBTEncoder bigEndian = new NBTEncoder(ByteOrder.BIG_ENDIAN);
+		bigEndian.writeString(s);
+		assertThat(bigEndian.toByteBuffer()).isEqualTo(ByteBuffer.wrap(modified.toByteArray()));
+		final NBTEncoder littleEndian = new NBTEncoder(ByteOrder.LITTLE_ENDIAN);
+		littleEndian.writeString(s);
+		final ByteBuffer utf8 = ByteBuffer.allocate(Short.BYTES + 6).order(ByteOrder.LITTLE_ENDIAN);
+		utf8.putShort((short) 6).put(s.getBytes(StandardCharsets.UTF_8)).flip();
+		assertThat(littleEndian.toByteBuffer()).isEqualTo(utf8);
+	}
+
+	@Test
+	public void testWriter_sizer() throws IOException {
+		final CompoundTag root = newArraysTag();
+		root.putString("null\0", "a\0b");
+		root.putString("supplementary", "\uD83D\uDE00 Ol\u00e1");
+		root.putByteArray("Bytes", new byte[]{1, 2, 3});
+		root.put("Pos", ListTag.ofDoubles(new double[]{1.5, -2.5, 3.5}));
+		root.put("Empty", new ListTag<>(CompoundTag.class));
+		final ListTag<CompoundTag> entities = new ListTag<>(CompoundTag.class);
+		entities.add(root.clone());
+		root.put("Entities", entities);
+
+		for (boolean littleEndian : new boolean[]{false, true}) {
+			final ByteOrder order = littleEndian ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+			final byte[] expected = serialize(root, false, littleEndian);
+
+			assertThat(NBTSizer.sizeOf(new NamedTag("Schematic", root), order)).isEqualTo(expected.length + 9L);
+			assertThat(NBTSizer.sizeOf(root, order)).isEqualTo((long) expected.length);
+			assertThat(NBTSizer.payloadSizeOf(TAG, order)).isEqualTo(6L);
+
+			final NBTUtil.Writer writer = NBTUtil.Writer.write(root).compressed(false);
+			assertThat((littleEndian ? writer.littleEndian() : writer).toBytes()).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	public void testReader_strings() throws IOException {
+		final CompoundTag strings = new CompoundTag();
+		strings.putString("ascii", "minecraft:oak_stairs[facing=north]");
+		strings.putString("null\0", "a\0b");
+		strings.putString("latin", "Ol\u00e1 mans\u00e3o");
+		strings.putString("supplementary", "\uD83D\uDE00");
+		strings.putString("", "");
+
+		for (boolean littleEndian : new boolean[]{false, true}) {
+			final InputStream is = new ByteArrayInputStream(serialize(strings, DEFAULT_COMPRESSED, littleEndian));
+
+			final NBTUtil.Reader reader = NBTUtil.Reader.read();
+			final NamedTag tag = (littleEndian ? reader.littleEndian() : reader).from(is);
+
+			assertThat(tag.getTag()).isEqualTo(strings);
+		}
+	}
 }
@@ -0,0 +1,95 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import org.junit.jupiter.api.Test;
+
+import net.sandrohc.schematic4j.nbt.tag.ByteArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.ByteTag;
+import net.sandrohc.schematic4j.nbt.tag.DoubleTag;
+import net.sandrohc.schematic4j.nbt.tag.FloatTag;
+import net.sandrohc.schematic4j.nbt.tag.IntArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.IntTag;
+import net.sandrohc.schematic4j.nbt.tag.LongArrayTag;
+import net.sandrohc.schematic4j.nbt.tag.LongTag;
+import net.sandrohc.schematic4j.nbt.tag.ShortTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class SNBTParserTest {
+
+	@Test
+	void parse_numberLiterals() throws ParseException {
+		assertThat(SNBTParser.parse("-128b")).isEqualTo(new ByteTag((byte) -128));
+		assertThat(SNBTParser.parse("-5S")).isEqualTo(new ShortTag((short) -5));
+		assertThat(SNBTParser.parse("+12")).isEqualTo(new IntTag(12));
+		assertThat(SNBTParser.parse("-9223372036854775808L")).isEqualTo(new LongTag(Long.MIN_VALUE));
+		assertThat(SNBTParser.parse("1.5f")).isEqualTo(new FloatTag(1.5f));
+		assertThat(SNBTParser.parse("1e3F")).isEqualTo(new FloatTag(1000f));
+		assertThat(SNBTParser.parse("2d")).isEqualTo(new DoubleTag(2));
+		assertThat(SNBTParser.parse(".5")).isEqualTo(new DoubleTag(0.5));
+		assertThat(SNBTParser.parse("1.")).isEqualTo(new DoubleTag(1));
+		assertThat(SNBTParser.parse("-1.0e-3")).isEqualTo(new DoubleTag(-1.0e-3));
+		assertThat(SNBTParser.parse("0.1")).isEqualTo(new DoubleTag(0.1));
+		assertThat(SNBTParser.parse("3.14159265358979323846")).isEqualTo(new DoubleTag(Math.PI));
+		assertThat(SNBTParser.parse("True")).isEqualTo(new ByteTag(true));
+		assertThat(SNBTParser.parse("false")).isEqualTo(new ByteTag(false));
+	}
+
+	@Test
+	void parse_exponentsTooLongForTheFastPath() throws ParseException {
+		// the exponent cancels the fraction, but only once all of its digits are read
+		final StringBuilder sb = new StringBuilder("0.");
+		for (int i = 0; i < 1995; i++) {
+			sb.append('0');
+		}
+		final String literal = sb.append("1e19999").toString();
+		assertThat(SNBTParser.parse(literal)).isEqualTo(new DoubleTag(Double.POSITIVE_INFINITY));
+		assertThat(SNBTParser.parse(literal + "f")).isEqualTo(new FloatTag(Float.POSITIVE_INFINITY));
+		assertThat(SNBTParser.parse("1.e-19999")).isEqualTo(new DoubleTag(0));
+	}
+
+	@Test
+	void parse_unquotedStrings() throws ParseException {
+		// anything else that is not quoted is a string
+		for (String s : new String[]{"1e5", "+b", "1.5x", "1b2", "e5", "-", ".f", "truefalse"}) {
+			assertThat(SNBTParser.parse(s)).isEqualTo(new StringTag(s));
+		}
+	}
+
+	@Test
+	void parse_numbersOutOfRange() {
+		try {
+			SNBTParser.parse("128b");
+			fail("parsed a byte out of range");
+		} catch (ParseException ex) {
+			assertThat(ex.getMessage()).startsWith("byte not in range: \"128\"");
+		}
+		try {
+			SNBTParser.parse("2147483648");
+			fail("parsed an int out of range");
+		} catch (ParseException ex) {
+			assertThat(ex.getMessage()).startsWith("int not in range: \"2147483648\"");
+		}
+	}
+
+	@Test
+	void parse_arrays() throws ParseException {
+		assertThat(SNBTParser.parse("[B; 1, -2 ]")).isEqualTo(new ByteArrayTag(new byte[]{1, -2}));
+		assertThat(SNBTParser.parse("[I;]")).isEqualTo(new IntArrayTag(new int[0]));
+		// more elements than the initial capacity of the parser
+		final long[] longs = new long[40];
+		final StringBuilder sb = new StringBuilder("[L;");
+		for (int i = 0; i < longs.length; i++) {
+			longs[i] = i * 0x0102030405060708L;
+			sb.append(i == 0 ? "" : ",").append(longs[i]);
+		}
+		assertThat(SNBTParser.parse(sb.append(']').toString())).isEqualTo(new LongArrayTag(longs));
+		try {
+			SNBTParser.parse("[I;1L]");
+			fail("parsed a long in an int array");
+		} catch (ParseException ex) {
+			assertThat(ex.getMessage()).startsWith("invalid int in IntArrayTag: \"1L\"");
+		}
+	}
+}
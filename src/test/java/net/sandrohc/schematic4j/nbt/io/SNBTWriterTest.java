@@ -0,0 +1,68 @@
+package net.sandrohc.schematic4j.nbt.io;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+import org.junit.jupiter.api.Test;
+
+import net.sandrohc.schematic4j.nbt.tag.CompoundTag;
+import net.sandrohc.schematic4j.nbt.tag.ListTag;
+import net.sandrohc.schematic4j.nbt.tag.StringTag;
+import net.sandrohc.schematic4j.nbt.tag.Tag;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SNBTWriterTest {
+
+	private static CompoundTag newTag() {
+		final CompoundTag root = new CompoundTag();
+		root.putString("plain", "minecraft:chest");
+		root.putString("id", "oak_log");
+		root.putString("quoted \"key\"", "back\\slash");
+		root.putLong("min", Long.MIN_VALUE);
+		root.put("Rotation", ListTag.ofFloats(90f, -0.5f));
+		root.putIntArray("Pos", new int[]{-1, 0, 64});
+		return root;
+	}
+
+	@Test
+	void toSNBT_quotesAndEscapes() throws IOException {
+		final CompoundTag root = newTag();
+
+		final String snbt = SNBTUtil.toSNBT(root);
+
+		assertThat(snbt).contains("plain:\"minecraft:chest\"", "id:oak_log",
+				"\"quoted \\\"key\\\"\":\"back\\\\slash\"", "min:-9223372036854775808l", "Rotation:[90.0f,-0.5f]",
+				"Pos:[I;-1,0,64]");
+		assertThat(SNBTParser.parse(snbt)).isEqualTo(root);
+	}
+
+	@Test
+	void write_anyAppendable() throws IOException {
+		final CompoundTag root = newTag();
+		final String expected = SNBTUtil.toSNBT(root);
+
+		final StringWriter writer = new StringWriter();
+		SNBTWriter.write(root, writer);
+		assertThat(writer.toString()).isEqualTo(expected);
+		// neither a writer nor a builder
+		final StringBuffer buffer = new StringBuffer();
+		SNBTWriter.write(root, buffer);
+		assertThat(buffer.toString()).isEqualTo(expected);
+	}
+
+	@Test
+	void write_keepsWriterOverloads() throws Exception {
+		// callers compiled before the appendable versions link against these
+		assertThat(SNBTWriter.class.getMethod("write", Tag.class, Writer.class)).isNotNull();
+		assertThat(SNBTWriter.class.getMethod("write", Tag.class, Writer.class, int.class)).isNotNull();
+	}
+
+	@Test
+	void escapeString() {
+		assertThat(SNBTWriter.escapeString("")).isEqualTo("\"\"");
+		assertThat(SNBTWriter.escapeString("a1")).isEqualTo("\"a1\"");
+		assertThat(new StringTag("a\n\"").valueToString()).isEqualTo("\"a\\n\\\"\"");
+	}
+}
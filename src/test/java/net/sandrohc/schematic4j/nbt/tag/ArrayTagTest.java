@@ -0,0 +1,102 @@
+package net.sandrohc.schematic4j.nbt.tag;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ArrayTagTest {
+
+	@Test
+	void freeze_copiesArrayHandedOut() {
+		final LongArrayTag tag = new LongArrayTag();
+		tag.setValue(new long[]{1, 2});
+		final long[] longs = tag.getValue();
+		tag.freeze();
+		longs[0] = 7;
+
+		assertThat(tag.getValue()[0]).isEqualTo(1L);
+	}
+
+	@Test
+	void freeze_copiesArrayPassedIn() {
+		final long[] constructed = {1, 2};
+		final LongArrayTag tag = new LongArrayTag(constructed);
+		tag.freeze();
+		final int hash = tag.hashCode();
+		constructed[0] = 42;
+		assertThat(tag.getValue()[0]).isEqualTo(1L);
+		assertThat(tag.hashCode()).isEqualTo(hash);
+		assertThat(tag).isEqualTo(new LongArrayTag(new long[]{1, 2}));
+
+		final int[] set = {1, 2};
+		final IntArrayTag intTag = new IntArrayTag();
+		intTag.setValue(set);
+		intTag.freeze();
+		set[0] = 42;
+		assertThat(intTag.getValue()[0]).isEqualTo(1);
+
+		final byte[] put = {1, 2};
+		final CompoundTag root = new CompoundTag();
+		root.putByteArray("Bytes", put);
+		root.freeze();
+		put[0] = 42;
+		assertThat(root.getByteArray("Bytes")[0]).isEqualTo((byte) 1);
+	}
+
+	@Test
+	void freeze_keepsWrappedArray() {
+		// nobody else holds the array, so it is not copied
+		final long[] longs = {1, 2};
+		final LongArrayTag tag = LongArrayTag.wrap(longs);
+		tag.freeze();
+
+		assertThat(tag.peekValue()).isSameAs(longs);
+		assertThat(tag.getValue()).isNotSameAs(longs);
+	}
+
+	@Test
+	void clone_sharesArrayUntilHandedOut() {
+		final long[] longs = {1, 2, 3};
+		final LongArrayTag tag = LongArrayTag.wrap(longs);
+		final LongArrayTag clone = tag.clone();
+		assertThat(clone.peekValue()).isSameAs(longs);
+		assertThat(clone).isEqualTo(tag);
+
+		// the array is copied once the clone hands it out
+		clone.getValue()[0] = 42;
+		assertThat(tag.getValue()[0]).isEqualTo(1L);
+		assertThat(clone.getValue()[0]).isEqualTo(42L);
+	}
+
+	@Test
+	void clone_copiesArrayPassedIn() {
+		final long[] longs = {1, 2, 3};
+		final LongArrayTag clone = new LongArrayTag(longs).clone();
+		longs[0] = 99;
+		assertThat(clone.getValue()[0]).isEqualTo(1L);
+
+		final int[] ints = {1, 2, 3};
+		final IntArrayTag tag = new IntArrayTag();
+		tag.setValue(ints);
+		final IntArrayTag intClone = tag.clone();
+		ints[0] = 99;
+		assertThat(intClone.getValue()[0]).isEqualTo(1);
+	}
+
+	@Test
+	void clone_copiesArrayHandedOut() {
+		// an array handed out before cloning may still be written to, so the clone gets its own copy
+		final CompoundTag root = new CompoundTag();
+		root.put("Bytes", ByteArrayTag.wrap(new byte[]{1, 2, 3}));
+		final byte[] bytes = root.getByteArray("Bytes");
+		final CompoundTag clone = root.clone();
+		bytes[0] = 99;
+		assertThat(clone.getByteArray("Bytes")[0]).isEqualTo((byte) 1);
+		assertThat(root.getByteArray("Bytes")[0]).isEqualTo((byte) 99);
+
+		// and so do the clones of the clone, whose array was handed out too
+		final CompoundTag cloneOfClone = clone.clone();
+		clone.getByteArray("Bytes")[1] = 42;
+		assertThat(cloneOfClone.getByteArray("Bytes")[1]).isEqualTo((byte) 2);
+	}
+}
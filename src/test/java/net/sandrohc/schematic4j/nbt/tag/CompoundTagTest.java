@@ -0,0 +1,163 @@
+package net.sandrohc.schematic4j.nbt.tag;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class CompoundTagTest {
+
+	@Test
+	void put_acrossCompactAndHashedSizes() {
+		// small compounds are backed by arrays, and larger ones by a hash map
+		for (int size = 1; size <= 12; size++) {
+			final CompoundTag compound = new CompoundTag();
+			for (int i = 0; i < size; i++) {
+				compound.putInt("Key" + i, i);
+			}
+			assertThat(compound.size()).isEqualTo(size);
+			assertThat(compound.getInt("Key" + (size - 1))).isEqualTo(size - 1);
+			assertThat(compound.clone()).isEqualTo(compound);
+			assertThat(compound.clone().hashCode()).isEqualTo(compound.hashCode());
+
+			compound.remove("Key0");
+			compound.putString("Key" + size, "value");
+			assertThat(compound.containsKey("Key0")).isFalse();
+			assertThat(compound.getString("Key" + size)).isEqualTo("value");
+			assertThat(compound.size()).isEqualTo(size);
+		}
+	}
+
+	@Test
+	void equals_acrossCompactAndHashedBackings() {
+		// a compound stays backed by a hash map once promoted, even after shrinking
+		final CompoundTag hashed = new CompoundTag();
+		for (int i = 11; i >= 0; i--) {
+			hashed.putInt("Key" + i, i);
+		}
+		for (int i = 8; i < 12; i++) {
+			hashed.remove("Key" + i);
+		}
+		final CompoundTag compact = new CompoundTag();
+		for (int i = 0; i < 8; i++) {
+			compact.putInt("Key" + i, i);
+		}
+
+		assertThat(compact).isEqualTo(hashed);
+		assertThat(hashed).isEqualTo(compact);
+		assertThat(compact.hashCode()).isEqualTo(hashed.hashCode());
+	}
+
+	@Test
+	void entrySetValue_rejectsNull() {
+		for (int size : new int[]{4, 12}) {
+			final CompoundTag compound = new CompoundTag();
+			for (int i = 0; i < size; i++) {
+				compound.putInt("Key" + i, i);
+			}
+			for (Map.Entry<String, Tag<?>> entry : compound) {
+				try {
+					entry.setValue(null);
+					fail("allowed setting null");
+				} catch (NullPointerException ignored) {
+				}
+			}
+		}
+	}
+
+	@Test
+	void iterator_failsFastWhenPromoted() {
+		final CompoundTag compound = new CompoundTag();
+		for (int i = 0; i < 8; i++) {
+			compound.putInt("Key" + i, i);
+		}
+
+		final Iterator<Map.Entry<String, Tag<?>>> iterator = compound.iterator();
+		final Map.Entry<String, Tag<?>> entry = iterator.next();
+		compound.putInt("Key8", 8);
+		try {
+			iterator.hasNext();
+			fail("did not detect the promotion");
+		} catch (ConcurrentModificationException ignored) {
+		}
+
+		// entries handed out before the promotion still write to the compound
+		entry.setValue(new IntTag(42));
+		assertThat(compound.getInt(entry.getKey())).isEqualTo(42);
+	}
+
+	@Test
+	void freeze_makesTheTreeImmutable() throws Exception {
+		final CompoundTag root = new CompoundTag();
+		root.putLongArray("Longs", new long[]{1, 2, 3});
+		root.put("Pos", ListTag.ofDoubles(1.5, 2.5, 3.5));
+		root.putString("Name", "frozen");
+		final CompoundTag nested = new CompoundTag();
+		nested.putInt("Version", 1);
+		root.put("Nested", nested);
+		final CompoundTag expected = root.clone();
+
+		final CompoundTag frozen = root.freeze();
+		assertThat(frozen.isFrozen()).isTrue();
+		assertThat(frozen.getCompoundTag("Nested").isFrozen()).isTrue();
+		assertThat(frozen.getListTag("Pos").get(1).isFrozen()).isTrue();
+		assertThat(frozen.clone()).isSameAs(frozen);
+		assertThat(frozen).isEqualTo(expected);
+		assertThat(frozen.hashCode()).isEqualTo(expected.hashCode());
+
+		try {
+			frozen.putInt("Version", 2);
+			fail("modified a frozen compound");
+		} catch (UnsupportedOperationException ignored) {
+		}
+		try {
+			frozen.getListTag("Pos").asDoubleTagList().addDouble(4.5);
+			fail("modified a frozen list");
+		} catch (UnsupportedOperationException ignored) {
+		}
+		try {
+			frozen.getStringTag("Name").setValue("thawed");
+			fail("modified a frozen string");
+		} catch (UnsupportedOperationException ignored) {
+		}
+
+		// frozen arrays are copied when handed out
+		frozen.getLongArray("Longs")[0] = 7;
+		assertThat(frozen.getLongArray("Longs")[0]).isEqualTo(1L);
+		assertThat(frozen.hashCode()).isEqualTo(expected.hashCode());
+	}
+
+	@Test
+	void freeze_sharesTheTreeBetweenThreads() throws Exception {
+		final CompoundTag root = new CompoundTag();
+		for (int i = 0; i < 16; i++) {
+			root.putLongArray("Longs" + i, new long[]{i, i + 1});
+			root.put("Ints" + i, ListTag.ofInts(i, i + 1));
+		}
+		final int hash = root.clone().hashCode();
+		final CompoundTag frozen = root.freeze();
+
+		// frozen trees can be read from several threads at once
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			final List<CompletableFuture<Integer>> hashes = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				hashes.add(CompletableFuture.supplyAsync(() -> frozen.clone().hashCode(), executor));
+			}
+			for (CompletableFuture<Integer> future : hashes) {
+				assertThat(future.get()).isEqualTo(hash);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
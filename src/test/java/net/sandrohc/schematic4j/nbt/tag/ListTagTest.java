@@ -0,0 +1,120 @@
+package net.sandrohc.schematic4j.nbt.tag;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ListTagTest {
+
+	@Test
+	void typedGetters_convertElements() {
+		final ListTag<DoubleTag> boxed = new ListTag<>(DoubleTag.class);
+		boxed.addDouble(1.5);
+		boxed.addDouble(-0.0);
+		boxed.addDouble(Double.NaN);
+
+		for (ListTag<DoubleTag> list : Arrays.asList(boxed, ListTag.ofDoubles(1.5, -0.0, Double.NaN))) {
+			assertThat(list.getDouble(0)).isEqualTo(1.5);
+			assertThat(list.getInt(0)).isEqualTo(1);
+			assertThat(list.getFloat(2)).isNaN();
+		}
+		assertThat(ListTag.ofInts(1, -2, Integer.MAX_VALUE).getLong(2)).isEqualTo(Integer.MAX_VALUE);
+	}
+
+	@Test
+	void primitiveList_equalsBoxedList() {
+		final ListTag<DoubleTag> boxed = new ListTag<>(DoubleTag.class);
+		boxed.addDouble(1.5);
+		boxed.addDouble(-0.0);
+		boxed.addDouble(Double.NaN);
+		final ListTag<DoubleTag> doubles = ListTag.ofDoubles(1.5, -0.0, Double.NaN);
+
+		assertThat(doubles).isEqualTo(boxed);
+		assertThat(boxed).isEqualTo(doubles);
+		assertThat(doubles.hashCode()).isEqualTo(boxed.hashCode());
+		assertThat(doubles.clone()).isEqualTo(boxed);
+		assertThat(doubles.get(0)).isEqualTo(new DoubleTag(1.5));
+
+		final ListTag<FloatTag> boxedFloats = new ListTag<>(FloatTag.class);
+		boxedFloats.addFloat(90f);
+		boxedFloats.addFloat(-45.5f);
+		boxedFloats.addFloat(Float.NaN);
+		assertThat(ListTag.ofFloats(90f, -45.5f, Float.NaN).toString()).isEqualTo(boxedFloats.toString());
+	}
+
+	@Test
+	void get_keepsTheElementTag() {
+		// elements read as tags are kept, and modifying them modifies the list
+		final ListTag<IntTag> ints = ListTag.ofInts(1, 2, 3);
+		final IntTag first = ints.get(0);
+		assertThat(ints.get(0)).isSameAs(first);
+		first.setValue(5);
+		assertThat(ints.getInt(0)).isEqualTo(5);
+		assertThat(ints.clone().getInt(0)).isEqualTo(5);
+		assertThat(ints.toString()).contains("[5,2,3]");
+
+		int sum = 0;
+		for (IntTag tag : ints) {
+			sum += tag.asInt();
+		}
+		assertThat(sum).isEqualTo(10);
+	}
+
+	@Test
+	void remove_boxesTheList() {
+		// modifying the list boxes it, keeping the elements read so far
+		final ListTag<IntTag> ints = ListTag.ofInts(1, 2, 3);
+		final IntTag first = ints.get(0);
+		final Iterator<IntTag> iterator = ints.iterator();
+		iterator.next();
+		iterator.remove();
+		assertThat(ints.size()).isEqualTo(2);
+		assertThat(ints.getInt(0)).isEqualTo(2);
+		ints.add(0, first);
+		assertThat(ints.get(0)).isSameAs(first);
+	}
+
+	@Test
+	void freeze_keepsModifiedElements() {
+		final ListTag<IntTag> frozen = ListTag.ofInts(1, 2, 3);
+		frozen.get(1).setValue(7);
+		frozen.freeze();
+		assertThat(frozen.getInt(1)).isEqualTo(7);
+		assertThat(frozen.get(1).isFrozen()).isTrue();
+	}
+
+	@Test
+	void freeze_copiesArrayPassedIn() {
+		final long[] longs = {1, 2, 3};
+		final ListTag<LongTag> list = ListTag.ofLongs(longs).freeze();
+		final int hash = list.hashCode();
+		longs[1] = 7;
+
+		assertThat(list.getLong(1)).isEqualTo(2L);
+		assertThat(list.hashCode()).isEqualTo(hash);
+		assertThat(list).isEqualTo(ListTag.ofLongs(1, 2, 3));
+	}
+
+	@Test
+	void freeze_keepsWrappedArray() {
+		// nobody else holds the array, so it is not copied, and writing to it shows through
+		final long[] longs = {1, 2, 3};
+		final ListTag<?> list = ListTag.wrapUnchecked(longs).freeze();
+		longs[1] = 7;
+
+		assertThat(list.getTypeClass()).isEqualTo(LongTag.class);
+		assertThat(list.getLong(1)).isEqualTo(7L);
+	}
+
+	@Test
+	void clone_copiesArrayPassedIn() {
+		final long[] longs = {1, 2, 3};
+		final ListTag<LongTag> clone = ListTag.ofLongs(longs).clone();
+		longs[1] = 7;
+
+		assertThat(clone.getLong(1)).isEqualTo(2L);
+	}
+}